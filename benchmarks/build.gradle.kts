@@ -0,0 +1,23 @@
+plugins {
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(libs.slf4j)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+
+    // Throughput along with the allocation rate reported by the GC profiler.
+    benchmarkMode = listOf("thrpt")
+    profilers = listOf("gc")
+
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+}
@@ -0,0 +1,57 @@
+package fr.atlasworld.fresco.benchmark;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the source paths into {@link EntryTable} entries, namespace, type and key included.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EntryTableBenchmark {
+
+    @Param({"10000"})
+    public int entries;
+
+    private Path directory;
+    private PackDefinition definition;
+    private List<String> paths;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        this.directory = Files.createTempDirectory("fresco-bench-");
+        this.definition = PackDefinition.defaultDefinition();
+
+        // Only the paths are parsed, tiny textures are enough.
+        int models = this.entries / 2;
+        this.paths = SyntheticPack.create()
+                .textures(this.entries - models, 1)
+                .models(models)
+                .languages(0, 0)
+                .sounds(0, 0)
+                .build()
+                .generate(this.directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        BenchmarkFiles.delete(this.directory);
+    }
+
+    @Benchmark
+    public EntryTable parse() {
+        EntryTable.Builder table = EntryTable.create(this.definition);
+        for (String path : this.paths) {
+            table.add(this.directory, path);
+        }
+
+        return table.build();
+    }
+}
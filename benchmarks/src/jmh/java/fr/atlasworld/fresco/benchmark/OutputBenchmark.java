@@ -0,0 +1,75 @@
+package fr.atlasworld.fresco.benchmark;
+
+import fr.atlasworld.fresco.processor.ProcessorOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProcessorOutput} writes of many small entries and of a few large ones, the archive is compressed and closed.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OutputBenchmark {
+    private static final int SMALL_ENTRIES = 2000;
+    private static final int SMALL_ENTRY_SIZE = 512;
+    private static final int LARGE_ENTRIES = 4;
+    private static final int LARGE_ENTRY_SIZE = 4 * 1024 * 1024;
+
+    private Path directory;
+    private File outputFile;
+    private byte[] smallEntry;
+    private byte[] largeEntry;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        this.directory = Files.createTempDirectory("fresco-bench-");
+        this.outputFile = this.directory.resolve("output.zip").toFile();
+
+        this.smallEntry = content(SMALL_ENTRY_SIZE);
+        this.largeEntry = content(LARGE_ENTRY_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        BenchmarkFiles.delete(this.directory);
+    }
+
+    @Benchmark
+    public long writeSmallEntries() throws IOException {
+        return this.write(this.smallEntry, SMALL_ENTRIES);
+    }
+
+    @Benchmark
+    public long writeLargeEntries() throws IOException {
+        return this.write(this.largeEntry, LARGE_ENTRIES);
+    }
+
+    private long write(byte[] content, int count) throws IOException {
+        ProcessorOutput output = ProcessorOutput.create(this.outputFile).build();
+        try (output) {
+            for (int i = 0; i < count; i++) {
+                output.writeEntry(content, "assets/bench/entries/entry_" + i + ".bin");
+            }
+        }
+
+        return output.size();
+    }
+
+    // Half random, half repeated, so deflate has some work to do.
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new SplittableRandom(size).nextBytes(content);
+
+        for (int i = 1; i < size; i += 2) {
+            content[i] = content[i - 1];
+        }
+
+        return content;
+    }
+}
@@ -0,0 +1,36 @@
+package fr.atlasworld.fresco.benchmark;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PackDefinition#determineType(String)} over the type directories of a resource pack.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PackDefinitionBenchmark {
+    private static final String[] DIRECTORIES = {
+            "models", "textures", "blockstates", "lang", "sounds", "font", "atlases", "items", "shaders", "particles",
+            "texts", "equipment", "unknown"
+    };
+
+    private PackDefinition definition;
+
+    @Setup
+    public void setup() {
+        this.definition = PackDefinition.defaultDefinition();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(13)
+    public void determineType(Blackhole blackhole) {
+        for (String directory : DIRECTORIES) {
+            EntryType type = this.definition.determineType(directory);
+            blackhole.consume(type);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fr.atlasworld.fresco.benchmark;
+
+import fr.atlasworld.fresco.FrescoProcessor;
+import fr.atlasworld.fresco.ProcessResult;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.pack.PackMeta;
+import fr.atlasworld.fresco.source.EntryTable;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end {@link FrescoProcessor#process()} of a synthetic pack, from the indexed sources to the written archive.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProcessBenchmark {
+
+    @Param({"500"})
+    public int textures;
+
+    @Param({"1000"})
+    public int models;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Path directory;
+    private EntryTable table;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        this.directory = Files.createTempDirectory("fresco-bench-");
+        this.table = SyntheticPack.create()
+                .textures(this.textures, 16)
+                .models(this.models)
+                .build()
+                .generateTable(this.directory.resolve("pack"), PackDefinition.defaultDefinition());
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        BenchmarkFiles.delete(this.directory);
+    }
+
+    @Benchmark
+    public ProcessResult process() throws IOException {
+        FrescoProcessor.Builder builder = FrescoProcessor.create()
+                .meta(new PackMeta("Benchmark", 46))
+                .outputFile(this.directory.resolve("pack.zip").toFile())
+                .parallelism(this.parallelism)
+                .logger(NOPLogger.NOP_LOGGER)
+                .addEntries(this.table.entries());
+
+        try (FrescoProcessor processor = builder.build()) {
+            return processor.process();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package fr.atlasworld.fresco.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import fr.atlasworld.fresco.FrescoProcessor;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryTable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Deterministic generator of synthetic resource packs, the same settings always generate the same files.
+ * <p>
+ * Textures are noisy PNG images, models reference the textures, languages hold many translation keys
+ * and sounds are random bytes listed in a {@code sounds.json}.
+ */
+public final class SyntheticPack {
+    public static final String NAMESPACE = "bench";
+
+    private final long seed;
+    private final int textures;
+    private final int textureSize;
+    private final int models;
+    private final int languages;
+    private final int translations;
+    private final int sounds;
+    private final int soundSize;
+
+    private SyntheticPack(@NotNull Builder builder) {
+        this.seed = builder.seed;
+        this.textures = builder.textures;
+        this.textureSize = builder.textureSize;
+        this.models = builder.models;
+        this.languages = builder.languages;
+        this.translations = builder.translations;
+        this.sounds = builder.sounds;
+        this.soundSize = builder.soundSize;
+    }
+
+    /**
+     * Generate the pack in a directory.
+     *
+     * @param root root directory of the pack, the {@code assets} directory is created in it.
+     *
+     * @return relative paths of every generated file, sorted.
+     *
+     * @throws IOException if a file could not be written.
+     */
+    public @NotNull List<String> generate(@NotNull Path root) throws IOException {
+        Objects.requireNonNull(root, "root must not be null!");
+
+        SplittableRandom random = new SplittableRandom(this.seed);
+        Gson gson = new Gson();
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < this.textures; i++) {
+            files.add(write(root, "textures/block/texture_" + i + ".png", this.texture(random)));
+        }
+
+        for (int i = 0; i < this.models; i++) {
+            JsonObject textures = new JsonObject();
+            textures.addProperty("all", NAMESPACE + ":block/texture_" + (this.textures > 0 ? random.nextInt(this.textures) : 0));
+
+            JsonObject model = new JsonObject();
+            model.addProperty("parent", "minecraft:block/cube_all");
+            model.add("textures", textures);
+            files.add(write(root, "models/block/model_" + i + ".json", gson.toJson(model).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        for (int i = 0; i < this.languages; i++) {
+            JsonObject language = new JsonObject();
+            for (int key = 0; key < this.translations; key++) {
+                language.addProperty("block." + NAMESPACE + ".entry_" + key, randomText(random, 8 + random.nextInt(32)));
+            }
+
+            files.add(write(root, "lang/lang_" + i + ".json", gson.toJson(language).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        JsonObject soundEvents = new JsonObject();
+        for (int i = 0; i < this.sounds; i++) {
+            byte[] sound = new byte[this.soundSize];
+            random.nextBytes(sound);
+            files.add(write(root, "sounds/sound_" + i + ".ogg", sound));
+
+            JsonArray soundFiles = new JsonArray();
+            soundFiles.add(NAMESPACE + ":sound_" + i);
+
+            JsonObject soundEvent = new JsonObject();
+            soundEvent.add("sounds", soundFiles);
+            soundEvents.add("sound_" + i, soundEvent);
+        }
+
+        if (this.sounds > 0)
+            files.add(write(root, "sounds.json", gson.toJson(soundEvents).getBytes(StandardCharsets.UTF_8)));
+
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Generate the pack in a directory and index its files.
+     *
+     * @param root root directory of the pack.
+     * @param definition pack definition used to resolve the type of the entries.
+     *
+     * @return table of every generated file.
+     *
+     * @throws IOException if a file could not be written.
+     */
+    public @NotNull EntryTable generateTable(@NotNull Path root, @NotNull PackDefinition definition) throws IOException {
+        EntryTable.Builder table = EntryTable.create(definition);
+        for (String file : this.generate(root)) {
+            table.add(root, file);
+        }
+
+        return table.build();
+    }
+
+    private byte @NotNull [] texture(@NotNull SplittableRandom random) throws IOException {
+        BufferedImage image = new BufferedImage(this.textureSize, this.textureSize, BufferedImage.TYPE_INT_ARGB);
+
+        // Noise on top of a flat color, compresses about as well as a hand drawn texture.
+        int base = random.nextInt() | 0xFF000000;
+        for (int y = 0; y < this.textureSize; y++) {
+            for (int x = 0; x < this.textureSize; x++) {
+                image.setRGB(x, y, random.nextInt(4) == 0 ? random.nextInt() | 0xFF000000 : base);
+            }
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    private static @NotNull String randomText(@NotNull SplittableRandom random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+
+        return builder.toString();
+    }
+
+    private static @NotNull String write(@NotNull Path root, @NotNull String path, byte @NotNull [] content) throws IOException {
+        String relativePath = FrescoProcessor.ASSETS_DIR + "/" + NAMESPACE + "/" + path;
+
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        return relativePath;
+    }
+
+    /**
+     * Create a new {@link SyntheticPack.Builder}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create() {
+        return new Builder();
+    }
+
+    /**
+     * {@link SyntheticPack} builder.
+     */
+    public static final class Builder {
+        private long seed = 0x5EED;
+        private int textures = 500;
+        private int textureSize = 16;
+        private int models = 1000;
+        private int languages = 4;
+        private int translations = 2000;
+        private int sounds = 50;
+        private int soundSize = 32 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the seed of the generator.
+         *
+         * @param seed seed, the same seed always generates the same pack.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set the amount of textures.
+         *
+         * @param count amount of textures.
+         * @param size width and height of the textures in pixels.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder textures(int count, int size) {
+            if (count < 0 || size <= 0)
+                throw new IllegalArgumentException("Texture count must be positive and size strictly positive!");
+
+            this.textures = count;
+            this.textureSize = size;
+            return this;
+        }
+
+        /**
+         * Set the amount of models, each referencing one of the textures.
+         *
+         * @param count amount of models.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder models(int count) {
+            if (count < 0)
+                throw new IllegalArgumentException("Model count must be positive!");
+
+            this.models = count;
+            return this;
+        }
+
+        /**
+         * Set the amount of language files.
+         *
+         * @param count amount of language files.
+         * @param translations amount of translation keys in each file.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder languages(int count, int translations) {
+            if (count < 0 || translations < 0)
+                throw new IllegalArgumentException("Language and translation counts must be positive!");
+
+            this.languages = count;
+            this.translations = translations;
+            return this;
+        }
+
+        /**
+         * Set the amount of sound files.
+         *
+         * @param count amount of sound files.
+         * @param size size of each sound file in bytes.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder sounds(int count, int size) {
+            if (count < 0 || size < 0)
+                throw new IllegalArgumentException("Sound count and size must be positive!");
+
+            this.sounds = count;
+            this.soundSize = size;
+            return this;
+        }
+
+        /**
+         * Create the generator with the provided settings.
+         *
+         * @return newly created {@link SyntheticPack}.
+         */
+        public @NotNull SyntheticPack build() {
+            return new SyntheticPack(this);
+        }
+    }
+}
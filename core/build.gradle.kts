@@ -14,6 +14,14 @@ dependencies {
     api(libs.gson)
 
     implementation(libs.slf4j)
+
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 publishing {
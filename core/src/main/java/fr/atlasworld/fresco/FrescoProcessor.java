@@ -1,13 +1,30 @@
 package fr.atlasworld.fresco;
 
+import fr.atlasworld.fresco.dedupe.AssetDeduplicator;
+import fr.atlasworld.fresco.dedupe.DedupeReport;
+import fr.atlasworld.fresco.dedupe.DedupeResult;
+import fr.atlasworld.fresco.metrics.BuildMetrics;
+import fr.atlasworld.fresco.metrics.MetricsReport;
+import fr.atlasworld.fresco.metrics.StageMetrics;
 import fr.atlasworld.fresco.pack.PackDefinition;
 import fr.atlasworld.fresco.pack.PackMeta;
+import fr.atlasworld.fresco.processor.CacheableProcessor;
+import fr.atlasworld.fresco.processor.CacheableTransformer;
+import fr.atlasworld.fresco.processor.CompressionPolicy;
+import fr.atlasworld.fresco.processor.EntryTransformer;
+import fr.atlasworld.fresco.processor.ProcessorCache;
 import fr.atlasworld.fresco.processor.ProcessorOutput;
 import fr.atlasworld.fresco.processor.ResourceProcessor;
+import fr.atlasworld.fresco.processor.TransformedEntry;
+import fr.atlasworld.fresco.prune.AssetPruner;
+import fr.atlasworld.fresco.prune.PruneReport;
+import fr.atlasworld.fresco.source.EntryContentCache;
 import fr.atlasworld.fresco.source.EntryType;
 import fr.atlasworld.fresco.source.SourceEntry;
+import fr.atlasworld.fresco.state.BuildState;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +32,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Represents the processors which will process all assets.
@@ -23,82 +41,488 @@ public final class FrescoProcessor implements Closeable {
     public static final String META_FILE_LOCATION = "pack.mcmeta";
     public static final String ASSETS_DIR = "assets";
 
+    // Amount of entries that may be processed ahead of the one being written, per thread.
+    private static final int ENTRIES_AHEAD_PER_THREAD = 4;
+
     private final @NotNull PackMeta meta;
     private final Logger logger;
-    private final @NotNull Iterable<SourceEntry> entries;
+    private final @NotNull Collection<SourceEntry> entries;
     private final Map<EntryType, Set<ResourceProcessor>> processors;
+    private final Map<EntryType, List<EntryTransformer>> transformers;
     private final ProcessorOutput output;
+    private final File outputFile;
     private final PackDefinition definition;
+    private final int parallelism;
+    private final @Nullable ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final @Nullable AssetPruner pruner;
+    private @Nullable PruneReport pruneReport;
+    private final @Nullable AssetDeduplicator deduplicator;
+    private @Nullable DedupeReport dedupeReport;
+    private final BuildMetrics metrics;
+    private @Nullable MetricsReport metricsReport;
+    private final @Nullable EntryContentCache contentCache;
+    private final List<VariantOutput> variants;
+    private final Map<String, ProcessResult> variantResults;
+
+    // Incremental builds
+    private final @NotNull BuildState previousState;
+    private final @NotNull Set<String> changedEntries;
+    private final @NotNull BuildState state;
+    private final boolean carryOver;
 
-    private FrescoProcessor(@NotNull PackMeta meta, @NotNull Logger logger, @NotNull Iterable<SourceEntry> entries, Map<EntryType, Set<ResourceProcessor>> processors, @NotNull File outputFile, PackDefinition definition) throws IOException {
+    private FrescoProcessor(@NotNull PackMeta meta, @NotNull Logger logger, @NotNull Collection<SourceEntry> entries,
+                            Map<EntryType, Set<ResourceProcessor>> processors, Map<EntryType, List<EntryTransformer>> transformers,
+                            @NotNull File outputFile, PackDefinition definition,
+                            @NotNull CompressionPolicy compressionPolicy, @NotNull Set<String> digestAlgorithms, int parallelism,
+                            @Nullable ExecutorService executor, @Nullable AssetPruner pruner, @Nullable AssetDeduplicator deduplicator,
+                            @Nullable EntryContentCache contentCache, @NotNull Map<OutputVariant, Map<EntryType, Set<ResourceProcessor>>> variants, boolean exploded, @Nullable File previousOutputFile, boolean patch,
+                            double compactionThreshold, @NotNull BuildState previousState, @NotNull Set<String> changedEntries) throws IOException {
         this.meta = meta;
         this.logger = logger;
         this.entries = entries;
         this.processors = processors;
+        this.transformers = transformers;
+        this.outputFile = outputFile;
         this.definition = definition;
+        this.parallelism = parallelism;
+        this.ownsExecutor = executor == null && parallelism > 1;
+        this.executor = this.ownsExecutor ? new ForkJoinPool(parallelism) : executor;
+        this.pruner = pruner;
+        this.deduplicator = deduplicator;
+        this.contentCache = contentCache;
+        this.previousState = previousState;
+        this.changedEntries = changedEntries;
+        this.state = new BuildState();
+        this.metrics = new BuildMetrics();
+
+        ProcessorOutput output = null;
+        if (previousOutputFile != null || patch) {
+            try {
+                ProcessorOutput.Builder builder = this.outputBuilder(outputFile, exploded, compressionPolicy, digestAlgorithms);
+                output = (patch ? builder.patch(compactionThreshold) : builder.previous(previousOutputFile)).build();
+            } catch (IOException ex) {
+                this.logger.error("Failed to open previous output, processing all entries", ex);
+            }
+        }
+
+        this.carryOver = output != null;
+        this.output = output != null ? output : this.outputBuilder(outputFile, exploded, compressionPolicy, digestAlgorithms).build();
 
-        this.output = new ProcessorOutput(outputFile);
+        this.variants = new ArrayList<>();
+        this.variantResults = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<OutputVariant, Map<EntryType, Set<ResourceProcessor>>> variant : variants.entrySet()) {
+                this.variants.add(new VariantOutput(variant.getKey(), variant.getValue(),
+                        this.outputBuilder(variant.getKey().outputFile(), false, compressionPolicy, digestAlgorithms).build()));
+            }
+        } catch (IOException ex) {
+            this.close();
+            throw ex;
+        }
+    }
+
+    private @NotNull ProcessorOutput.Builder outputBuilder(@NotNull File outputFile, boolean exploded, @NotNull CompressionPolicy compressionPolicy,
+                                                           @NotNull Set<String> digestAlgorithms) {
+        ProcessorOutput.Builder output = ProcessorOutput.create(outputFile)
+                .compression(compressionPolicy)
+                .definition(this.definition)
+                .digests(digestAlgorithms.toArray(String[]::new));
+
+        // Entries are compressed on the same pool, so the archive is no longer written by a single thread.
+        if (this.executor != null)
+            output.parallelCompression(this.executor, this.parallelism);
+
+        if (exploded)
+            output.exploded();
+
+        return output;
     }
 
     /**
      * Start the processing of all the entries.
+     * <p>
+     * Entries are always written in the order of their full path,
+     * so the parallel and sequential modes produce the same output.
+     *
+     * @return result of the processing, containing the digests of the pack computed while it was written.
+     *
+     * @throws IllegalStateException if the thread was interrupted while processing, the pack meta is then not written.
      */
-    public void process() {
-        Set<ResourceProcessor> allTypeProcessors = this.processors.computeIfAbsent(EntryType.ALL, k -> Set.of());
-
+    public @NotNull ProcessResult process() {
+        long start = System.nanoTime();
+        List<SourceEntry> entries = new ArrayList<>(this.entries.size());
         for (SourceEntry entry : this.entries) {
-            if (entry.isDirectory())
-                continue;
+            if (!entry.isDirectory())
+                entries.add(entry);
+        }
 
-            EntryType type;
-            if (entry.isInsideNamespace())
-                type = EntryType.CUSTOM;
-            else
-                type = this.definition.determineType(entry.type());
+        entries.sort(Comparator.comparing(SourceEntry::fullPath));
 
-            this.logger.warn("Processing entry '{}' as type {}", entry.fullPath(), type);
+        if (this.pruner != null) {
+            this.pruneReport = this.pruner.prune(entries, this.definition);
 
-            boolean copyEntry = true;
-            Set<ResourceProcessor> processors = this.processors.computeIfAbsent(type, k -> Set.of());
-            for (ResourceProcessor processor : processors) {
-                logger.warn("Calling processor '{}' for entry '{}'", processor.getClass().getSimpleName(), entry.fullPath());
-                try {
-                    if (!processor.process(entry, this.output))
-                        copyEntry = false;
-                } catch (Throwable ex) {
-                    this.logger.error("Failed to process entry '{}'", entry.fullPath(), ex);
-                }
+            Set<String> pruned = new HashSet<>(this.pruneReport.pruned());
+            entries.removeIf(entry -> pruned.contains(entry.fullPath()));
+        }
+
+        if (this.deduplicator != null) {
+            try {
+                DedupeResult result = this.deduplicator.deduplicate(entries, this.definition, this.executor);
+                entries = new ArrayList<>(result.entries());
+                this.dedupeReport = result.report();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while deduplicating entries", ex);
+            }
+        }
+
+        if (this.executor == null) {
+            for (SourceEntry entry : entries) {
+                SourceEntry shared = this.share(entry);
+                this.commitEntry(shared, this.processEntry(shared));
             }
+        } else {
+            this.processParallel(entries);
+        }
+
+        for (VariantOutput variant : this.variants) {
+            this.variantResults.put(variant.variant().name(), this.finish(variant.output(), variant.variant().meta(), variant.variant().outputFile()));
+        }
+
+        ProcessResult result = this.finish(this.output, this.meta, this.outputFile);
+        if (this.output.deadSize() > 0)
+            this.logger.info("Patched output in place, {} bytes left unused until it is compacted", this.output.deadSize());
+
+        long compressTime = this.output.compressTime();
+        for (VariantOutput variant : this.variants) {
+            compressTime += variant.output().compressTime();
+        }
+
+        this.metricsReport = this.metrics.report(System.nanoTime() - start, compressTime);
+
+        this.shutdownExecutor();
+
+        return result;
+    }
+
+    private @NotNull ProcessResult finish(@NotNull ProcessorOutput output, @NotNull PackMeta meta, @NotNull File outputFile) {
+        boolean written = true;
+        try {
+            output.writeEntry(meta.toString(), META_FILE_LOCATION);
+            output.close();
+        } catch (IOException ex) {
+            this.logger.error("Failed to write pack meta of '{}'", outputFile, ex);
+            written = false;
+        }
+
+        return new ProcessResult(outputFile, output.size(), written ? output.digests() : Map.of());
+    }
+
+    /**
+     * Retrieve the metrics of the run, where the time went and how many bytes each processor and entry type produced.
+     * <p>
+     * Only available once {@link #process()} returned.
+     *
+     * @return metrics of the run, or {@code null} if the processor did not run yet.
+     */
+    public @Nullable MetricsReport metrics() {
+        return this.metricsReport;
+    }
+
+    /**
+     * Retrieve the results of the {@link Builder#addVariant(OutputVariant) output variants}.
+     * <p>
+     * Only available once {@link #process()} returned.
+     *
+     * @return results of the variants by variant name, in the order they were added.
+     */
+    public @NotNull Map<String, ProcessResult> variantResults() {
+        return Collections.unmodifiableMap(this.variantResults);
+    }
+
+    /**
+     * Retrieve the state of this build, recording the output entries produced by every processed entry.
+     * <p>
+     * Only complete once {@link #process()} returned, it should be saved and passed to the next incremental build.
+     *
+     * @return state of this build.
+     */
+    public @NotNull BuildState state() {
+        return this.state;
+    }
+
+    /**
+     * Retrieve the report of the unused entries which were left out of the output.
+     * <p>
+     * Only available once {@link #process()} returned.
+     *
+     * @return report of the pruned entries, or {@code null} if pruning is disabled.
+     */
+    public @Nullable PruneReport pruneReport() {
+        return this.pruneReport;
+    }
 
-            for (ResourceProcessor processor : allTypeProcessors) {
+    /**
+     * Retrieve the report of the duplicate entries which were left out of the output.
+     * <p>
+     * Only available once {@link #process()} returned.
+     *
+     * @return report of the removed duplicates, or {@code null} if deduplication is disabled.
+     */
+    public @Nullable DedupeReport dedupeReport() {
+        return this.dedupeReport;
+    }
+
+    private void processParallel(@NotNull List<SourceEntry> entries) {
+        ExecutorService executor = Objects.requireNonNull(this.executor);
+        int maxEntriesAhead = Math.max(1, this.parallelism) * ENTRIES_AHEAD_PER_THREAD;
+
+        Deque<PendingEntry> pending = new ArrayDeque<>(maxEntriesAhead);
+        Iterator<SourceEntry> iterator = entries.iterator();
+
+        try {
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < maxEntriesAhead) {
+                    SourceEntry entry = this.share(iterator.next());
+                    pending.add(new PendingEntry(entry, executor.submit(() -> this.processEntry(entry))));
+                }
+
+                PendingEntry next = pending.poll();
                 try {
-                    if (!processor.process(entry, this.output))
-                        copyEntry = false;
-                } catch (Throwable ex) {
-                    this.logger.error("Failed to process entry '{}'", entry.fullPath(), ex);
+                    this.commitEntry(next.entry(), next.output().get());
+                } catch (ExecutionException ex) {
+                    this.logger.error("Failed to process entry '{}'", next.entry().fullPath(), ex.getCause());
+                    this.release(next.entry());
                 }
             }
+        } catch (InterruptedException ex) {
+            pending.forEach(entry -> {
+                entry.output().cancel(true);
+                this.release(entry.entry());
+            });
+
+            // The output is missing entries, it must not be finished as if the build succeeded.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing entries", ex);
+        }
+    }
+
+    private @NotNull ProcessedEntry processEntry(@NotNull SourceEntry entry) {
+        ProcessorOutput carriedOutput = this.carryOverEntry(entry);
+        if (carriedOutput != null)
+            return new ProcessedEntry(carriedOutput, Map.of(), false);
+
+        EntryType type = entry.entryType(this.definition);
+        BuildMetrics.Measure measure = this.metrics.startEntry();
+        long bytesIn = BuildMetrics.sizeOf(entry);
+
+        // Set by any stage failing, the entry is then left out of the build state to be processed again by the next build.
+        boolean[] failed = {false};
+        TransformedEntry transformed = this.transformEntry(entry, type, bytesIn, failed);
+        try {
+            SourceEntry source = transformed != null ? transformed : entry;
+            long sourceSize = transformed != null ? transformed.size() : bytesIn;
+            StagedEntry staged = this.processEntry(source, type, sourceSize, this.processors, this.output, failed);
+
+            // Only variants overriding the processors of the type need their own output, the others share the main one.
+            Map<VariantOutput, ProcessorOutput> overrides = new HashMap<>();
+            for (VariantOutput variant : this.variants) {
+                if (variant.overrides(type))
+                    overrides.put(variant, this.processEntry(source, type, sourceSize, variant.processors(), variant.output(), failed).output());
+            }
+
+            this.metrics.recordEntry(measure, entry, type, bytesIn, staged.output().stagedSize() + staged.copiedSize());
+            return new ProcessedEntry(staged.output(), overrides, failed[0]);
+        } finally {
+            if (transformed != null)
+                transformed.close();
+        }
+    }
+
+    // Chains the transformers of the entry, only the output of the last stage is kept.
+    private @Nullable TransformedEntry transformEntry(@NotNull SourceEntry entry, @NotNull EntryType type, long size, boolean @NotNull [] failed) {
+        TransformedEntry transformed = null;
+        for (EntryTransformer transformer : this.transformersOf(type)) {
+            BuildMetrics.Measure measure = this.metrics.startStage();
+            SourceEntry input = transformed != null ? transformed : entry;
+            long inputSize = transformed != null ? transformed.size() : size;
+            try {
+                TransformedEntry next = TransformedEntry.transform(input, transformer);
+                this.metrics.recordStage(measure, StageMetrics.Kind.TRANSFORMER, transformer, input, inputSize,
+                        next != null ? next.size() : inputSize, false);
+
+                if (next == null)
+                    continue;
+
+                if (transformed != null)
+                    transformed.close();
+
+                transformed = next;
+            } catch (Throwable ex) {
+                this.metrics.recordStage(measure, StageMetrics.Kind.TRANSFORMER, transformer, input, inputSize, 0, true);
+                this.logger.error("Failed to transform entry '{}'", entry.fullPath(), ex);
+                failed[0] = true;
+            }
+        }
+
+        return transformed;
+    }
+
+    private @NotNull List<EntryTransformer> transformersOf(@NotNull EntryType type) {
+        List<EntryTransformer> typeTransformers = this.transformers.getOrDefault(type, List.of());
+        List<EntryTransformer> allTransformers = this.transformers.getOrDefault(EntryType.ALL, List.of());
+        if (allTransformers.isEmpty())
+            return typeTransformers;
+
+        List<EntryTransformer> transformers = new ArrayList<>(typeTransformers);
+        transformers.addAll(allTransformers);
+        return transformers;
+    }
+
+    private @NotNull StagedEntry processEntry(@NotNull SourceEntry entry, @NotNull EntryType type, long size,
+                                              @NotNull Map<EntryType, Set<ResourceProcessor>> processors, @NotNull ProcessorOutput parent,
+                                              boolean @NotNull [] failed) {
+        ProcessorOutput output = parent.stage();
+        boolean copyEntry = true;
+        for (ResourceProcessor processor : processors.getOrDefault(type, Set.of())) {
+            if (!this.callProcessor(processor, entry, size, output, failed))
+                copyEntry = false;
+        }
+
+        for (ResourceProcessor processor : processors.getOrDefault(EntryType.ALL, Set.of())) {
+            if (!this.callProcessor(processor, entry, size, output, failed))
+                copyEntry = false;
+        }
+
+        if (copyEntry) {
+            try {
+                output.addEntry(entry);
+            } catch (IOException ex) {
+                this.logger.error("Failed to copy entry '{}'", entry.fullPath(), ex);
+                failed[0] = true;
+            }
+        }
+
+        // Transformed entries are written rather than copied, they are already part of the staged size.
+        return new StagedEntry(output, copyEntry && !(entry instanceof TransformedEntry) ? size : 0);
+    }
+
+    // Returns whether the entry should still be copied to the output.
+    private boolean callProcessor(@NotNull ResourceProcessor processor, @NotNull SourceEntry entry, long size, @NotNull ProcessorOutput output,
+                                  boolean @NotNull [] failed) {
+        BuildMetrics.Measure measure = this.metrics.startStage();
+        long stagedSize = output.stagedSize();
+        try {
+            boolean copyEntry = processor.process(entry, output);
+            this.metrics.recordStage(measure, StageMetrics.Kind.PROCESSOR, processor, entry, size, output.stagedSize() - stagedSize, false);
+            return copyEntry;
+        } catch (Throwable ex) {
+            this.metrics.recordStage(measure, StageMetrics.Kind.PROCESSOR, processor, entry, size, output.stagedSize() - stagedSize, true);
+            this.logger.error("Failed to process entry '{}'", entry.fullPath(), ex);
+            failed[0] = true;
+            return true;
+        }
+    }
+
+    // Keeps the outputs of an unchanged entry from the previous build, returns null if the entry must be processed.
+    private @Nullable ProcessorOutput carryOverEntry(@NotNull SourceEntry entry) {
+        if (!this.carryOver || this.isChanged(entry.fullPath()))
+            return null;
+
+        List<String> locations = this.previousState.outputsOf(entry.fullPath());
+        if (locations == null)
+            return null;
+
+        // References may have been rewritten differently by the previous build, depending on other entries.
+        if (this.deduplicator != null && AssetDeduplicator.REWRITTEN_TYPES.contains(entry.entryType(this.definition)))
+            return null;
+
+        ProcessorOutput output = this.output.stage();
+        try {
+            for (String location : locations) {
+                if (!output.keepEntry(location))
+                    return null;
+            }
+        } catch (IOException ex) {
+            this.logger.warn("Failed to carry over entry '{}', processing it again", entry.fullPath(), ex);
+            return null;
+        }
+
+        return output;
+    }
+
+    // Removed directories are reported as a single path, the entries below them changed too, ex: a deleted override layer.
+    private boolean isChanged(@NotNull String path) {
+        if (this.changedEntries.contains(path))
+            return true;
+
+        for (int separator = path.lastIndexOf('/'); separator > 0; separator = path.lastIndexOf('/', separator - 1)) {
+            if (this.changedEntries.contains(path.substring(0, separator)))
+                return true;
+        }
+
+        return false;
+    }
 
-            if (copyEntry) {
+    private void commitEntry(@NotNull SourceEntry entry, @NotNull ProcessedEntry processed) {
+        ProcessorOutput output = processed.output();
+        boolean failed = processed.failed();
+        long start = System.nanoTime();
+        try {
+            // The main output is written last, committing it drops what it holds.
+            for (VariantOutput variant : this.variants) {
+                ProcessorOutput override = processed.overrides().get(variant);
                 try {
-                    this.output.addEntry(entry);
+                    if (override != null)
+                        override.commit();
+                    else
+                        output.commitTo(variant.output());
                 } catch (IOException ex) {
-                    this.logger.error("Failed to copy entry '{}'", entry.fullPath(), ex);
+                    this.logger.error("Failed to write entry '{}' to variant '{}'", entry.fullPath(), variant.variant().name(), ex);
+                    failed = true;
                 }
             }
-        }
 
-        try {
-            this.output.writeEntry(this.meta.toString(), META_FILE_LOCATION);
-            this.output.close();
+            List<String> locations = output.stagedLocations();
+            output.commit();
+
+            // Failed entries were written as a fallback, they are not carried over so the next build retries them.
+            if (!failed)
+                this.state.record(entry.fullPath(), locations);
         } catch (IOException ex) {
-            this.logger.error("Failed to write pack meta", ex);
+            this.logger.error("Failed to write entry '{}'", entry.fullPath(), ex);
+        } finally {
+            this.metrics.recordWrite(System.nanoTime() - start);
+            this.release(entry);
         }
     }
 
+    // Every processor of the entry and its copy share the content read once from the source.
+    private @NotNull SourceEntry share(@NotNull SourceEntry entry) {
+        return this.contentCache != null ? this.contentCache.share(entry) : entry;
+    }
+
+    private void release(@NotNull SourceEntry entry) {
+        if (entry instanceof EntryContentCache.SharedEntry shared)
+            shared.release();
+    }
+
+    private void shutdownExecutor() {
+        if (this.ownsExecutor && this.executor != null)
+            this.executor.shutdown();
+    }
+
     @Override
     public void close() throws IOException {
-        this.output.close();
+        try {
+            this.output.close();
+            for (VariantOutput variant : this.variants) {
+                variant.output().close();
+            }
+        } finally {
+            this.shutdownExecutor();
+        }
     }
 
     /**
@@ -110,6 +534,25 @@ public final class FrescoProcessor implements Closeable {
         return new Builder();
     }
 
+    private record PendingEntry(@NotNull SourceEntry entry, @NotNull Future<ProcessedEntry> output) {
+    }
+
+    private record StagedEntry(@NotNull ProcessorOutput output, long copiedSize) {
+    }
+
+    // Staged outputs of an entry, overrides hold the outputs of the variants which processed the entry on their own.
+    private record ProcessedEntry(@NotNull ProcessorOutput output, @NotNull Map<VariantOutput, ProcessorOutput> overrides, boolean failed) {
+    }
+
+    // Processors of a variant are the processors of the main output, with the overridden types replaced.
+    private record VariantOutput(@NotNull OutputVariant variant, @NotNull Map<EntryType, Set<ResourceProcessor>> processors,
+                                 @NotNull ProcessorOutput output) {
+
+        private boolean overrides(@NotNull EntryType type) {
+            return this.variant.processors().containsKey(type) || this.variant.processors().containsKey(EntryType.ALL);
+        }
+    }
+
     /**
      * {@link FrescoProcessor} builder.
      */
@@ -118,18 +561,44 @@ public final class FrescoProcessor implements Closeable {
         private Logger logger;
 
         private final Map<EntryType, Set<ResourceProcessor>> processors;
+        private final Map<EntryType, Set<EntryTransformer>> transformers;
         private final Set<SourceEntry> entries;
+        private final Map<String, OutputVariant> variants;
 
         private File outputFile;
+        private boolean exploded;
         private PackDefinition packDefinition;
+        private CompressionPolicy compressionPolicy;
+        private final Set<String> digestAlgorithms;
+
+        private int parallelism;
+        private ExecutorService executor;
+
+        private File previousOutputFile;
+        private boolean patch;
+        private double compactionThreshold;
+        private BuildState previousState;
+        private Set<String> changedEntries;
+
+        private ProcessorCache cache;
+        private AssetPruner pruner;
+        private AssetDeduplicator deduplicator;
+        private EntryContentCache contentCache;
 
         @ApiStatus.Internal
         private Builder() {
             this.logger = LoggerFactory.getLogger(FrescoProcessor.class);
 
             this.processors = new HashMap<>();
+            this.transformers = new HashMap<>();
             this.entries = new HashSet<>();
+            this.variants = new LinkedHashMap<>();
             this.packDefinition = PackDefinition.defaultDefinition();
+            this.compressionPolicy = new CompressionPolicy();
+            this.digestAlgorithms = new LinkedHashSet<>(List.of(ProcessResult.SHA_1));
+            this.parallelism = 1;
+            this.compactionThreshold = ProcessorOutput.DEFAULT_COMPACTION_THRESHOLD;
+            this.contentCache = new EntryContentCache(EntryContentCache.DEFAULT_MAX_ENTRY_SIZE, EntryContentCache.DEFAULT_MAX_SIZE);
         }
 
         /**
@@ -173,6 +642,36 @@ public final class FrescoProcessor implements Closeable {
             return this;
         }
 
+        /**
+         * Sets the compression policy deciding how each entry of the output is compressed.
+         *
+         * @param policy compression policy.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder compression(@NotNull CompressionPolicy policy) {
+            Objects.requireNonNull(policy, "policy must not be null!");
+
+            this.compressionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Compute additional digests of the pack while it is written, returned by {@link FrescoProcessor#process()}.
+         * <p>
+         * {@link ProcessResult#SHA_1 SHA-1} is always computed.
+         *
+         * @param algorithms digest algorithms, ex: {@link ProcessResult#SHA_256 SHA-256}.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder digests(@NotNull String... algorithms) {
+            Objects.requireNonNull(algorithms, "algorithms must not be null!");
+
+            this.digestAlgorithms.addAll(Arrays.asList(algorithms));
+            return this;
+        }
+
         /**
          * Set the output file.
          *
@@ -184,6 +683,230 @@ public final class FrescoProcessor implements Closeable {
             Objects.requireNonNull(outputFile, "output file must not be null!");
 
             this.outputFile = outputFile;
+            this.exploded = false;
+            return this;
+        }
+
+        /**
+         * Write the pack as an exploded directory instead of a zip archive, meant for development builds.
+         * <p>
+         * Nothing is compressed and unmodified entries are hard-linked to their source file, or copied if linking fails,
+         * only generated content is written. Files of the directory which are not part of the pack are deleted,
+         * the directory must either be empty or already contain a pack. No digest is computed.
+         *
+         * @param outputDirectory directory in which the pack will be written.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder outputDirectory(@NotNull File outputDirectory) {
+            Objects.requireNonNull(outputDirectory, "output directory must not be null!");
+
+            this.outputFile = outputDirectory;
+            this.exploded = true;
+            return this;
+        }
+
+        /**
+         * Sets the amount of threads used to process the entries.
+         * <p>
+         * When greater than {@code 1}, entries are processed concurrently on a work-stealing pool
+         * owned by the processor, registered {@link ResourceProcessor ResourceProcessors} must then be thread-safe.
+         * Entries are still written to the output in the same order as in sequential mode.
+         *
+         * @param parallelism amount of threads, {@code 1} processes the entries sequentially.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if {@code parallelism} is lower than {@code 1}.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("Parallelism must be at least 1!");
+
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the executor used to process the entries concurrently.
+         * <p>
+         * The executor is not shut down by the processor,
+         * {@link #parallelism(int)} is then only used to limit how many entries are processed ahead.
+         *
+         * @param executor executor to process the entries on.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder executor(@NotNull ExecutorService executor) {
+            Objects.requireNonNull(executor, "executor must not be null!");
+
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the cache used to store the results of {@link CacheableProcessor CacheableProcessors}.
+         * <p>
+         * Processors not implementing {@link CacheableProcessor} are always called.
+         *
+         * @param cache processor cache.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder cache(@NotNull ProcessorCache cache) {
+            Objects.requireNonNull(cache, "cache must not be null!");
+
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets how much of the entries being processed may be kept in memory.
+         * <p>
+         * An entry is read from its source once and shared with every processor and its final copy,
+         * entries larger than {@code maxEntrySize} or read while {@code maxSize} bytes are already shared are streamed instead.
+         * Enabled by default with {@value EntryContentCache#DEFAULT_MAX_ENTRY_SIZE} bytes per entry
+         * and {@value EntryContentCache#DEFAULT_MAX_SIZE} bytes in total.
+         *
+         * @param maxEntrySize maximum size of a single shared entry in bytes, {@code 0} disables sharing.
+         * @param maxSize maximum size of every shared entry at once in bytes, {@code 0} disables sharing.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if one of the limits is negative.
+         */
+        public Builder contentCache(int maxEntrySize, long maxSize) {
+            if (maxEntrySize < 0 || maxSize < 0)
+                throw new IllegalArgumentException("Cache limits cannot be negative!");
+
+            if (maxEntrySize == 0 || maxSize == 0) {
+                this.contentCache = null;
+                return this;
+            }
+
+            this.contentCache = new EntryContentCache(maxEntrySize, maxSize);
+            return this;
+        }
+
+        /**
+         * Leave the entries nothing references out of the output.
+         *
+         * @param pruner pruner finding the unused entries.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder prune(@NotNull AssetPruner pruner) {
+            Objects.requireNonNull(pruner, "pruner must not be null!");
+
+            this.pruner = pruner;
+            return this;
+        }
+
+        /**
+         * Leave the duplicate textures and models out of the output, keeping a single copy of each.
+         * <p>
+         * Runs after {@link #prune(AssetPruner) pruning}, on the {@link #executor(ExecutorService) processing executor}.
+         *
+         * @param deduplicator deduplicator finding the duplicates.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder deduplicate(@NotNull AssetDeduplicator deduplicator) {
+            Objects.requireNonNull(deduplicator, "deduplicator must not be null!");
+
+            this.deduplicator = deduplicator;
+            return this;
+        }
+
+        /**
+         * Make the processor build incrementally on top of a previous output.
+         * <p>
+         * Entries recorded in the previous state whose path isn't part of {@code changedEntries}
+         * get their outputs copied from the previous output instead of being processed again,
+         * their compressed content is copied as-is.
+         * Entries that were removed since the previous build should simply not be added to the processor.
+         *
+         * @param previousOutputFile output file of the previous build, must differ from the {@link #outputFile(File) output file}.
+         * @param previousState state of the previous build, as returned by {@link FrescoProcessor#state()}.
+         * @param changedEntries full paths of the entries that were added, modified or removed since the previous build,
+         *                       a directory path marks every entry below it as changed.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder incremental(@NotNull File previousOutputFile, @NotNull BuildState previousState, @NotNull Collection<String> changedEntries) {
+            Objects.requireNonNull(previousOutputFile, "previous output file must not be null!");
+            Objects.requireNonNull(previousState, "previous state must not be null!");
+            Objects.requireNonNull(changedEntries, "changed entries must not be null!");
+
+            this.previousOutputFile = previousOutputFile;
+            this.patch = false;
+            this.previousState = previousState;
+            this.changedEntries = Set.copyOf(changedEntries);
+            return this;
+        }
+
+        /**
+         * Make the processor patch the output of the previous build in place.
+         * <p>
+         * Like {@link #incremental(File, BuildState, Collection)}, but the outputs of unchanged entries are left where they are
+         * in the {@link #outputFile(File) output file}, only the outputs of changed entries are appended to it.
+         * The archive is compacted once the space left by replaced and removed outputs exceeds the
+         * {@link #compactionThreshold(double) compaction threshold}. {@link #outputDirectory(File) Exploded} outputs
+         * keep the files of unchanged entries as they are.
+         *
+         * @param previousState state of the previous build, which must have written the current output file.
+         * @param changedEntries full paths of the entries that were added, modified or removed since the previous build,
+         *                       a directory path marks every entry below it as changed.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder patch(@NotNull BuildState previousState, @NotNull Collection<String> changedEntries) {
+            Objects.requireNonNull(previousState, "previous state must not be null!");
+            Objects.requireNonNull(changedEntries, "changed entries must not be null!");
+
+            this.previousOutputFile = null;
+            this.patch = true;
+            this.previousState = previousState;
+            this.changedEntries = Set.copyOf(changedEntries);
+            return this;
+        }
+
+        /**
+         * Sets the fraction of unused space past which a {@link #patch(BuildState, Collection) patched} output is compacted.
+         *
+         * @param compactionThreshold fraction of the archive data, {@code 0.25} by default.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if the threshold is not between {@code 0} and {@code 1}.
+         */
+        public Builder compactionThreshold(double compactionThreshold) {
+            if (compactionThreshold < 0 || compactionThreshold > 1)
+                throw new IllegalArgumentException("Compaction threshold must be between 0 and 1!");
+
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Add an output variant, written in the same pass as the main output.
+         * <p>
+         * Every entry is read, transformed and processed once for the main output and every variant sharing its processors,
+         * variants overriding the processors of a type process the entries of this type once more.
+         * Variants are not supported by {@link #incremental(File, BuildState, Collection) incremental} builds.
+         *
+         * @param variant output variant.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if a variant with the same name was already added.
+         */
+        public Builder addVariant(@NotNull OutputVariant variant) {
+            Objects.requireNonNull(variant, "variant must not be null!");
+
+            if (this.variants.putIfAbsent(variant.name(), variant) != null)
+                throw new IllegalArgumentException("Variant '" + variant.name() + "' was already added!");
+
             return this;
         }
 
@@ -225,7 +948,25 @@ public final class FrescoProcessor implements Closeable {
             Objects.requireNonNull(type, "type must not be null!");
             Objects.requireNonNull(processor, "processor must not be null!");
 
-            this.processors.computeIfAbsent(type, k -> new HashSet<>()).add(processor);
+            this.processors.computeIfAbsent(type, k -> new LinkedHashSet<>()).add(processor);
+            return this;
+        }
+
+        /**
+         * Add a resource processor for multiple types at once.
+         *
+         * @param types types of asset to process.
+         * @param processor resource processor.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder addProcessor(@NotNull Collection<EntryType> types, @NotNull ResourceProcessor processor) {
+            Objects.requireNonNull(types, "types must not be null!");
+
+            for (EntryType type : types) {
+                this.addProcessor(type, processor);
+            }
+
             return this;
         }
 
@@ -241,7 +982,43 @@ public final class FrescoProcessor implements Closeable {
             Objects.requireNonNull(type, "type must not be null!");
             Objects.requireNonNull(processors, "processors must not be null!");
 
-            this.processors.computeIfAbsent(type, k -> new HashSet<>()).addAll(Arrays.asList(processors));
+            this.processors.computeIfAbsent(type, k -> new LinkedHashSet<>()).addAll(Arrays.asList(processors));
+            return this;
+        }
+
+        /**
+         * Add a stage to the transform pipeline of a type.
+         * <p>
+         * Transformers of a type are chained in the order they were added, followed by the transformers of {@link EntryType#ALL}.
+         *
+         * @param type type of asset to transform.
+         * @param transformer entry transformer.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder addTransformer(@NotNull EntryType type, @NotNull EntryTransformer transformer) {
+            Objects.requireNonNull(type, "type must not be null!");
+            Objects.requireNonNull(transformer, "transformer must not be null!");
+
+            this.transformers.computeIfAbsent(type, k -> new LinkedHashSet<>()).add(transformer);
+            return this;
+        }
+
+        /**
+         * Add a stage to the transform pipeline of multiple types at once.
+         *
+         * @param types types of asset to transform.
+         * @param transformer entry transformer.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder addTransformer(@NotNull Collection<EntryType> types, @NotNull EntryTransformer transformer) {
+            Objects.requireNonNull(types, "types must not be null!");
+
+            for (EntryType type : types) {
+                this.addTransformer(type, transformer);
+            }
+
             return this;
         }
 
@@ -250,7 +1027,9 @@ public final class FrescoProcessor implements Closeable {
          *
          * @return newly created {@link FrescoProcessor}.
          *
-         * @throws IllegalArgumentException if {@link #outputFile(File)} or {@link #meta(PackMeta)} are missing.
+         * @throws IllegalArgumentException if {@link #outputFile(File)} or {@link #meta(PackMeta)} are missing,
+         *                                  if the previous output file is the output file,
+         *                                  or if an exploded output is built on top of a previous output file.
          * @throws IOException if the processor failed to initialize its output.
          */
         public @NotNull FrescoProcessor build() throws IOException {
@@ -260,7 +1039,64 @@ public final class FrescoProcessor implements Closeable {
             if (this.meta == null)
                 throw new IllegalArgumentException("Pack meta must not be null!");
 
-            return new FrescoProcessor(this.meta, this.logger, this.entries, this.processors, this.outputFile, this.packDefinition);
+            if (this.previousOutputFile != null && this.previousOutputFile.getAbsoluteFile().equals(this.outputFile.getAbsoluteFile()))
+                throw new IllegalArgumentException("Previous output file must differ from the output file!");
+
+            if (this.previousOutputFile != null && this.exploded)
+                throw new IllegalArgumentException("Exploded outputs can only be patched!");
+
+            if (!this.variants.isEmpty() && (this.previousOutputFile != null || this.patch))
+                throw new IllegalArgumentException("Incremental builds do not support output variants!");
+
+            Set<File> outputFiles = new HashSet<>();
+            outputFiles.add(this.outputFile.getAbsoluteFile());
+            for (OutputVariant variant : this.variants.values()) {
+                if (!outputFiles.add(variant.outputFile().getAbsoluteFile()))
+                    throw new IllegalArgumentException("Variant '" + variant.name() + "' must have its own output file!");
+            }
+
+            Map<EntryType, Set<ResourceProcessor>> processors = this.wrapProcessors(this.processors);
+
+            Map<OutputVariant, Map<EntryType, Set<ResourceProcessor>>> variants = new LinkedHashMap<>();
+            for (OutputVariant variant : this.variants.values()) {
+                Map<EntryType, Set<ResourceProcessor>> variantProcessors = new HashMap<>(processors);
+                variantProcessors.putAll(this.wrapProcessors(variant.processors()));
+                variants.put(variant, variantProcessors);
+            }
+
+            Map<EntryType, List<EntryTransformer>> transformers = new HashMap<>();
+            for (Map.Entry<EntryType, Set<EntryTransformer>> entry : this.transformers.entrySet()) {
+                List<EntryTransformer> typeTransformers = new ArrayList<>();
+                for (EntryTransformer transformer : entry.getValue()) {
+                    typeTransformers.add(this.cache != null && transformer instanceof CacheableTransformer cacheable
+                            ? this.cache.wrapTransformer(cacheable) : transformer);
+                }
+
+                transformers.put(entry.getKey(), List.copyOf(typeTransformers));
+            }
+
+            return new FrescoProcessor(this.meta, this.logger, this.entries, processors, transformers, this.outputFile, this.packDefinition,
+                    this.compressionPolicy, this.digestAlgorithms, this.parallelism, this.executor, this.pruner,
+                    this.deduplicator, this.contentCache, variants, this.exploded, this.previousOutputFile, this.patch, this.compactionThreshold,
+                    this.previousState != null ? this.previousState : new BuildState(),
+                    this.changedEntries != null ? this.changedEntries : Set.of());
+        }
+
+        private @NotNull Map<EntryType, Set<ResourceProcessor>> wrapProcessors(@NotNull Map<EntryType, Set<ResourceProcessor>> processors) {
+            if (this.cache == null)
+                return processors;
+
+            Map<EntryType, Set<ResourceProcessor>> wrapped = new HashMap<>();
+            for (Map.Entry<EntryType, Set<ResourceProcessor>> entry : processors.entrySet()) {
+                Set<ResourceProcessor> typeProcessors = new LinkedHashSet<>();
+                for (ResourceProcessor processor : entry.getValue()) {
+                    typeProcessors.add(processor instanceof CacheableProcessor cacheable ? this.cache.wrap(cacheable) : processor);
+                }
+
+                wrapped.put(entry.getKey(), typeProcessors);
+            }
+
+            return wrapped;
         }
     }
 }
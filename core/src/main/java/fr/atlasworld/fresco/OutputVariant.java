@@ -0,0 +1,162 @@
+package fr.atlasworld.fresco;
+
+import fr.atlasworld.fresco.pack.PackMeta;
+import fr.atlasworld.fresco.processor.ResourceProcessor;
+import fr.atlasworld.fresco.source.EntryType;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Additional output of a {@link FrescoProcessor}, written in the same pass as its main output.
+ * <p>
+ * A variant has its own pack meta and output file, and may override the processors of some entry types.
+ * Entries of the other types are processed once and their output is written to the main output and to every variant.
+ */
+public final class OutputVariant {
+    private final String name;
+    private final PackMeta meta;
+    private final File outputFile;
+    private final Map<EntryType, Set<ResourceProcessor>> processors;
+
+    private OutputVariant(@NotNull String name, @NotNull PackMeta meta, @NotNull File outputFile,
+                          @NotNull Map<EntryType, Set<ResourceProcessor>> processors) {
+        this.name = name;
+        this.meta = meta;
+        this.outputFile = outputFile;
+        this.processors = processors;
+    }
+
+    /**
+     * Name of the variant.
+     *
+     * @return name of the variant.
+     */
+    public @NotNull String name() {
+        return this.name;
+    }
+
+    /**
+     * Pack meta written to the variant.
+     *
+     * @return pack meta of the variant.
+     */
+    public @NotNull PackMeta meta() {
+        return this.meta;
+    }
+
+    /**
+     * File the variant is written to.
+     *
+     * @return output file of the variant.
+     */
+    public @NotNull File outputFile() {
+        return this.outputFile;
+    }
+
+    /**
+     * Processors replacing the processors of the {@link FrescoProcessor} for some entry types.
+     *
+     * @return overridden processors by entry type, types missing from it use the processors of the {@link FrescoProcessor}.
+     */
+    public @NotNull Map<EntryType, Set<ResourceProcessor>> processors() {
+        return this.processors;
+    }
+
+    /**
+     * Create a new {@link OutputVariant.Builder}.
+     *
+     * @param name name of the variant, ex: {@code 1.20}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create(@NotNull String name) {
+        Objects.requireNonNull(name, "name must not be null!");
+        return new Builder(name);
+    }
+
+    /**
+     * {@link OutputVariant} builder.
+     */
+    public static final class Builder {
+        private final String name;
+        private final Map<EntryType, Set<ResourceProcessor>> processors;
+
+        private PackMeta meta;
+        private File outputFile;
+
+        @ApiStatus.Internal
+        private Builder(@NotNull String name) {
+            this.name = name;
+            this.processors = new HashMap<>();
+        }
+
+        /**
+         * Set the pack meta of the variant.
+         *
+         * @param meta pack meta.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder meta(@NotNull PackMeta meta) {
+            Objects.requireNonNull(meta, "pack meta must not be null!");
+
+            this.meta = meta;
+            return this;
+        }
+
+        /**
+         * Set the output file of the variant.
+         *
+         * @param outputFile variant output file, must differ from the output file of every other output.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder outputFile(@NotNull File outputFile) {
+            Objects.requireNonNull(outputFile, "output file must not be null!");
+
+            this.outputFile = outputFile;
+            return this;
+        }
+
+        /**
+         * Override the processors of a type for this variant.
+         * <p>
+         * Once a processor is added for a type, the processors the {@link FrescoProcessor} has for this type
+         * are not called for the variant anymore, entries of this type are processed once more for the variant.
+         *
+         * @param type type of resource to process.
+         * @param processors resource processors.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder overrideProcessors(@NotNull EntryType type, @NotNull ResourceProcessor... processors) {
+            Objects.requireNonNull(type, "type must not be null!");
+            Objects.requireNonNull(processors, "processors must not be null!");
+
+            this.processors.computeIfAbsent(type, k -> new LinkedHashSet<>()).addAll(Arrays.asList(processors));
+            return this;
+        }
+
+        /**
+         * Create the variant with the provided settings.
+         *
+         * @return newly created {@link OutputVariant}.
+         *
+         * @throws IllegalArgumentException if {@link #meta(PackMeta)} or {@link #outputFile(File)} are missing.
+         */
+        public @NotNull OutputVariant build() {
+            if (this.meta == null)
+                throw new IllegalArgumentException("Pack meta must not be null!");
+
+            if (this.outputFile == null)
+                throw new IllegalArgumentException("Output file must not be null!");
+
+            Map<EntryType, Set<ResourceProcessor>> processors = new HashMap<>();
+            this.processors.forEach((type, typeProcessors) -> processors.put(type, Collections.unmodifiableSet(new LinkedHashSet<>(typeProcessors))));
+            return new OutputVariant(this.name, this.meta, this.outputFile, Collections.unmodifiableMap(processors));
+        }
+    }
+}
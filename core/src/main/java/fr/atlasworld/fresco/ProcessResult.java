@@ -0,0 +1,37 @@
+package fr.atlasworld.fresco;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Result of a {@link FrescoProcessor} run.
+ *
+ * @param outputFile file the pack was written to, or directory for exploded packs.
+ * @param size size of the written pack in bytes.
+ * @param digests hex encoded digests of the written pack by algorithm, empty if the pack could not be written or is exploded.
+ */
+public record ProcessResult(@NotNull File outputFile, long size, @NotNull Map<String, String> digests) {
+    public static final String SHA_1 = "SHA-1";
+    public static final String SHA_256 = "SHA-256";
+
+    /**
+     * Retrieve the SHA-1 of the pack, as expected by Minecraft servers.
+     *
+     * @return hex encoded SHA-1 of the pack, or {@code null} if it was not computed.
+     */
+    public @Nullable String sha1() {
+        return this.digests.get(SHA_1);
+    }
+
+    /**
+     * Retrieve the SHA-256 of the pack.
+     *
+     * @return hex encoded SHA-256 of the pack, or {@code null} if it was not requested.
+     */
+    public @Nullable String sha256() {
+        return this.digests.get(SHA_256);
+    }
+}
@@ -0,0 +1,333 @@
+package fr.atlasworld.fresco.dedupe;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.processor.ProcessorOutput;
+import fr.atlasworld.fresco.reference.ResourceReference;
+import fr.atlasworld.fresco.reference.ResourceReferences;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Removes byte-identical textures and models, keeping a single copy of each.
+ * <p>
+ * Models, blockstates and item definitions referencing a removed duplicate are rewritten to reference the kept copy.
+ * A duplicate is only removed when every reference to it can be rewritten: entries of the {@value ResourceReferences#VANILLA_NAMESPACE}
+ * namespace, entries referenced by any other format, stitched through an atlas directory source, animated textures
+ * and entries nothing references are always kept.
+ */
+public final class AssetDeduplicator {
+    public static final Set<EntryType> DEDUPLICATED_TYPES = Set.of(EntryType.TEXTURES, EntryType.MODELS);
+
+    /**
+     * Types whose entries may be rewritten, their content may then depend on other entries.
+     */
+    public static final Set<EntryType> REWRITTEN_TYPES = Set.of(EntryType.MODELS, EntryType.BLOCKSTATES, EntryType.ITEMS);
+
+    private final List<PathMatcher> keep;
+
+    private AssetDeduplicator(@NotNull List<PathMatcher> keep) {
+        this.keep = keep;
+    }
+
+    /**
+     * Remove the duplicates from the entries, and rewrite the references to them.
+     *
+     * @param entries every entry of the resource pack.
+     * @param definition pack definition used to determine the type of the entries.
+     * @param executor executor to hash and read the entries on, or {@code null} to do it on the calling thread.
+     *
+     * @return the deduplicated entries.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting on the executor.
+     */
+    public @NotNull DedupeResult deduplicate(@NotNull List<SourceEntry> entries, @NotNull PackDefinition definition,
+                                             @Nullable ExecutorService executor) throws InterruptedException {
+        Objects.requireNonNull(entries, "entries must not be null!");
+        Objects.requireNonNull(definition, "definition must not be null!");
+
+        List<String> warnings = new ArrayList<>();
+        List<Scan> scans = map(entries, entry -> this.scan(entry, definition), executor);
+
+        Map<String, Scan> index = new HashMap<>();
+        Set<String> referenced = new HashSet<>();
+        Set<String> pinned = new HashSet<>();
+        List<String> pinnedDirectories = new ArrayList<>();
+
+        for (Scan scan : scans) {
+            if (scan.warning() != null)
+                warnings.add(scan.warning());
+
+            if (scan.key() != null)
+                index.put(scan.key(), scan);
+
+            for (ResourceReference reference : scan.references()) {
+                switch (reference.kind()) {
+                    case REWRITABLE -> referenced.add(indexKey(reference.type(), reference.namespace(), reference.path()));
+                    case DIRECTORY -> pinnedDirectories.add(reference.path());
+                    default -> pinned.add(indexKey(reference.type(), reference.namespace(), reference.path()));
+                }
+            }
+        }
+
+        // Group the candidates by content, duplicates must also share their type and extension.
+        Map<String, List<Scan>> groups = new HashMap<>();
+        for (Scan scan : scans) {
+            if (scan.hash() != null)
+                groups.computeIfAbsent(scan.key().substring(0, scan.key().indexOf('|')) + scan.extension() + scan.hash(), k -> new ArrayList<>()).add(scan);
+        }
+
+        Map<String, Scan> redirects = new HashMap<>();
+        SortedMap<String, String> duplicates = new TreeMap<>();
+        long bytesEliminated = 0;
+        for (List<Scan> group : groups.values()) {
+            if (group.size() < 2)
+                continue;
+
+            group.sort(Comparator.comparing((Scan scan) -> !ResourceReferences.VANILLA_NAMESPACE.equals(scan.entry().namespace()))
+                    .thenComparing(scan -> this.isRemovable(scan, referenced, pinned, pinnedDirectories, index))
+                    .thenComparing(scan -> scan.entry().fullPath()));
+
+            Scan canonical = group.get(0);
+            for (Scan duplicate : group.subList(1, group.size())) {
+                if (!this.isRemovable(duplicate, referenced, pinned, pinnedDirectories, index))
+                    continue;
+
+                redirects.put(duplicate.key(), canonical);
+                duplicates.put(duplicate.entry().fullPath(), canonical.entry().fullPath());
+                bytesEliminated += duplicate.size();
+            }
+        }
+
+        Set<SourceEntry> rewriting = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Scan scan : scans) {
+            if (scan.key() != null && redirects.containsKey(scan.key()))
+                continue;
+
+            for (ResourceReference reference : scan.references()) {
+                if (reference.kind() == ResourceReference.Kind.REWRITABLE
+                        && redirects.containsKey(indexKey(reference.type(), reference.namespace(), reference.path()))) {
+                    rewriting.add(scan.entry());
+                    break;
+                }
+            }
+        }
+
+        List<SourceEntry> rewritten = map(new ArrayList<>(rewriting), entry -> this.rewrite(entry, definition, redirects), executor);
+        Map<SourceEntry, SourceEntry> replacements = new IdentityHashMap<>();
+        for (SourceEntry entry : rewritten) {
+            if (entry instanceof RewrittenSourceEntry rewrittenEntry)
+                replacements.put(rewrittenEntry.original(), rewrittenEntry);
+        }
+
+        List<SourceEntry> result = new ArrayList<>(entries.size() - duplicates.size());
+        for (Scan scan : scans) {
+            if (scan.key() != null && redirects.containsKey(scan.key()))
+                continue;
+
+            result.add(replacements.getOrDefault(scan.entry(), scan.entry()));
+        }
+
+        return new DedupeResult(result, new DedupeReport(duplicates, replacements.size(), bytesEliminated, warnings));
+    }
+
+    private boolean isRemovable(@NotNull Scan scan, @NotNull Set<String> referenced, @NotNull Set<String> pinned,
+                                @NotNull List<String> pinnedDirectories, @NotNull Map<String, Scan> index) {
+        SourceEntry entry = scan.entry();
+        if (ResourceReferences.VANILLA_NAMESPACE.equals(entry.namespace()) || !referenced.contains(scan.key()) || pinned.contains(scan.key()))
+            return false;
+
+        // Animated textures keep their metadata, which may differ between copies.
+        if (index.containsKey(scan.key() + ResourceReferences.META_EXTENSION))
+            return false;
+
+        String path = scan.key().substring(scan.key().lastIndexOf('|') + 1);
+        for (String directory : pinnedDirectories) {
+            if (path.startsWith(directory))
+                return false;
+        }
+
+        Path fullPath = Path.of(entry.fullPath());
+        for (PathMatcher matcher : this.keep) {
+            if (matcher.matches(fullPath))
+                return false;
+        }
+
+        return true;
+    }
+
+    // Hashes the candidates and reads the references of every entry.
+    private @NotNull Scan scan(@NotNull SourceEntry entry, @NotNull PackDefinition definition) {
+        if (entry.isDirectory())
+            return new Scan(entry, null, "", null, 0, List.of(), null);
+
+        EntryType type = ResourceReferences.typeOf(entry, definition);
+        String path = entry.isInsideNamespace() ? null : ResourceReferences.pathOf(entry);
+        String key = path != null ? indexKey(type, entry.namespace(), path) : null;
+        String extension = path != null ? path.substring(path.lastIndexOf('.')) : "";
+
+        String hash = null;
+        long size = 0;
+        List<ResourceReference> references = new ArrayList<>();
+        try {
+            boolean candidate = key != null && DEDUPLICATED_TYPES.contains(type)
+                    && (extension.equals(ResourceReferences.TEXTURE_EXTENSION) || extension.equals(ResourceReferences.JSON_EXTENSION));
+
+            if (candidate) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                ByteBuffer content = entry.content();
+                size = content.remaining();
+                digest.update(content);
+
+                hash = HexFormat.of().formatHex(digest.digest());
+            }
+
+            if (ResourceReferences.hasReferences(entry, type)) {
+                ResourceReferences.visit(entry, type, entry.openAsJson(), reference -> {
+                    references.add(reference);
+                    return null;
+                });
+            }
+        } catch (IOException | JsonParseException | IllegalStateException ex) {
+            return new Scan(entry, key, extension, null, 0, references, "Could not read '" + entry.fullPath() + "': " + ex.getMessage());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported!", ex);
+        }
+
+        return new Scan(entry, key, extension, hash, size, references, null);
+    }
+
+    private @NotNull SourceEntry rewrite(@NotNull SourceEntry entry, @NotNull PackDefinition definition, @NotNull Map<String, Scan> redirects) {
+        try {
+            JsonElement json = entry.openAsJson();
+            boolean modified = ResourceReferences.visit(entry, ResourceReferences.typeOf(entry, definition), json, reference -> {
+                if (reference.kind() != ResourceReference.Kind.REWRITABLE)
+                    return null;
+
+                Scan canonical = redirects.get(indexKey(reference.type(), reference.namespace(), reference.path()));
+                if (canonical == null)
+                    return null;
+
+                return new ResourceReference(reference.type(), canonical.entry().namespace(),
+                        ResourceReferences.pathOf(canonical.entry()), ResourceReference.Kind.REWRITABLE);
+            });
+
+            if (!modified)
+                return entry;
+
+            return new RewrittenSourceEntry(entry, ProcessorOutput.GSON.toJson(json).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JsonParseException ex) {
+            // Already read successfully once while scanning.
+            throw new IllegalStateException("Could not rewrite '" + entry.fullPath() + "'", ex);
+        }
+    }
+
+    private static <T> @NotNull List<T> map(@NotNull List<SourceEntry> entries, @NotNull Function<SourceEntry, T> function,
+                                            @Nullable ExecutorService executor) throws InterruptedException {
+        List<T> results = new ArrayList<>(entries.size());
+        if (executor == null) {
+            for (SourceEntry entry : entries) {
+                results.add(function.apply(entry));
+            }
+
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(entries.size());
+        for (SourceEntry entry : entries) {
+            futures.add(executor.submit(() -> function.apply(entry)));
+        }
+
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException runtime)
+                throw runtime;
+
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw ex;
+        }
+
+        return results;
+    }
+
+    private static @NotNull String indexKey(@NotNull EntryType type, @Nullable String namespace, @NotNull String path) {
+        return type.name() + '|' + namespace + '|' + path;
+    }
+
+    /**
+     * Create a new {@link AssetDeduplicator.Builder}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create() {
+        return new Builder();
+    }
+
+    private record Scan(@NotNull SourceEntry entry, @Nullable String key, @NotNull String extension, @Nullable String hash,
+                        long size, @NotNull List<ResourceReference> references, @Nullable String warning) {
+    }
+
+    /**
+     * {@link AssetDeduplicator} builder.
+     */
+    public static final class Builder {
+        private final List<PathMatcher> keep;
+
+        @ApiStatus.Internal
+        private Builder() {
+            this.keep = new ArrayList<>();
+        }
+
+        /**
+         * Never remove the entries matching glob patterns, ex: textures referenced by the server.
+         * <p>
+         * Patterns are matched against the full path of the entries, ex: {@code assets/example/textures/gui/**}.
+         *
+         * @param patterns glob patterns of the entries to keep.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder keep(@NotNull String... patterns) {
+            Objects.requireNonNull(patterns, "patterns must not be null!");
+
+            for (String pattern : patterns) {
+                this.keep.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            }
+
+            return this;
+        }
+
+        /**
+         * Create a new deduplicator with the provided settings.
+         *
+         * @return newly created {@link AssetDeduplicator}.
+         */
+        public @NotNull AssetDeduplicator build() {
+            return new AssetDeduplicator(List.copyOf(this.keep));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package fr.atlasworld.fresco.dedupe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Result of an {@link AssetDeduplicator} pass.
+ *
+ * @param duplicates full paths of the removed duplicates, mapped to the full path of the copy they were replaced with.
+ * @param rewrittenEntries amount of entries whose references were rewritten to point to the kept copies.
+ * @param bytesEliminated total size of the removed duplicates.
+ * @param warnings entries which could not be read, they are never removed and their references are not rewritten.
+ */
+public record DedupeReport(@NotNull SortedMap<String, String> duplicates, int rewrittenEntries, long bytesEliminated,
+                           @NotNull List<String> warnings) {
+
+    public DedupeReport {
+        duplicates = Collections.unmodifiableSortedMap(new TreeMap<>(duplicates));
+        warnings = List.copyOf(warnings);
+    }
+}
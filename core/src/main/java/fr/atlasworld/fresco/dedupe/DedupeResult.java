@@ -0,0 +1,20 @@
+package fr.atlasworld.fresco.dedupe;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Entries left after an {@link AssetDeduplicator} pass.
+ *
+ * @param entries entries to process, in their original order, without the duplicates,
+ *                entries whose references were rewritten are replaced by their rewritten version.
+ * @param report report of the pass.
+ */
+public record DedupeResult(@NotNull List<SourceEntry> entries, @NotNull DedupeReport report) {
+
+    public DedupeResult {
+        entries = List.copyOf(entries);
+    }
+}
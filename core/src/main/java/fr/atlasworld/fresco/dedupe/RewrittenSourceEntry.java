@@ -0,0 +1,82 @@
+package fr.atlasworld.fresco.dedupe;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Source entry whose content was rewritten, every other property comes from the original entry.
+ */
+final class RewrittenSourceEntry implements SourceEntry {
+    private final SourceEntry original;
+    private final byte[] content;
+
+    RewrittenSourceEntry(@NotNull SourceEntry original, byte @NotNull [] content) {
+        this.original = original;
+        this.content = content;
+    }
+
+    /**
+     * Entry this entry was rewritten from.
+     *
+     * @return original entry.
+     */
+    @NotNull SourceEntry original() {
+        return this.original;
+    }
+
+    @Override
+    public @NotNull String filename() {
+        return this.original.filename();
+    }
+
+    @Override
+    public @NotNull String key() {
+        return this.original.key();
+    }
+
+    @Override
+    public @NotNull String type() {
+        return this.original.type();
+    }
+
+    @Override
+    public @NotNull String namespace() {
+        return this.original.namespace();
+    }
+
+    @Override
+    public @NotNull String fullPath() {
+        return this.original.fullPath();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public boolean isInsideNamespace() {
+        return this.original.isInsideNamespace();
+    }
+
+    @Override
+    public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+        return this.original.entryType(definition);
+    }
+
+    @Override
+    public @NotNull InputStream openStream() {
+        return new ByteArrayInputStream(this.content);
+    }
+
+    @Override
+    public @NotNull ByteBuffer content() {
+        return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
+    }
+}
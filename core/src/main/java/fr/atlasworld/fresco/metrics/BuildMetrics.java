@@ -0,0 +1,257 @@
+package fr.atlasworld.fresco.metrics;
+
+import fr.atlasworld.fresco.processor.ProcessorCache;
+import fr.atlasworld.fresco.processor.TransformedEntry;
+import fr.atlasworld.fresco.source.EntryContentCache;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceArchive;
+import fr.atlasworld.fresco.source.SourceEntry;
+import jdk.jfr.Event;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of a {@link fr.atlasworld.fresco.FrescoProcessor} run, can be used from any thread.
+ * <p>
+ * Every measure also commits a JFR event when the event is enabled in the running recording,
+ * see {@code fr.atlasworld.fresco.EntryProcessed} and {@code fr.atlasworld.fresco.StageCall}.
+ */
+@ApiStatus.Internal
+public final class BuildMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final boolean cpuTime;
+    private final Map<String, StageCounters> stages;
+    private final Map<EntryType, TypeCounters> types;
+    private final LongAdder writeTime;
+
+    public BuildMetrics() {
+        this.cpuTime = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+        this.stages = new ConcurrentHashMap<>();
+        this.types = new ConcurrentHashMap<>();
+        this.writeTime = new LongAdder();
+    }
+
+    /**
+     * Start measuring a call of a processor or transformer.
+     *
+     * @return started measure.
+     */
+    public @NotNull Measure startStage() {
+        StageEvent event = new StageEvent();
+        event.begin();
+        return new Measure(System.nanoTime(), this.cpuTime ? THREADS.getCurrentThreadCpuTime() : -1, event);
+    }
+
+    /**
+     * Start measuring the processing of an entry.
+     *
+     * @return started measure.
+     */
+    public @NotNull Measure startEntry() {
+        EntryEvent event = new EntryEvent();
+        event.begin();
+        return new Measure(System.nanoTime(), -1, event);
+    }
+
+    /**
+     * Record a call of a processor or transformer, must be called from the thread which started the measure.
+     *
+     * @param measure measure started before the call.
+     * @param kind kind of stage.
+     * @param stage processor or transformer which was called.
+     * @param entry entry the stage was called for.
+     * @param bytesIn size of the entry given to the stage.
+     * @param bytesOut amount of bytes written by the stage.
+     * @param failed whether the call threw.
+     */
+    public void recordStage(@NotNull Measure measure, @NotNull StageMetrics.Kind kind, @NotNull Object stage, @NotNull SourceEntry entry,
+                            long bytesIn, long bytesOut, boolean failed) {
+        long wallTime = System.nanoTime() - measure.start;
+        long cpuTime = measure.cpuStart >= 0 ? THREADS.getCurrentThreadCpuTime() - measure.cpuStart : -1;
+        String name = nameOf(stage);
+
+        StageCounters counters = this.stages.computeIfAbsent(kind + ":" + name, key -> new StageCounters(name, kind));
+        counters.calls.increment();
+        counters.wallTime.add(wallTime);
+        counters.cpuTime.add(cpuTime);
+        counters.bytesIn.add(bytesIn);
+        counters.bytesOut.add(bytesOut);
+        if (failed)
+            counters.failures.increment();
+
+        StageEvent event = (StageEvent) measure.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = name;
+            event.kind = kind.name();
+            event.entry = entry.fullPath();
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record the processing of an entry.
+     *
+     * @param measure measure started before the entry was transformed.
+     * @param entry entry which was processed.
+     * @param type type of the entry.
+     * @param bytesIn size of the source entry.
+     * @param bytesOut size of the output entries, before compression.
+     */
+    public void recordEntry(@NotNull Measure measure, @NotNull SourceEntry entry, @NotNull EntryType type, long bytesIn, long bytesOut) {
+        long wallTime = System.nanoTime() - measure.start;
+
+        TypeCounters counters = this.types.computeIfAbsent(type, TypeCounters::new);
+        counters.entries.increment();
+        counters.wallTime.add(wallTime);
+        counters.bytesIn.add(bytesIn);
+        counters.bytesOut.add(bytesOut);
+
+        EntryEvent event = (EntryEvent) measure.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.entry = entry.fullPath();
+            event.type = type.name();
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record time spent writing processed entries to the outputs.
+     *
+     * @param nanos write time in nanoseconds.
+     */
+    public void recordWrite(long nanos) {
+        this.writeTime.add(nanos);
+    }
+
+    /**
+     * Create the report of everything recorded so far.
+     *
+     * @param wallTime wall-clock time of the whole run, in nanoseconds.
+     * @param compressTime time spent compressing the outputs, in nanoseconds.
+     *
+     * @return metrics report.
+     */
+    public @NotNull MetricsReport report(long wallTime, long compressTime) {
+        long transformTime = 0;
+        long processTime = 0;
+
+        List<StageMetrics> stages = new ArrayList<>(this.stages.size());
+        for (StageCounters counters : this.stages.values()) {
+            StageMetrics metrics = counters.metrics(this.cpuTime);
+            stages.add(metrics);
+
+            if (metrics.kind() == StageMetrics.Kind.TRANSFORMER)
+                transformTime += metrics.wallTime();
+            else
+                processTime += metrics.wallTime();
+        }
+
+        stages.sort(Comparator.comparingLong(StageMetrics::wallTime).reversed().thenComparing(StageMetrics::name));
+
+        List<TypeMetrics> types = new ArrayList<>(this.types.size());
+        for (TypeCounters counters : this.types.values()) {
+            types.add(new TypeMetrics(counters.type, counters.entries.sum(), counters.bytesIn.sum(), counters.bytesOut.sum(),
+                    counters.wallTime.sum()));
+        }
+
+        types.sort(Comparator.comparing(TypeMetrics::type));
+        return new MetricsReport(wallTime, transformTime, processTime, this.writeTime.sum(), compressTime, stages, types);
+    }
+
+    /**
+     * Resolve the size of an entry, without reading it when possible.
+     *
+     * @param entry entry to resolve the size of.
+     *
+     * @return size of the entry in bytes, {@code 0} if it could not be read.
+     */
+    public static long sizeOf(@NotNull SourceEntry entry) {
+        if (entry instanceof TransformedEntry transformed)
+            return transformed.size();
+
+        SourceEntry source = entry instanceof EntryContentCache.SharedEntry shared ? shared.source() : entry;
+        if (source instanceof SourceArchive.Entry archived)
+            return archived.size();
+
+        try {
+            Path file = entry.file();
+            return file != null ? Files.size(file) : entry.content().remaining();
+        } catch (IOException ex) {
+            return 0; // Reported by whoever reads the entry.
+        }
+    }
+
+    private static @NotNull String nameOf(@NotNull Object stage) {
+        Class<?> type = ProcessorCache.unwrap(stage).getClass();
+        String name = type.getSimpleName();
+        return name.isEmpty() ? type.getName() : name;
+    }
+
+    /**
+     * Started measure, only valid on the thread which started it.
+     */
+    public static final class Measure {
+        private final long start;
+        private final long cpuStart;
+        private final Event event;
+
+        private Measure(long start, long cpuStart, @NotNull Event event) {
+            this.start = start;
+            this.cpuStart = cpuStart;
+            this.event = event;
+        }
+    }
+
+    private static final class StageCounters {
+        private final String name;
+        private final StageMetrics.Kind kind;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder wallTime = new LongAdder();
+        private final LongAdder cpuTime = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+
+        private StageCounters(@NotNull String name, @NotNull StageMetrics.Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        private @NotNull StageMetrics metrics(boolean cpuTime) {
+            return new StageMetrics(this.name, this.kind, this.calls.sum(), this.failures.sum(), this.wallTime.sum(),
+                    cpuTime ? this.cpuTime.sum() : -1, this.bytesIn.sum(), this.bytesOut.sum());
+        }
+    }
+
+    private static final class TypeCounters {
+        private final EntryType type;
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder wallTime = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+
+        private TypeCounters(@NotNull EntryType type) {
+            this.type = type;
+        }
+    }
+}
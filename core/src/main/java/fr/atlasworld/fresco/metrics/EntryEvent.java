@@ -0,0 +1,25 @@
+package fr.atlasworld.fresco.metrics;
+
+import jdk.jfr.*;
+
+@Name("fr.atlasworld.fresco.EntryProcessed")
+@Label("Entry Processed")
+@Category("Fresco")
+@Description("Source entry transformed and processed")
+@StackTrace(false)
+final class EntryEvent extends Event {
+
+    @Label("Entry")
+    String entry;
+
+    @Label("Type")
+    String type;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+}
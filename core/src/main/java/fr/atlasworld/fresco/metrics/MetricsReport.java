@@ -0,0 +1,94 @@
+package fr.atlasworld.fresco.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Metrics of a {@link fr.atlasworld.fresco.FrescoProcessor} run.
+ * <p>
+ * Every time is in nanoseconds, phases running on several threads are summed across them.
+ *
+ * @param wallTime wall-clock time of the whole run.
+ * @param transformTime time spent reading and transforming entries, source entries are only read when first used.
+ * @param processTime time spent in the processors.
+ * @param writeTime wall-clock time spent writing the processed entries to the outputs, including waiting for their compression.
+ * @param compressTime time spent compressing entries.
+ * @param stages metrics of every processor and transformer, sorted by descending wall-clock time.
+ * @param types metrics of every entry type, sorted by type.
+ */
+public record MetricsReport(long wallTime, long transformTime, long processTime, long writeTime, long compressTime,
+                            @NotNull List<StageMetrics> stages, @NotNull List<TypeMetrics> types) {
+
+    public MetricsReport {
+        stages = List.copyOf(stages);
+        types = List.copyOf(types);
+    }
+
+    /**
+     * Convert the report to JSON.
+     *
+     * @return JSON representation of the report.
+     */
+    public @NotNull JsonObject toJson() {
+        JsonObject phases = new JsonObject();
+        phases.addProperty("transformNanos", this.transformTime);
+        phases.addProperty("processNanos", this.processTime);
+        phases.addProperty("writeNanos", this.writeTime);
+        phases.addProperty("compressNanos", this.compressTime);
+
+        JsonArray stages = new JsonArray(this.stages.size());
+        for (StageMetrics stage : this.stages) {
+            JsonObject json = new JsonObject();
+            json.addProperty("name", stage.name());
+            json.addProperty("kind", stage.kind().name().toLowerCase(Locale.ROOT));
+            json.addProperty("calls", stage.calls());
+            json.addProperty("failures", stage.failures());
+            json.addProperty("wallNanos", stage.wallTime());
+            json.addProperty("cpuNanos", stage.cpuTime());
+            json.addProperty("bytesIn", stage.bytesIn());
+            json.addProperty("bytesOut", stage.bytesOut());
+            stages.add(json);
+        }
+
+        JsonArray types = new JsonArray(this.types.size());
+        for (TypeMetrics type : this.types) {
+            JsonObject json = new JsonObject();
+            json.addProperty("type", type.type().name().toLowerCase(Locale.ROOT));
+            json.addProperty("entries", type.entries());
+            json.addProperty("bytesIn", type.bytesIn());
+            json.addProperty("bytesOut", type.bytesOut());
+            json.addProperty("wallNanos", type.wallTime());
+            types.add(json);
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("wallNanos", this.wallTime);
+        json.add("phases", phases);
+        json.add("stages", stages);
+        json.add("types", types);
+        return json;
+    }
+
+    /**
+     * Save the report to a file as JSON.
+     *
+     * @param file file to save the report to.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void save(@NotNull File file) throws IOException {
+        Objects.requireNonNull(file, "File cannot be null!");
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(this.toJson(), writer);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package fr.atlasworld.fresco.metrics;
+
+import jdk.jfr.*;
+
+@Name("fr.atlasworld.fresco.StageCall")
+@Label("Stage Call")
+@Category("Fresco")
+@Description("Processor or transformer called for a source entry")
+@StackTrace(false)
+final class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Entry")
+    String entry;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,29 @@
+package fr.atlasworld.fresco.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of a processor or transformer, summed across every entry it was called for.
+ * <p>
+ * Stages of the same class are merged together.
+ *
+ * @param name class name of the stage.
+ * @param kind whether the stage is a processor or a transformer.
+ * @param calls amount of entries the stage was called for.
+ * @param failures amount of calls which threw.
+ * @param wallTime wall-clock time spent in the stage, in nanoseconds.
+ * @param cpuTime CPU time spent in the stage, in nanoseconds, or {@code -1} if the JVM does not measure it.
+ * @param bytesIn size of the entries given to the stage.
+ * @param bytesOut amount of bytes written by the stage, a transformer leaving an entry untouched passes it on as is.
+ */
+public record StageMetrics(@NotNull String name, @NotNull Kind kind, long calls, long failures, long wallTime, long cpuTime,
+                           long bytesIn, long bytesOut) {
+
+    /**
+     * Kind of stage.
+     */
+    public enum Kind {
+        TRANSFORMER,
+        PROCESSOR
+    }
+}
@@ -0,0 +1,16 @@
+package fr.atlasworld.fresco.metrics;
+
+import fr.atlasworld.fresco.source.EntryType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of every entry of a type.
+ *
+ * @param type type of the entries.
+ * @param entries amount of entries processed.
+ * @param bytesIn size of the source entries.
+ * @param bytesOut size of the output entries before compression, entries carried over from a previous build are not counted.
+ * @param wallTime wall-clock time spent transforming and processing the entries, in nanoseconds, summed across every thread.
+ */
+public record TypeMetrics(@NotNull EntryType type, long entries, long bytesIn, long bytesOut, long wallTime) {
+}
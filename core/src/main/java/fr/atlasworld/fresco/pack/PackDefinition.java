@@ -3,6 +3,7 @@ package fr.atlasworld.fresco.pack;
 import fr.atlasworld.fresco.source.EntryType;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -82,4 +83,45 @@ public class PackDefinition {
         Objects.requireNonNull(path, "Path cannot be null!");
         return this.definitions.getOrDefault(path, EntryType.CUSTOM);
     }
+
+    /**
+     * Retrieve every directory associated with a type.
+     *
+     * @param type type to retrieve the directories of.
+     *
+     * @return directories associated with the type, sorted by name.
+     */
+    public @NotNull List<String> directoriesOf(@NotNull EntryType type) {
+        Objects.requireNonNull(type, "type must not be null!");
+
+        List<String> directories = new ArrayList<>();
+        this.definitions.forEach((path, definedType) -> {
+            if (definedType == type)
+                directories.add(path);
+        });
+
+        directories.sort(null);
+        return directories;
+    }
+
+    /**
+     * Determine the type of an entry from its location relative to the root of the resource pack.
+     * <p>
+     * Ex: {@code assets/minecraft/models/item/foo.json} would be {@link EntryType#MODELS}.
+     *
+     * @param location location of the entry relative to the root of the resource pack.
+     *
+     * @return associated entry type, {@link EntryType#CUSTOM} for entries outside a type directory.
+     */
+    public @NotNull EntryType determineLocationType(@NotNull String location) {
+        Objects.requireNonNull(location, "Location cannot be null!");
+
+        // assets/<namespace>/<type>/<key>
+        int namespaceEnd = location.indexOf('/', location.indexOf('/') + 1);
+        int typeEnd = namespaceEnd < 0 ? -1 : location.indexOf('/', namespaceEnd + 1);
+        if (typeEnd < 0)
+            return EntryType.CUSTOM;
+
+        return this.determineType(location.substring(namespaceEnd + 1, typeEnd));
+    }
 }
@@ -0,0 +1,22 @@
+package fr.atlasworld.fresco.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Resource processor whose results can be cached by a {@link ProcessorCache}.
+ * <p>
+ * A cacheable processor must be pure: its output may only depend on the path and content of the processed entry.
+ */
+public interface CacheableProcessor extends ResourceProcessor {
+
+    /**
+     * Identity and version of the processor, used as part of the cache key.
+     * <p>
+     * Must change whenever the processor would produce a different output for the same entry.
+     * <br>
+     * Ex: {@code json-minifier:2}
+     *
+     * @return the cache key of the processor.
+     */
+    @NotNull String cacheKey();
+}
@@ -0,0 +1,22 @@
+package fr.atlasworld.fresco.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Entry transformer whose results can be cached by a {@link ProcessorCache}.
+ * <p>
+ * A cacheable transformer must be pure: its output may only depend on the path and content of the transformed entry.
+ */
+public interface CacheableTransformer extends EntryTransformer {
+
+    /**
+     * Identity and version of the transformer, used as part of the cache key.
+     * <p>
+     * Must change whenever the transformer would produce a different output for the same entry.
+     * <br>
+     * Ex: {@code json-minifier:2}
+     *
+     * @return the cache key of the transformer.
+     */
+    @NotNull String cacheKey();
+}
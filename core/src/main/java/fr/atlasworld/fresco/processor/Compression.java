@@ -0,0 +1,74 @@
+package fr.atlasworld.fresco.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Compression applied to an entry of the output archive.
+ *
+ * @param method compression method.
+ * @param level deflate level, from {@code 0} to {@code 9} or {@link Deflater#DEFAULT_COMPRESSION}.
+ * @param minGain minimum ratio of bytes a trial deflate must save for an {@link Method#AUTO AUTO} entry to be deflated.
+ */
+public record Compression(@NotNull Method method, int level, double minGain) implements Serializable {
+    public static final Compression STORED = new Compression(Method.STORED, Deflater.NO_COMPRESSION, 0);
+    public static final Compression DEFLATED = new Compression(Method.DEFLATED, Deflater.DEFAULT_COMPRESSION, 0);
+
+    public Compression {
+        Objects.requireNonNull(method, "Method cannot be null!");
+
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Invalid deflate level: " + level);
+
+        if (minGain < 0 || minGain > 1)
+            throw new IllegalArgumentException("Minimum gain must be between 0 and 1!");
+    }
+
+    /**
+     * Deflate entries with a specific level.
+     *
+     * @param level deflate level, from {@code 0} to {@code 9}.
+     *
+     * @return deflate compression.
+     */
+    public static @NotNull Compression deflate(int level) {
+        return new Compression(Method.DEFLATED, level, 0);
+    }
+
+    /**
+     * Deflate entries with a specific level, unless a trial deflate saves less than {@code minGain} of their size,
+     * in which case they are stored.
+     *
+     * @param level deflate level, from {@code 0} to {@code 9}.
+     * @param minGain minimum ratio of saved bytes, ex: {@code 0.05} for 5%.
+     *
+     * @return automatic compression.
+     */
+    public static @NotNull Compression auto(int level, double minGain) {
+        return new Compression(Method.AUTO, level, minGain);
+    }
+
+    /**
+     * Compression methods.
+     */
+    public enum Method {
+
+        /**
+         * Entries are stored without any compression.
+         */
+        STORED,
+
+        /**
+         * Entries are deflated.
+         */
+        DEFLATED,
+
+        /**
+         * Entries are either stored or deflated, depending on the result of a trial deflate.
+         */
+        AUTO
+    }
+}
@@ -0,0 +1,103 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.EntryType;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Compression policy, decides how each entry of the output archive is compressed.
+ * <p>
+ * Rules are resolved by file extension first, then by entry type, then falls back to the default compression.
+ */
+public final class CompressionPolicy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Concrete types, the policy is snapshot by Gradle through serialization.
+    private final HashMap<String, Compression> extensions;
+    private final EnumMap<EntryType, Compression> types;
+    private Compression defaultCompression;
+
+    /**
+     * Create a new compression policy deflating every entry with the default level.
+     */
+    public CompressionPolicy() {
+        this.extensions = new HashMap<>();
+        this.types = new EnumMap<>(EntryType.class);
+        this.defaultCompression = Compression.DEFLATED;
+    }
+
+    /**
+     * Sets the compression used by entries no rule applies to.
+     *
+     * @param compression default compression.
+     */
+    public void setDefaultCompression(@NotNull Compression compression) {
+        Objects.requireNonNull(compression, "compression must not be null!");
+        this.defaultCompression = compression;
+    }
+
+    /**
+     * Sets the compression of all entries of a type.
+     *
+     * @param type type of entries.
+     * @param compression compression to use.
+     *
+     * @throws IllegalArgumentException if the {@code type} is {@link EntryType#ALL}, use {@link #setDefaultCompression(Compression)} instead.
+     */
+    public void setTypeCompression(@NotNull EntryType type, @NotNull Compression compression) {
+        Objects.requireNonNull(type, "type must not be null!");
+        Objects.requireNonNull(compression, "compression must not be null!");
+
+        if (type == EntryType.ALL)
+            throw new IllegalArgumentException("Cannot set compression for ALL type, set the default compression instead");
+
+        this.types.put(type, compression);
+    }
+
+    /**
+     * Sets the compression of all entries with a file extension.
+     *
+     * @param extension file extension, with or without the leading dot. (ex: {@code png})
+     * @param compression compression to use.
+     */
+    public void setExtensionCompression(@NotNull String extension, @NotNull Compression compression) {
+        Objects.requireNonNull(extension, "extension must not be null!");
+        Objects.requireNonNull(compression, "compression must not be null!");
+
+        this.extensions.put(normalizeExtension(extension), compression);
+    }
+
+    /**
+     * Resolve the compression of an entry.
+     *
+     * @param type type of the entry.
+     * @param location location of the entry in the output archive.
+     *
+     * @return compression to use for the entry.
+     */
+    public @NotNull Compression resolve(@NotNull EntryType type, @NotNull String location) {
+        Objects.requireNonNull(type, "type must not be null!");
+        Objects.requireNonNull(location, "location must not be null!");
+
+        if (!this.extensions.isEmpty()) {
+            int extensionIndex = location.lastIndexOf('.');
+            if (extensionIndex > location.lastIndexOf('/')) {
+                Compression compression = this.extensions.get(normalizeExtension(location.substring(extensionIndex + 1)));
+                if (compression != null)
+                    return compression;
+            }
+        }
+
+        return this.types.getOrDefault(type, this.defaultCompression);
+    }
+
+    private static @NotNull String normalizeExtension(@NotNull String extension) {
+        String normalized = extension.startsWith(".") ? extension.substring(1) : extension;
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+}
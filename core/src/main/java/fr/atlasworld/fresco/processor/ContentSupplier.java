@@ -0,0 +1,22 @@
+package fr.atlasworld.fresco.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Supplies the content of an entry, it may be opened any amount of times.
+ */
+@FunctionalInterface
+interface ContentSupplier {
+
+    /**
+     * Open the content of the entry.
+     *
+     * @return input stream containing the content.
+     *
+     * @throws IOException if the content could not be opened.
+     */
+    @NotNull InputStream open() throws IOException;
+}
@@ -0,0 +1,219 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.FrescoProcessor;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipException;
+
+/**
+ * Output target writing every entry as a file of an exploded directory, nothing is compressed.
+ * <p>
+ * Copied entries backed by a {@link SourceEntry#file() file} are hard-linked to it, or copied when linking fails,
+ * only generated content is actually written. Files are always replaced rather than written to,
+ * so a linked source file is never modified. Once closed, files of the directory which were not part of the output
+ * are deleted, along with the directories left empty.
+ */
+final class DirectoryOutputTarget implements OutputTarget {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final boolean keepExisting;
+    private final Set<String> locations;
+    private final AtomicLong size;
+    private boolean closed;
+
+    /**
+     * Create a new directory target.
+     *
+     * @param directory directory the entries are written to, created if missing.
+     * @param keepExisting whether files already in the directory may be {@link #keep(String) kept}.
+     *
+     * @throws IOException if the directory could not be created, is a file,
+     *                     or already contains files without being a resource pack.
+     */
+    DirectoryOutputTarget(@NotNull File directory, boolean keepExisting) throws IOException {
+        this.directory = directory.toPath().toAbsolutePath().normalize();
+        this.keepExisting = keepExisting;
+        this.locations = ConcurrentHashMap.newKeySet();
+        this.size = new AtomicLong();
+
+        // Stale files get deleted, make sure this is not someone else's directory.
+        if (Files.isRegularFile(this.directory)) {
+            throw new IOException("Output directory '" + this.directory + "' is a file");
+        } else if (Files.isDirectory(this.directory) && !Files.exists(this.directory.resolve(FrescoProcessor.META_FILE_LOCATION))) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                if (stream.iterator().hasNext())
+                    throw new IOException("Output directory '" + this.directory + "' is not empty and is not a resource pack");
+            }
+        }
+
+        Files.createDirectories(this.directory);
+    }
+
+    @Override
+    public void copy(@NotNull SourceEntry entry, @NotNull String location) throws IOException {
+        Path source = entry.file();
+        if (source == null) {
+            try (InputStream input = entry.openStream()) {
+                this.write(input, location);
+            }
+
+            return;
+        }
+
+        Path target = this.claim(location);
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS) && Files.isSameFile(source, target)) {
+            this.size.addAndGet(Files.size(target));
+            return;
+        }
+
+        Path temporary = temporary(target);
+        try {
+            Files.createLink(temporary, source);
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Across file systems, or not supported by the file system.
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        this.replace(temporary, target);
+    }
+
+    @Override
+    public void write(byte @NotNull [] bytes, @NotNull String location) throws IOException {
+        Path target = this.claim(location);
+        Path temporary = temporary(target);
+
+        Files.write(temporary, bytes);
+        this.replace(temporary, target);
+    }
+
+    @Override
+    public void write(@NotNull InputStream input, @NotNull String location) throws IOException {
+        try (OutputStream output = this.open(location)) {
+            input.transferTo(output);
+        }
+    }
+
+    @Override
+    public @NotNull OutputStream open(@NotNull String location) throws IOException {
+        Path target = this.claim(location);
+        Path temporary = temporary(target);
+
+        return new FilterOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            private boolean closed;
+
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (this.closed)
+                    return;
+
+                this.closed = true;
+                super.close();
+                DirectoryOutputTarget.this.replace(temporary, target);
+            }
+        };
+    }
+
+    @Override
+    public boolean canKeep(@NotNull String location) {
+        return this.keepExisting && Files.isRegularFile(this.directory.resolve(location));
+    }
+
+    @Override
+    public void keep(@NotNull String location) throws IOException {
+        Path target = this.claim(location);
+        if (!this.keepExisting || !Files.isRegularFile(target))
+            throw new IOException("Entry '" + location + "' is not part of the previous output");
+
+        this.size.addAndGet(Files.size(target));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Total size of the files of the output.
+     *
+     * @return amount of bytes of the output files.
+     */
+    long size() {
+        return this.size.get();
+    }
+
+    // Reserves the location and resolves its file, entries can't be written outside the directory.
+    private @NotNull Path claim(@NotNull String location) throws IOException {
+        Path target = this.directory.resolve(location).normalize();
+        if (!target.startsWith(this.directory) || target.equals(this.directory))
+            throw new IOException("Entry '" + location + "' is outside of the output directory");
+
+        if (!this.locations.add(target.toString()))
+            throw new ZipException("duplicate entry: " + location);
+
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    private void replace(@NotNull Path temporary, @NotNull Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+
+        this.size.addAndGet(Files.size(target));
+    }
+
+    private static @NotNull Path temporary(@NotNull Path target) {
+        return target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        Files.walkFileTree(this.directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!DirectoryOutputTarget.this.locations.contains(file.toString()))
+                    Files.delete(file);
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException ex) throws IOException {
+                if (ex != null)
+                    throw ex;
+
+                if (dir.equals(DirectoryOutputTarget.this.directory))
+                    return FileVisitResult.CONTINUE;
+
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                    if (!stream.iterator().hasNext())
+                        Files.delete(dir);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,233 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Resolves the {@link Compression} of the output entries and compresses them, can be used from any thread.
+ * <p>
+ * Deflaters and buffers are pooled, so compressing many entries does not allocate native memory for each of them.
+ */
+final class EntryCompressor implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Amount of bytes deflated to decide whether an AUTO entry should be stored.
+    private static final int TRIAL_SIZE = 64 * 1024;
+
+    private final CompressionPolicy policy;
+    private final PackDefinition definition;
+    private final Queue<Worker> workers;
+    private final LongAdder time;
+
+    EntryCompressor(@NotNull CompressionPolicy policy, @NotNull PackDefinition definition) {
+        this.policy = policy;
+        this.definition = definition;
+        this.workers = new ConcurrentLinkedQueue<>();
+        this.time = new LongAdder();
+    }
+
+    /**
+     * Time spent resolving compressions and compressing entries, summed across every thread.
+     *
+     * @return compression time in nanoseconds.
+     */
+    long time() {
+        return this.time.sum();
+    }
+
+    /**
+     * Resolve the configured compression of an entry, without resolving {@link Compression.Method#AUTO AUTO}.
+     *
+     * @param location location of the entry.
+     *
+     * @return configured compression of the entry.
+     */
+    @NotNull Compression configured(@NotNull String location) {
+        return this.policy.resolve(this.definition.determineLocationType(location), location);
+    }
+
+    /**
+     * Resolve the compression of an entry, {@link Compression.Method#AUTO AUTO} is resolved using a trial deflate.
+     *
+     * @param location location of the entry.
+     * @param content content of the entry.
+     *
+     * @return either a stored or deflated compression.
+     *
+     * @throws IOException if the content could not be read.
+     */
+    @NotNull Compression resolve(@NotNull String location, @NotNull ContentSupplier content) throws IOException {
+        Compression compression = this.configured(location);
+        if (compression.method() != Compression.Method.AUTO)
+            return compression;
+
+        long start = System.nanoTime();
+        Worker worker = this.borrow();
+        try {
+            int sampleSize;
+            try (InputStream input = content.open()) {
+                sampleSize = input.readNBytes(worker.input, 0, Math.min(TRIAL_SIZE, worker.input.length));
+            }
+
+            if (sampleSize == 0)
+                return Compression.STORED;
+
+            Deflater deflater = worker.deflater;
+            deflater.reset();
+            deflater.setLevel(compression.level());
+            deflater.setInput(worker.input, 0, sampleSize);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                deflater.deflate(worker.output);
+            }
+
+            double gain = 1 - (double) deflater.getBytesWritten() / sampleSize;
+            return gain < compression.minGain() ? Compression.STORED : Compression.deflate(compression.level());
+        } finally {
+            this.release(worker);
+            this.time.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Compute the checksum and size of some content.
+     *
+     * @param content content to checksum.
+     *
+     * @return {@code [crc, size]} of the content.
+     *
+     * @throws IOException if the content could not be read.
+     */
+    long @NotNull [] checksum(@NotNull ContentSupplier content) throws IOException {
+        Worker worker = this.borrow();
+        try (InputStream input = content.open()) {
+            CRC32 crc = new CRC32();
+            long size = 0;
+
+            int read;
+            while ((read = input.read(worker.input)) != -1) {
+                crc.update(worker.input, 0, read);
+                size += read;
+            }
+
+            return new long[]{crc.getValue(), size};
+        } finally {
+            this.release(worker);
+        }
+    }
+
+    /**
+     * Compress an entry entirely, so it can be appended to an archive later.
+     *
+     * @param location location of the entry.
+     * @param content content of the entry.
+     *
+     * @return compressed entry, it must be {@link CompressedEntry#release() released} once written.
+     *
+     * @throws IOException if the content could not be read or compressed.
+     */
+    @NotNull CompressedEntry compress(@NotNull String location, @NotNull ContentSupplier content) throws IOException {
+        Compression compression = this.resolve(location, content);
+
+        if (compression.method() == Compression.Method.STORED) {
+            long[] checksum = this.checksum(content);
+            return new CompressedEntry(location, ZipEntry.STORED, checksum[0], checksum[1], checksum[1], content, null);
+        }
+
+        long start = System.nanoTime();
+        SpillOutputStream data = new SpillOutputStream();
+        Worker worker = this.borrow();
+        try (InputStream input = content.open()) {
+            Deflater deflater = worker.deflater;
+            deflater.reset();
+            deflater.setLevel(compression.level());
+
+            CRC32 crc = new CRC32();
+            long size = 0;
+
+            int read;
+            while ((read = input.read(worker.input)) != -1) {
+                crc.update(worker.input, 0, read);
+                size += read;
+
+                deflater.setInput(worker.input, 0, read);
+                while (!deflater.needsInput()) {
+                    data.write(worker.output, 0, deflater.deflate(worker.output));
+                }
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                data.write(worker.output, 0, deflater.deflate(worker.output));
+            }
+
+            data.close();
+            return new CompressedEntry(location, ZipEntry.DEFLATED, crc.getValue(), data.size(), size, data::openStream, data);
+        } catch (IOException | RuntimeException ex) {
+            data.close();
+            data.delete();
+            throw ex;
+        } finally {
+            this.release(worker);
+            this.time.add(System.nanoTime() - start);
+        }
+    }
+
+    private @NotNull Worker borrow() {
+        Worker worker = this.workers.poll();
+        return worker != null ? worker : new Worker();
+    }
+
+    private void release(@NotNull Worker worker) {
+        this.workers.add(worker);
+    }
+
+    @Override
+    public void close() {
+        Worker worker;
+        while ((worker = this.workers.poll()) != null) {
+            worker.deflater.end();
+        }
+    }
+
+    /**
+     * Entry whose checksum and sizes are known, ready to be appended to an archive.
+     *
+     * @param location location of the entry.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param crc CRC-32 of the uncompressed content.
+     * @param compressedSize size of the data.
+     * @param size size of the uncompressed content.
+     * @param data data of the entry, compressed with {@code method}.
+     * @param buffer buffer holding the compressed data, if any.
+     */
+    record CompressedEntry(@NotNull String location, int method, long crc, long compressedSize, long size,
+                           @NotNull ContentSupplier data, @Nullable SpillOutputStream buffer) {
+
+        /**
+         * Release the resources held by the compressed data.
+         */
+        void release() {
+            if (this.buffer != null)
+                this.buffer.delete();
+        }
+    }
+
+    private static final class Worker {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final byte[] output = new byte[BUFFER_SIZE];
+    }
+}
@@ -0,0 +1,34 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stage of the transform pipeline of an entry, rewriting its content in place.
+ * <p>
+ * Transformers registered for the same entry are chained in registration order, every stage receives the output of the
+ * previous one as an in-memory {@link SourceEntry}, and only the result of the last stage is written to the resource pack.
+ * Transformers run before the {@link ResourceProcessor processors} of the entry, which then receive the transformed entry.
+ */
+@FunctionalInterface
+public interface EntryTransformer {
+
+    /**
+     * Transform the content of an entry.
+     * <p>
+     * When the {@link fr.atlasworld.fresco.FrescoProcessor} runs in parallel,
+     * this method may be called concurrently for different entries.
+     *
+     * @param entry entry to transform, possibly the output of a previous stage.
+     * @param output output receiving the transformed content of the entry.
+     *
+     * @return {@code true} if the entry was transformed into {@code output},
+     *         {@code false} to leave the entry unchanged, anything written to {@code output} is then discarded.
+     *
+     * @throws IOException if the transformer could not properly transform the entry, the entry is left unchanged.
+     */
+    boolean transform(@NotNull SourceEntry entry, @NotNull OutputStream output) throws IOException;
+}
@@ -0,0 +1,226 @@
+package fr.atlasworld.fresco.processor;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Built-in processor re-emitting JSON entries without any whitespace, it can be used either as a processor or a transformer.
+ * <p>
+ * Entries are minified token by token, no tree is ever built, so the memory usage does not depend on the size of the entry.
+ * Entries which are not valid JSON are copied untouched.
+ */
+public final class JsonMinifier implements CacheableProcessor, CacheableTransformer {
+
+    /**
+     * Entry types containing JSON which are minified by default.
+     */
+    public static final Set<EntryType> DEFAULT_TYPES = Set.of(EntryType.MODELS, EntryType.BLOCKSTATES, EntryType.ATLASES,
+            EntryType.ITEMS, EntryType.LANGUAGES);
+
+    private static final String JSON_EXTENSION = ".json";
+
+    private final AtomicLong minifiedEntries = new AtomicLong();
+    private final AtomicLong inputBytes = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+
+    @Override
+    public boolean process(@NotNull SourceEntry entry, @NotNull ProcessorOutput output) throws IOException {
+        // Minified to a buffer first, so invalid entries leave nothing behind in the output.
+        SpillOutputStream minified = new SpillOutputStream();
+        try {
+            boolean transformed;
+            try (minified) {
+                transformed = this.transform(entry, minified);
+            }
+
+            if (!transformed)
+                return true;
+
+            try (InputStream input = minified.openStream()) {
+                output.writeEntry(input, entry.fullPath());
+            }
+
+            return false;
+        } finally {
+            minified.delete();
+        }
+    }
+
+    @Override
+    public boolean transform(@NotNull SourceEntry entry, @NotNull OutputStream output) throws IOException {
+        if (!entry.filename().endsWith(JSON_EXTENSION))
+            return false;
+
+        CountingOutputStream minified = new CountingOutputStream(output);
+        long inputSize;
+        try (CountingInputStream input = new CountingInputStream(entry.openStream())) {
+            minify(input, minified);
+
+            // Trailing whitespace is not consumed by the reader, but is part of the saved bytes.
+            input.transferTo(OutputStream.nullOutputStream());
+            inputSize = input.count;
+        } catch (IOException | IllegalStateException ex) {
+            throw new IOException("Failed to minify entry '" + entry.fullPath() + "'", ex);
+        }
+
+        this.minifiedEntries.incrementAndGet();
+        this.inputBytes.addAndGet(inputSize);
+        this.outputBytes.addAndGet(minified.count);
+        return true;
+    }
+
+    /**
+     * Minify JSON from an input stream to an output stream, both encoded in UTF-8.
+     * <p>
+     * Neither streams are closed.
+     *
+     * @param input JSON to minify.
+     * @param output output to write the minified JSON to.
+     *
+     * @throws IOException if the input is not valid JSON, or could not be read or written.
+     */
+    public static void minify(@NotNull InputStream input, @NotNull OutputStream output) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        reader.setStrictness(Strictness.LENIENT);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.setStrictness(Strictness.LENIENT);
+
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT -> {
+                    reader.beginObject();
+                    jsonWriter.beginObject();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    reader.endObject();
+                    jsonWriter.endObject();
+                    depth--;
+                }
+                case BEGIN_ARRAY -> {
+                    reader.beginArray();
+                    jsonWriter.beginArray();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    reader.endArray();
+                    jsonWriter.endArray();
+                    depth--;
+                }
+                case NAME -> jsonWriter.name(reader.nextName());
+                case STRING -> jsonWriter.value(reader.nextString());
+                // Written back as is, so numbers keep their exact representation.
+                case NUMBER -> jsonWriter.jsonValue(reader.nextString());
+                case BOOLEAN -> jsonWriter.value(reader.nextBoolean());
+                case NULL -> {
+                    reader.nextNull();
+                    jsonWriter.nullValue();
+                }
+                case END_DOCUMENT -> throw new EOFException("Unexpected end of JSON document");
+            }
+        } while (depth > 0);
+
+        jsonWriter.flush();
+    }
+
+    @Override
+    public @NotNull String cacheKey() {
+        return "json-minifier:1";
+    }
+
+    /**
+     * Amount of entries minified by this processor.
+     * <p>
+     * Entries whose result was retrieved from a {@link ProcessorCache} are not counted.
+     *
+     * @return amount of minified entries.
+     */
+    public long minifiedEntries() {
+        return this.minifiedEntries.get();
+    }
+
+    /**
+     * Amount of bytes of JSON read by this processor.
+     *
+     * @return size of the entries before minification.
+     */
+    public long inputBytes() {
+        return this.inputBytes.get();
+    }
+
+    /**
+     * Amount of bytes of JSON written by this processor.
+     *
+     * @return size of the entries after minification.
+     */
+    public long outputBytes() {
+        return this.outputBytes.get();
+    }
+
+    /**
+     * Amount of bytes saved by minifying the entries.
+     *
+     * @return difference between the size of the entries before and after minification.
+     */
+    public long bytesSaved() {
+        return this.inputBytes() - this.outputBytes();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(@NotNull InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1)
+                this.count++;
+
+            return read;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read != -1)
+                this.count += read;
+
+            return read;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(@NotNull OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Destination of everything written to a {@link ProcessorOutput}.
+ */
+interface OutputTarget extends Closeable {
+
+    /**
+     * Copy the contents of a source entry to the target.
+     *
+     * @param entry entry to copy.
+     * @param location location of the entry in the target.
+     *
+     * @throws IOException if the entry could not be copied.
+     */
+    void copy(@NotNull SourceEntry entry, @NotNull String location) throws IOException;
+
+    /**
+     * Write raw bytes to the target.
+     *
+     * @param bytes bytes to write.
+     * @param location location of the entry in the target.
+     *
+     * @throws IOException if the entry could not be written.
+     */
+    void write(byte @NotNull [] bytes, @NotNull String location) throws IOException;
+
+    /**
+     * Stream the content of an input stream to the target.
+     *
+     * @param input input to write, it is not closed by the target.
+     * @param location location of the entry in the target.
+     *
+     * @throws IOException if the entry could not be written.
+     */
+    void write(@NotNull InputStream input, @NotNull String location) throws IOException;
+
+    /**
+     * Open a new entry in the target, the entry is complete once the returned stream is closed.
+     *
+     * @param location location of the entry in the target.
+     *
+     * @return output stream to write the entry content to.
+     *
+     * @throws IOException if the entry could not be opened.
+     */
+    @NotNull OutputStream open(@NotNull String location) throws IOException;
+
+    /**
+     * Check whether the previous archive of the target contains an entry which can be {@link #keep(String) kept}.
+     *
+     * @param location location of the entry in the previous archive.
+     *
+     * @return true if the entry can be kept.
+     */
+    boolean canKeep(@NotNull String location);
+
+    /**
+     * Keep an entry of the previous archive of the target, its compressed data is reused as-is.
+     *
+     * @param location location of the entry, in both the previous archive and the target.
+     *
+     * @throws IOException if the entry could not be kept.
+     */
+    void keep(@NotNull String location) throws IOException;
+
+    /**
+     * Flush any pending content of the target.
+     *
+     * @throws IOException if the content could not be flushed.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,691 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Built-in processor losslessly reducing the size of PNG textures, it can be used either as a processor or a transformer.
+ * <p>
+ * Every ancillary chunk except {@code tRNS} is stripped, then the image is re-encoded with the smallest
+ * color type and bit depth able to hold its pixels, the best filter for every scanline and maximum deflate effort.
+ * The smallest of all the attempted encodings is kept, textures which could not be reduced are copied untouched.
+ * <p>
+ * Interlaced images are only stripped of their chunks, animated images and images with unknown critical chunks are left alone.
+ * Texture {@code .mcmeta} files are never touched.
+ */
+public final class PngOptimizer implements CacheableProcessor, CacheableTransformer {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final String PNG_EXTENSION = ".png";
+
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+    private static final int ACTL = 0x6163544C;
+
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGB_ALPHA = 6;
+
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean process(@NotNull SourceEntry entry, @NotNull ProcessorOutput output) throws IOException {
+        byte[] optimized = this.optimize(entry);
+        if (optimized == null)
+            return true;
+
+        output.writeEntry(optimized, entry.fullPath());
+        return false;
+    }
+
+    @Override
+    public boolean transform(@NotNull SourceEntry entry, @NotNull OutputStream output) throws IOException {
+        byte[] optimized = this.optimize(entry);
+        if (optimized == null)
+            return false;
+
+        output.write(optimized);
+        return true;
+    }
+
+    // Returns the optimized texture, or null if the entry should be left untouched.
+    private byte @Nullable [] optimize(@NotNull SourceEntry entry) throws IOException {
+        if (!entry.filename().endsWith(PNG_EXTENSION))
+            return null;
+
+        byte[] original;
+        try (InputStream input = entry.openStream()) {
+            original = input.readAllBytes();
+        }
+
+        byte[] optimized;
+        try {
+            optimized = optimize(original);
+        } catch (IOException ex) {
+            throw new IOException("Failed to optimize texture '" + entry.fullPath() + "'", ex);
+        }
+
+        if (optimized == null || optimized.length >= original.length) {
+            this.results.put(entry.fullPath(), new Result(original.length, original.length));
+            return null;
+        }
+
+        this.results.put(entry.fullPath(), new Result(original.length, optimized.length));
+        return optimized;
+    }
+
+    @Override
+    public @NotNull String cacheKey() {
+        return "png-optimizer:1";
+    }
+
+    /**
+     * Results of every texture optimized by this processor, by full path.
+     * <p>
+     * Textures whose result was retrieved from a {@link ProcessorCache} are not included.
+     *
+     * @return optimization results, sorted by full path.
+     */
+    public @NotNull SortedMap<String, Result> results() {
+        return new TreeMap<>(this.results);
+    }
+
+    /**
+     * Amount of bytes saved across every texture optimized by this processor.
+     *
+     * @return total amount of bytes saved.
+     */
+    public long bytesSaved() {
+        long saved = 0;
+        for (Result result : this.results.values()) {
+            saved += result.saved();
+        }
+
+        return saved;
+    }
+
+    /**
+     * Losslessly optimize a PNG image.
+     *
+     * @param png PNG image to optimize.
+     *
+     * @return the optimized image, or {@code null} if the image uses features which can't be safely optimized.
+     *         The optimized image may be larger than the original one.
+     *
+     * @throws IOException if the image is not a valid PNG.
+     */
+    public static byte @Nullable [] optimize(byte @NotNull [] png) throws IOException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(png, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length))
+            throw new IOException("Not a PNG image");
+
+        ByteBuffer buffer = ByteBuffer.wrap(png, SIGNATURE.length, png.length - SIGNATURE.length);
+        Header header = null;
+        byte[] palette = null;
+        byte[] transparency = null;
+        ByteArrayOutputStream data = new ByteArrayOutputStream(png.length);
+
+        boolean end = false;
+        while (!end) {
+            if (buffer.remaining() < 12)
+                throw new IOException("Truncated PNG image");
+
+            int length = buffer.getInt();
+            int type = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() - 4)
+                throw new IOException("Invalid PNG chunk length");
+
+            byte[] chunk = new byte[length];
+            buffer.get(chunk);
+            buffer.getInt(); // CRC, the content is validated while decoding.
+
+            switch (type) {
+                case IHDR -> header = Header.read(chunk);
+                case PLTE -> palette = chunk;
+                case TRNS -> transparency = chunk;
+                case IDAT -> data.write(chunk);
+                case IEND -> end = true;
+                case ACTL -> {
+                    return null;
+                }
+                default -> {
+                    // Unknown critical chunks can't be dropped without altering the image.
+                    if ((type & 0x20000000) == 0)
+                        return null;
+                }
+            }
+        }
+
+        if (header == null)
+            throw new IOException("Missing PNG header");
+
+        if (header.colorType() == PALETTE && palette == null)
+            throw new IOException("Missing PNG palette");
+
+        if (header.interlaced())
+            return write(header, palette, transparency, data.toByteArray());
+
+        Image image = new Image(header.width(), header.height(), header.bitDepth(), header.colorType(), palette, transparency,
+                unfilter(inflate(data.toByteArray(), (long) header.height() * (header.stride() + 1)), header));
+
+        List<Image> candidates = new ArrayList<>();
+        candidates.add(image);
+
+        Image reduced = image.bitDepth() == 16 ? reduceDepth(image) : image;
+        if (reduced != null) {
+            if (reduced != image)
+                candidates.add(reduced);
+
+            candidates.addAll(reduceColors(reduced));
+        }
+
+        return encodeSmallest(candidates);
+    }
+
+    // Encodes every candidate with every filter strategy, and keeps the smallest.
+    private static byte @NotNull [] encodeSmallest(@NotNull List<Image> candidates) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            byte[] best = null;
+            for (Image candidate : candidates) {
+                Header header = new Header(candidate.width(), candidate.height(), candidate.bitDepth(), candidate.colorType(), false);
+
+                for (boolean adaptive : new boolean[]{true, false}) {
+                    byte[] encoded = write(header, candidate.palette(), candidate.transparency(), deflate(deflater, filter(candidate, adaptive)));
+                    if (best == null || encoded.length < best.length)
+                        best = encoded;
+                }
+            }
+
+            return best;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Reduces a 16-bit image to 8 bits, if every sample is a repeated byte.
+    private static @Nullable Image reduceDepth(@NotNull Image image) {
+        byte[] samples = image.scanlines();
+        for (int i = 0; i < samples.length; i += 2) {
+            if (samples[i] != samples[i + 1])
+                return null;
+        }
+
+        byte[] transparency = null;
+        if (image.transparency() != null) {
+            transparency = image.transparency().clone();
+            for (int i = 0; i < transparency.length; i += 2) {
+                if (transparency[i] != transparency[i + 1])
+                    return null;
+
+                transparency[i] = 0;
+            }
+        }
+
+        byte[] reduced = new byte[samples.length / 2];
+        for (int i = 0; i < reduced.length; i++) {
+            reduced[i] = samples[i * 2];
+        }
+
+        return new Image(image.width(), image.height(), 8, image.colorType(), image.palette(), transparency, reduced);
+    }
+
+    // Creates every smaller encoding of an image with a bit depth of 8 or less.
+    private static @NotNull List<Image> reduceColors(@NotNull Image image) throws IOException {
+        int[] pixels = image.toArgb();
+
+        boolean gray = true;
+        boolean opaque = true;
+        Map<Integer, Integer> colors = new HashMap<>();
+        for (int pixel : pixels) {
+            int red = (pixel >>> 16) & 0xFF;
+            if (red != ((pixel >>> 8) & 0xFF) || red != (pixel & 0xFF))
+                gray = false;
+
+            if ((pixel >>> 24) != 0xFF)
+                opaque = false;
+
+            if (colors.size() <= 256)
+                colors.merge(pixel, 1, Integer::sum);
+        }
+
+        List<Image> candidates = new ArrayList<>();
+        if (gray && opaque)
+            candidates.add(Image.pack(image.width(), image.height(), GRAY, grayDepth(pixels), pixels, null));
+        else if (gray)
+            candidates.add(Image.pack(image.width(), image.height(), GRAY_ALPHA, 8, pixels, null));
+
+        candidates.add(Image.pack(image.width(), image.height(), opaque ? RGB : RGB_ALPHA, 8, pixels, null));
+
+        if (colors.size() <= 256) {
+            // Translucent entries come first so the transparency chunk is as short as possible.
+            List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(colors.entrySet());
+            entries.sort(Comparator.<Map.Entry<Integer, Integer>>comparingInt(entry -> (entry.getKey() >>> 24) == 0xFF ? 1 : 0)
+                    .thenComparing(Map.Entry::getValue, Comparator.reverseOrder())
+                    .thenComparingInt(Map.Entry::getKey));
+
+            int[] palette = new int[entries.size()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = entries.get(i).getKey();
+            }
+
+            int depth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2 : palette.length <= 16 ? 4 : 8;
+            candidates.add(Image.pack(image.width(), image.height(), PALETTE, depth, pixels, palette));
+        }
+
+        return candidates;
+    }
+
+    // Smallest gray bit depth able to hold every pixel exactly.
+    private static int grayDepth(int @NotNull [] pixels) {
+        int depth = 1;
+        for (int pixel : pixels) {
+            int value = pixel & 0xFF;
+            while (depth < 8 && value % (255 / ((1 << depth) - 1)) != 0) {
+                depth *= 2;
+            }
+
+            if (depth == 8)
+                break;
+        }
+
+        return depth;
+    }
+
+    private static byte @NotNull [] inflate(byte @NotNull [] data, long expectedSize) throws IOException {
+        if (expectedSize > Integer.MAX_VALUE - 8)
+            throw new IOException("PNG image is too large");
+
+        byte[] inflated = new byte[(int) expectedSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+
+            int offset = 0;
+            while (offset < inflated.length && !inflater.finished()) {
+                int read = inflater.inflate(inflated, offset, inflated.length - offset);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+
+                offset += read;
+            }
+
+            if (offset != inflated.length)
+                throw new IOException("Truncated PNG image data");
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid PNG image data", ex);
+        } finally {
+            inflater.end();
+        }
+
+        return inflated;
+    }
+
+    private static byte @NotNull [] deflate(@NotNull Deflater deflater, byte @NotNull [] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buffer = new byte[16 * 1024];
+        while (!deflater.finished()) {
+            int written = deflater.deflate(buffer);
+            output.write(buffer, 0, written);
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte @NotNull [] unfilter(byte @NotNull [] data, @NotNull Header header) throws IOException {
+        int stride = header.stride();
+        int bpp = header.filterDistance();
+        byte[] scanlines = new byte[header.height() * stride];
+
+        for (int y = 0; y < header.height(); y++) {
+            int source = y * (stride + 1);
+            int row = y * stride;
+            int previous = row - stride;
+            int filter = data[source];
+
+            for (int i = 0; i < stride; i++) {
+                int value = data[source + 1 + i] & 0xFF;
+                int left = i >= bpp ? scanlines[row + i - bpp] & 0xFF : 0;
+                int up = y > 0 ? scanlines[previous + i] & 0xFF : 0;
+                int upLeft = i >= bpp && y > 0 ? scanlines[previous + i - bpp] & 0xFF : 0;
+
+                scanlines[row + i] = (byte) switch (filter) {
+                    case 0 -> value;
+                    case 1 -> value + left;
+                    case 2 -> value + up;
+                    case 3 -> value + ((left + up) >>> 1);
+                    case 4 -> value + paeth(left, up, upLeft);
+                    default -> throw new IOException("Invalid PNG filter type: " + filter);
+                };
+            }
+        }
+
+        return scanlines;
+    }
+
+    // Filters every scanline, either with the filter minimizing the sum of absolute differences, or without filter.
+    private static byte @NotNull [] filter(@NotNull Image image, boolean adaptive) {
+        int stride = image.stride();
+        int bpp = image.filterDistance();
+        byte[] scanlines = image.scanlines();
+        byte[] filtered = new byte[image.height() * (stride + 1)];
+        byte[] candidate = new byte[stride];
+
+        for (int y = 0; y < image.height(); y++) {
+            int row = y * stride;
+            int target = y * (stride + 1);
+
+            if (!adaptive) {
+                System.arraycopy(scanlines, row, filtered, target + 1, stride);
+                continue;
+            }
+
+            long bestSum = Long.MAX_VALUE;
+            for (int filter = 0; filter <= 4; filter++) {
+                long sum = 0;
+                for (int i = 0; i < stride; i++) {
+                    int value = scanlines[row + i] & 0xFF;
+                    int left = i >= bpp ? scanlines[row + i - bpp] & 0xFF : 0;
+                    int up = y > 0 ? scanlines[row - stride + i] & 0xFF : 0;
+                    int upLeft = i >= bpp && y > 0 ? scanlines[row - stride + i - bpp] & 0xFF : 0;
+
+                    byte filteredValue = (byte) switch (filter) {
+                        case 1 -> value - left;
+                        case 2 -> value - up;
+                        case 3 -> value - ((left + up) >>> 1);
+                        case 4 -> value - paeth(left, up, upLeft);
+                        default -> value;
+                    };
+
+                    candidate[i] = filteredValue;
+                    sum += Math.abs(filteredValue);
+                }
+
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    filtered[target] = (byte) filter;
+                    System.arraycopy(candidate, 0, filtered, target + 1, stride);
+                }
+            }
+        }
+
+        return filtered;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft)
+            return left;
+
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    private static byte @NotNull [] write(@NotNull Header header, byte @Nullable [] palette, byte @Nullable [] transparency,
+                                          byte @NotNull [] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length + 128);
+        output.writeBytes(SIGNATURE);
+
+        writeChunk(output, IHDR, header.toBytes());
+        // Suggested palettes of true color images are dropped along with the other ancillary data.
+        if (palette != null && header.colorType() == PALETTE)
+            writeChunk(output, PLTE, palette);
+
+        if (transparency != null && transparency.length > 0)
+            writeChunk(output, TRNS, transparency);
+
+        writeChunk(output, IDAT, data);
+        writeChunk(output, IEND, new byte[0]);
+        return output.toByteArray();
+    }
+
+    private static void writeChunk(@NotNull ByteArrayOutputStream output, int type, byte @NotNull [] data) {
+        byte[] header = ByteBuffer.allocate(8).putInt(data.length).putInt(type).array();
+
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data);
+
+        output.writeBytes(header);
+        output.writeBytes(data);
+        output.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    /**
+     * Size of a texture before and after optimization.
+     *
+     * @param originalSize size of the original texture.
+     * @param optimizedSize size of the optimized texture, same as the original size if it was copied untouched.
+     */
+    public record Result(long originalSize, long optimizedSize) {
+
+        /**
+         * Amount of bytes saved by optimizing the texture.
+         *
+         * @return difference between the original and optimized size.
+         */
+        public long saved() {
+            return this.originalSize - this.optimizedSize;
+        }
+    }
+
+    private record Header(int width, int height, int bitDepth, int colorType, boolean interlaced) {
+
+        private static @NotNull Header read(byte @NotNull [] data) throws IOException {
+            if (data.length != 13)
+                throw new IOException("Invalid PNG header");
+
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            Header header = new Header(buffer.getInt(), buffer.getInt(), buffer.get() & 0xFF, buffer.get() & 0xFF,
+                    buffer.get(12) != 0);
+
+            if (header.width() <= 0 || header.height() <= 0 || data[10] != 0 || data[11] != 0)
+                throw new IOException("Invalid PNG header");
+
+            boolean validDepth = switch (header.colorType()) {
+                case GRAY -> header.bitDepth() <= 16 && Integer.bitCount(header.bitDepth()) == 1;
+                case PALETTE -> header.bitDepth() <= 8 && Integer.bitCount(header.bitDepth()) == 1;
+                case RGB, GRAY_ALPHA, RGB_ALPHA -> header.bitDepth() == 8 || header.bitDepth() == 16;
+                default -> false;
+            };
+
+            if (!validDepth)
+                throw new IOException("Invalid PNG color type and bit depth");
+
+            return header;
+        }
+
+        private int stride() {
+            return (int) (((long) this.width * channels(this.colorType) * this.bitDepth + 7) / 8);
+        }
+
+        private int filterDistance() {
+            return Math.max(1, channels(this.colorType) * this.bitDepth / 8);
+        }
+
+        private byte @NotNull [] toBytes() {
+            return ByteBuffer.allocate(13)
+                    .putInt(this.width)
+                    .putInt(this.height)
+                    .put((byte) this.bitDepth)
+                    .put((byte) this.colorType)
+                    .put((byte) 0)
+                    .put((byte) 0)
+                    .put((byte) (this.interlaced ? 1 : 0))
+                    .array();
+        }
+    }
+
+    private static int channels(int colorType) {
+        return switch (colorType) {
+            case GRAY, PALETTE -> 1;
+            case GRAY_ALPHA -> 2;
+            case RGB -> 3;
+            case RGB_ALPHA -> 4;
+            default -> 0;
+        };
+    }
+
+    // Non-interlaced image, with its unfiltered scanlines.
+    private record Image(int width, int height, int bitDepth, int colorType, byte @Nullable [] palette,
+                         byte @Nullable [] transparency, byte @NotNull [] scanlines) {
+
+        private int stride() {
+            return (int) (((long) this.width * channels(this.colorType) * this.bitDepth + 7) / 8);
+        }
+
+        private int filterDistance() {
+            return Math.max(1, channels(this.colorType) * this.bitDepth / 8);
+        }
+
+        private int sample(int row, int index) {
+            if (this.bitDepth == 8)
+                return this.scanlines[row + index] & 0xFF;
+
+            int bit = index * this.bitDepth;
+            int shift = 8 - this.bitDepth - (bit & 7);
+            return (this.scanlines[row + (bit >>> 3)] >>> shift) & ((1 << this.bitDepth) - 1);
+        }
+
+        // Decodes an image with a bit depth of 8 or less to ARGB pixels.
+        private int @NotNull [] toArgb() throws IOException {
+            int[] pixels = new int[Math.multiplyExact(this.width, this.height)];
+            int stride = this.stride();
+            int maxValue = (1 << this.bitDepth) - 1;
+
+            int paletteSize = this.palette != null ? this.palette.length / 3 : 0;
+            int grayKey = this.transparency != null && this.transparency.length >= 2
+                    ? ((this.transparency[0] & 0xFF) << 8) | (this.transparency[1] & 0xFF) : -1;
+            int rgbKey = this.transparency != null && this.transparency.length >= 6
+                    ? ((this.transparency[1] & 0xFF) << 16) | ((this.transparency[3] & 0xFF) << 8) | (this.transparency[5] & 0xFF) : -1;
+
+            for (int y = 0; y < this.height; y++) {
+                int row = y * stride;
+                for (int x = 0; x < this.width; x++) {
+                    pixels[y * this.width + x] = switch (this.colorType) {
+                        case GRAY -> {
+                            int value = this.sample(row, x);
+                            int gray = value * 255 / maxValue;
+                            yield (value == grayKey ? 0 : 0xFF000000) | (gray << 16) | (gray << 8) | gray;
+                        }
+                        case RGB -> {
+                            int rgb = (this.sample(row, x * 3) << 16) | (this.sample(row, x * 3 + 1) << 8) | this.sample(row, x * 3 + 2);
+                            yield (rgb == rgbKey && this.transparency[0] == 0 && this.transparency[2] == 0 && this.transparency[4] == 0
+                                    ? 0 : 0xFF000000) | rgb;
+                        }
+                        case PALETTE -> {
+                            int index = this.sample(row, x);
+                            if (index >= paletteSize)
+                                throw new IOException("PNG palette index out of bounds");
+
+                            int alpha = this.transparency != null && index < this.transparency.length ? this.transparency[index] & 0xFF : 0xFF;
+                            yield (alpha << 24) | ((this.palette[index * 3] & 0xFF) << 16)
+                                    | ((this.palette[index * 3 + 1] & 0xFF) << 8) | (this.palette[index * 3 + 2] & 0xFF);
+                        }
+                        case GRAY_ALPHA -> {
+                            int gray = this.sample(row, x * 2);
+                            yield (this.sample(row, x * 2 + 1) << 24) | (gray << 16) | (gray << 8) | gray;
+                        }
+                        default -> (this.sample(row, x * 4 + 3) << 24) | (this.sample(row, x * 4) << 16)
+                                | (this.sample(row, x * 4 + 1) << 8) | this.sample(row, x * 4 + 2);
+                    };
+                }
+            }
+
+            return pixels;
+        }
+
+        // Encodes ARGB pixels to the given format, the pixels must fit in it.
+        private static @NotNull Image pack(int width, int height, int colorType, int bitDepth, int @NotNull [] pixels,
+                                           int @Nullable [] palette) {
+            Map<Integer, Integer> indices = new HashMap<>();
+            byte[] paletteBytes = null;
+            byte[] transparency = null;
+            if (palette != null) {
+                paletteBytes = new byte[palette.length * 3];
+                int translucent = 0;
+                for (int i = 0; i < palette.length; i++) {
+                    indices.put(palette[i], i);
+                    paletteBytes[i * 3] = (byte) (palette[i] >>> 16);
+                    paletteBytes[i * 3 + 1] = (byte) (palette[i] >>> 8);
+                    paletteBytes[i * 3 + 2] = (byte) palette[i];
+
+                    if ((palette[i] >>> 24) != 0xFF)
+                        translucent = i + 1;
+                }
+
+                transparency = new byte[translucent];
+                for (int i = 0; i < translucent; i++) {
+                    transparency[i] = (byte) (palette[i] >>> 24);
+                }
+            }
+
+            int channels = channels(colorType);
+            int stride = (int) (((long) width * channels * bitDepth + 7) / 8);
+            byte[] scanlines = new byte[height * stride];
+            int scale = 255 / ((1 << bitDepth) - 1);
+
+            for (int y = 0; y < height; y++) {
+                int row = y * stride;
+                for (int x = 0; x < width; x++) {
+                    int pixel = pixels[y * width + x];
+                    switch (colorType) {
+                        case GRAY -> writeSample(scanlines, row, x, bitDepth, (pixel & 0xFF) / scale);
+                        case PALETTE -> writeSample(scanlines, row, x, bitDepth, indices.get(pixel));
+                        case GRAY_ALPHA -> {
+                            scanlines[row + x * 2] = (byte) pixel;
+                            scanlines[row + x * 2 + 1] = (byte) (pixel >>> 24);
+                        }
+                        case RGB -> {
+                            scanlines[row + x * 3] = (byte) (pixel >>> 16);
+                            scanlines[row + x * 3 + 1] = (byte) (pixel >>> 8);
+                            scanlines[row + x * 3 + 2] = (byte) pixel;
+                        }
+                        default -> {
+                            scanlines[row + x * 4] = (byte) (pixel >>> 16);
+                            scanlines[row + x * 4 + 1] = (byte) (pixel >>> 8);
+                            scanlines[row + x * 4 + 2] = (byte) pixel;
+                            scanlines[row + x * 4 + 3] = (byte) (pixel >>> 24);
+                        }
+                    }
+                }
+            }
+
+            return new Image(width, height, bitDepth, colorType, paletteBytes, transparency, scanlines);
+        }
+
+        private static void writeSample(byte @NotNull [] scanlines, int row, int index, int bitDepth, int value) {
+            if (bitDepth == 8) {
+                scanlines[row + index] = (byte) value;
+                return;
+            }
+
+            int bit = index * bitDepth;
+            int shift = 8 - bitDepth - (bit & 7);
+            scanlines[row + (bit >>> 3)] |= (byte) (value << shift);
+        }
+    }
+}
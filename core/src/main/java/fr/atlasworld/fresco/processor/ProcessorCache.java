@@ -0,0 +1,412 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent, content-addressed cache of {@link ResourceProcessor} and {@link EntryTransformer} results.
+ * <p>
+ * Results are keyed by the processor cache key, the entry path and a hash of the entry content.
+ * On a hit, the entries written by the processor and its copy decision are replayed instead of calling the processor,
+ * and the transformed content is written back instead of calling the transformer.
+ * The cache is bounded in size, the least recently used results are evicted first.
+ */
+public final class ProcessorCache {
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final int MAGIC = 0x46524331; // FRC1
+    private static final String FILE_EXTENSION = ".bin";
+    private static final byte KIND_BYTES = 0;
+    private static final byte KIND_SOURCE = 1;
+    private static final String TRANSFORMER_KEY_PREFIX = "transformer/";
+
+    private final File directory;
+    private final long maxSize;
+
+    private final LinkedHashMap<String, Long> index;
+    private long size;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Open a processor cache.
+     *
+     * @param directory directory the cached results are stored in, created if missing.
+     * @param maxSize maximum size of the cache in bytes.
+     *
+     * @throws IOException if the cache directory could not be created.
+     * @throws IllegalArgumentException if {@code maxSize} is negative.
+     */
+    public ProcessorCache(@NotNull File directory, long maxSize) throws IOException {
+        Objects.requireNonNull(directory, "Directory cannot be null!");
+
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Max size cannot be negative!");
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.index = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        Files.createDirectories(directory.toPath());
+        this.loadIndex();
+    }
+
+    private void loadIndex() {
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null)
+            return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String key = file.getName().substring(0, file.getName().length() - FILE_EXTENSION.length());
+            this.index.put(key, file.length());
+            this.size += file.length();
+        }
+
+        this.evict();
+    }
+
+    /**
+     * Wrap a processor so its results are cached.
+     *
+     * @param processor processor to wrap.
+     * @param cacheKey identity and version of the processor, see {@link CacheableProcessor#cacheKey()}.
+     *
+     * @return processor caching the results of the provided processor.
+     */
+    public @NotNull ResourceProcessor wrap(@NotNull ResourceProcessor processor, @NotNull String cacheKey) {
+        Objects.requireNonNull(processor, "Processor cannot be null!");
+        Objects.requireNonNull(cacheKey, "Cache key cannot be null!");
+
+        return new CachedProcessor(processor, cacheKey);
+    }
+
+    /**
+     * Wrap a cacheable processor so its results are cached.
+     *
+     * @param processor processor to wrap.
+     *
+     * @return processor caching the results of the provided processor.
+     */
+    public @NotNull ResourceProcessor wrap(@NotNull CacheableProcessor processor) {
+        Objects.requireNonNull(processor, "Processor cannot be null!");
+        return this.wrap(processor, processor.cacheKey());
+    }
+
+    /**
+     * Wrap a transformer so its results are cached.
+     *
+     * @param transformer transformer to wrap.
+     * @param cacheKey identity and version of the transformer, see {@link CacheableTransformer#cacheKey()}.
+     *
+     * @return transformer caching the results of the provided transformer.
+     */
+    public @NotNull EntryTransformer wrapTransformer(@NotNull EntryTransformer transformer, @NotNull String cacheKey) {
+        Objects.requireNonNull(transformer, "Transformer cannot be null!");
+        Objects.requireNonNull(cacheKey, "Cache key cannot be null!");
+
+        return new CachedTransformer(transformer, cacheKey);
+    }
+
+    /**
+     * Wrap a cacheable transformer so its results are cached.
+     *
+     * @param transformer transformer to wrap.
+     *
+     * @return transformer caching the results of the provided transformer.
+     */
+    public @NotNull EntryTransformer wrapTransformer(@NotNull CacheableTransformer transformer) {
+        Objects.requireNonNull(transformer, "Transformer cannot be null!");
+        return this.wrapTransformer(transformer, transformer.cacheKey());
+    }
+
+    /**
+     * Retrieve the processor or transformer wrapped by a cache.
+     *
+     * @param stage processor or transformer, wrapped or not.
+     *
+     * @return the wrapped processor or transformer, or the provided one if it is not wrapped.
+     */
+    public static @NotNull Object unwrap(@NotNull Object stage) {
+        Objects.requireNonNull(stage, "Stage cannot be null!");
+
+        if (stage instanceof CachedProcessor cached)
+            return cached.processor;
+
+        if (stage instanceof CachedTransformer cached)
+            return cached.transformer;
+
+        return stage;
+    }
+
+    private boolean process(@NotNull ResourceProcessor processor, @NotNull String cacheKey,
+                            @NotNull SourceEntry entry, @NotNull ProcessorOutput output) throws IOException {
+        String key = this.computeKey(cacheKey, entry);
+
+        Boolean cachedResult = this.replay(key, entry, output);
+        if (cachedResult != null) {
+            this.hits.incrementAndGet();
+            return cachedResult;
+        }
+
+        this.misses.incrementAndGet();
+
+        ProcessorOutput capture = output.stage();
+        try {
+            boolean copyEntry = processor.process(entry, capture);
+
+            this.store(key, entry, copyEntry, ((StagedOutputTarget) capture.target()).entries());
+            capture.commit();
+            return copyEntry;
+        } finally {
+            // Drops the entries spilled to disk if the processor or the store failed, nothing is left once committed.
+            capture.close();
+        }
+    }
+
+    // A transformed entry is cached as a single entry replacing the source, an unchanged entry as a copy of the source.
+    private boolean transform(@NotNull EntryTransformer transformer, @NotNull String cacheKey,
+                              @NotNull SourceEntry entry, @NotNull OutputStream output) throws IOException {
+        String key = this.computeKey(TRANSFORMER_KEY_PREFIX + cacheKey, entry);
+
+        List<StagedOutputTarget.PendingEntry> cachedEntries = new ArrayList<>();
+        Boolean unchanged = this.read(key, entry, cachedEntries);
+        if (unchanged != null && (unchanged || cachedEntries.size() == 1 && cachedEntries.get(0).bytes() != null)) {
+            this.hits.incrementAndGet();
+            if (unchanged)
+                return false;
+
+            output.write(cachedEntries.get(0).bytes());
+            return true;
+        }
+
+        this.misses.incrementAndGet();
+
+        SpillOutputStream content = new SpillOutputStream();
+        try {
+            boolean transformed;
+            try (content) {
+                transformed = transformer.transform(entry, content);
+            }
+
+            this.store(key, entry, !transformed, transformed
+                    ? List.of(new StagedOutputTarget.PendingEntry(entry.fullPath(), null, content.bytes(), content.file(), false))
+                    : List.of());
+
+            if (transformed)
+                content.writeTo(output);
+
+            return transformed;
+        } finally {
+            content.delete();
+        }
+    }
+
+    private @Nullable Boolean replay(@NotNull String key, @NotNull SourceEntry entry, @NotNull ProcessorOutput output) throws IOException {
+        List<StagedOutputTarget.PendingEntry> entries = new ArrayList<>();
+        Boolean copyEntry = this.read(key, entry, entries);
+        if (copyEntry == null)
+            return null;
+
+        for (StagedOutputTarget.PendingEntry pending : entries) {
+            if (pending.source() != null)
+                output.addEntry(pending.source(), pending.location());
+            else
+                output.writeEntry(pending.bytes(), pending.location());
+        }
+
+        return copyEntry;
+    }
+
+    // Reads the cached entries of a key, returns the cached copy decision or null if nothing is cached.
+    private @Nullable Boolean read(@NotNull String key, @NotNull SourceEntry entry,
+                                   @NotNull List<StagedOutputTarget.PendingEntry> entries) {
+        File file = this.file(key);
+
+        synchronized (this.index) {
+            if (this.index.get(key) == null)
+                return null;
+        }
+
+        boolean copyEntry;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException("Invalid cache file '" + file.getAbsolutePath() + "'");
+
+            copyEntry = input.readBoolean();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String location = input.readUTF();
+                if (input.readByte() == KIND_SOURCE) {
+                    entries.add(new StagedOutputTarget.PendingEntry(location, entry, null, null, false));
+                    continue;
+                }
+
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                entries.add(new StagedOutputTarget.PendingEntry(location, null, bytes, null, false));
+            }
+        } catch (IOException ex) {
+            this.remove(key);
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        return copyEntry;
+    }
+
+    private void store(@NotNull String key, @NotNull SourceEntry entry, boolean copyEntry,
+                       @NotNull List<StagedOutputTarget.PendingEntry> entries) throws IOException {
+        File file = this.file(key);
+        File tempFile = Files.createTempFile(this.directory.toPath(), key, ".tmp").toFile();
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeBoolean(copyEntry);
+            output.writeInt(entries.size());
+
+            for (StagedOutputTarget.PendingEntry pending : entries) {
+                output.writeUTF(pending.location());
+                if (pending.source() == entry) {
+                    output.writeByte(KIND_SOURCE);
+                    continue;
+                }
+
+                byte[] bytes = pending.bytes();
+                if (bytes == null) {
+                    try (InputStream input = pending.openStream()) {
+                        bytes = input.readAllBytes();
+                    }
+                }
+
+                output.writeByte(KIND_BYTES);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this.index) {
+            Long previousSize = this.index.put(key, file.length());
+            this.size += file.length() - (previousSize != null ? previousSize : 0);
+            this.evict();
+        }
+    }
+
+    private void remove(@NotNull String key) {
+        synchronized (this.index) {
+            Long size = this.index.remove(key);
+            if (size != null)
+                this.size -= size;
+        }
+
+        this.file(key).delete();
+    }
+
+    // Must be called while holding the index lock.
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = this.index.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+
+            this.size -= eldest.getValue();
+            this.file(eldest.getKey()).delete();
+        }
+    }
+
+    private @NotNull File file(@NotNull String key) {
+        return new File(this.directory, key + FILE_EXTENSION);
+    }
+
+    private @NotNull String computeKey(@NotNull String cacheKey, @NotNull SourceEntry entry) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", ex);
+        }
+
+        digest.update(cacheKey.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(entry.fullPath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        digest.update(entry.content());
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Amount of processor calls that were answered by the cache.
+     *
+     * @return amount of cache hits.
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Amount of processor calls that were not cached yet.
+     *
+     * @return amount of cache misses.
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Current size of the cache on disk.
+     *
+     * @return size of the cache in bytes.
+     */
+    public long size() {
+        synchronized (this.index) {
+            return this.size;
+        }
+    }
+
+    private final class CachedProcessor implements ResourceProcessor {
+        private final ResourceProcessor processor;
+        private final String cacheKey;
+
+        private CachedProcessor(@NotNull ResourceProcessor processor, @NotNull String cacheKey) {
+            this.processor = processor;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public boolean process(@NotNull SourceEntry entry, @NotNull ProcessorOutput output) throws IOException {
+            return ProcessorCache.this.process(this.processor, this.cacheKey, entry, output);
+        }
+    }
+
+    private final class CachedTransformer implements EntryTransformer {
+        private final EntryTransformer transformer;
+        private final String cacheKey;
+
+        private CachedTransformer(@NotNull EntryTransformer transformer, @NotNull String cacheKey) {
+            this.transformer = transformer;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public boolean transform(@NotNull SourceEntry entry, @NotNull OutputStream output) throws IOException {
+            return ProcessorCache.this.transform(this.transformer, this.cacheKey, entry, output);
+        }
+    }
+}
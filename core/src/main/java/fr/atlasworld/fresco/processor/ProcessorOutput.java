@@ -2,15 +2,16 @@ package fr.atlasworld.fresco.processor;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import fr.atlasworld.fresco.pack.PackDefinition;
 import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Objects;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Processor output, represents the output of the {@link fr.atlasworld.fresco.FrescoProcessor}
@@ -18,8 +19,12 @@ import java.util.zip.ZipOutputStream;
  */
 public final class ProcessorOutput implements Closeable {
     public static final Gson GSON = new Gson();
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
 
-    private final ZipOutputStream stream;
+    // Amount of compressed entries that may be held before being written, per compression thread.
+    private static final int COMPRESSED_AHEAD_PER_THREAD = 4;
+
+    private final OutputTarget target;
 
     /**
      * Create a new processor output.
@@ -29,13 +34,164 @@ public final class ProcessorOutput implements Closeable {
      * @throws IOException if the file could not be opened.
      */
     public ProcessorOutput(@NotNull File outputFile) throws IOException {
-        Objects.requireNonNull(outputFile, "Output file cannot be null!");
+        this(create(outputFile).createTarget());
+    }
+
+    private ProcessorOutput(@NotNull OutputTarget target) {
+        this.target = target;
+    }
+
+    /**
+     * Retrieve the digests of the archive, computed while it was written.
+     *
+     * @return hex encoded digests of the archive by algorithm, as requested through {@link Builder#digests(String...)},
+     *         empty for an {@link Builder#exploded() exploded} output.
+     *
+     * @throws IllegalStateException if the output is not closed yet, or is a staged output.
+     */
+    public @NotNull Map<String, String> digests() {
+        if (this.target instanceof DirectoryOutputTarget)
+            return Map.of(); // Exploded directories are not an archive.
+
+        if (!(this.target instanceof ZipOutputTarget zip))
+            throw new IllegalStateException("Output is staged!");
+
+        return zip.digests();
+    }
+
+    /**
+     * Retrieve the size of the archive.
+     *
+     * @return amount of bytes written to the archive, or size of the files of an {@link Builder#exploded() exploded} output.
+     *
+     * @throws IllegalStateException if the output is a staged output.
+     */
+    public long size() {
+        if (this.target instanceof DirectoryOutputTarget directory)
+            return directory.size();
+
+        if (!(this.target instanceof ZipOutputTarget zip))
+            throw new IllegalStateException("Output is staged!");
 
-        if (outputFile.exists())
-            outputFile.delete();
+        return zip.size();
+    }
+
+    /**
+     * Retrieve the space left unused by a patched archive, taken by the previous entries which were not kept.
+     *
+     * @return amount of unused bytes, {@code 0} if the archive was not patched or was compacted.
+     *
+     * @throws IllegalStateException if the output is a staged output.
+     */
+    public long deadSize() {
+        if (this.target instanceof DirectoryOutputTarget)
+            return 0;
+
+        if (!(this.target instanceof ZipOutputTarget zip))
+            throw new IllegalStateException("Output is staged!");
+
+        return zip.deadSize();
+    }
+
+    /**
+     * Retrieve the time spent compressing the entries of the archive, summed across every thread.
+     *
+     * @return compression time in nanoseconds, {@code 0} for an {@link Builder#exploded() exploded} output.
+     *
+     * @throws IllegalStateException if the output is a staged output.
+     */
+    public long compressTime() {
+        if (this.target instanceof DirectoryOutputTarget)
+            return 0;
+
+        if (!(this.target instanceof ZipOutputTarget zip))
+            throw new IllegalStateException("Output is staged!");
+
+        return zip.compressTime();
+    }
 
-        outputFile.createNewFile();
-        this.stream = new ZipOutputStream(new FileOutputStream(outputFile));
+    /**
+     * Create a staged view of this output.
+     * <p>
+     * Everything written to the staged output is held back until {@link #commit()} is called,
+     * allowing entries processed concurrently to still be written in a deterministic order.
+     *
+     * @return newly created staged output.
+     */
+    @ApiStatus.Internal
+    public @NotNull ProcessorOutput stage() {
+        return new ProcessorOutput(new StagedOutputTarget(this.target));
+    }
+
+    /**
+     * Retrieve the locations of all the entries held back by this staged output.
+     *
+     * @return locations of the staged entries, in the order they were written.
+     *
+     * @throws IllegalStateException if this output was not created using {@link #stage()}.
+     */
+    @ApiStatus.Internal
+    public @NotNull List<String> stagedLocations() {
+        if (!(this.target instanceof StagedOutputTarget staged))
+            throw new IllegalStateException("Output is not staged!");
+
+        return staged.locations();
+    }
+
+    /**
+     * Retrieve the amount of bytes written to this staged output, copied entries are not counted.
+     *
+     * @return amount of bytes written so far.
+     *
+     * @throws IllegalStateException if this output was not created using {@link #stage()}.
+     */
+    @ApiStatus.Internal
+    public long stagedSize() {
+        if (!(this.target instanceof StagedOutputTarget staged))
+            throw new IllegalStateException("Output is not staged!");
+
+        return staged.writtenSize();
+    }
+
+    /**
+     * Write all the entries held back by this staged output to the output it was created from.
+     *
+     * @throws IOException if one of the entries could not be written.
+     * @throws IllegalStateException if this output was not created using {@link #stage()}.
+     */
+    @ApiStatus.Internal
+    public void commit() throws IOException {
+        if (!(this.target instanceof StagedOutputTarget staged))
+            throw new IllegalStateException("Output is not staged!");
+
+        staged.commit();
+    }
+
+    /**
+     * Write all the entries held back by this staged output to another output, they stay held back by this output.
+     *
+     * @param output output to write the entries to.
+     *
+     * @throws IOException if one of the entries could not be written.
+     * @throws IllegalStateException if this output was not created using {@link #stage()}.
+     */
+    @ApiStatus.Internal
+    public void commitTo(@NotNull ProcessorOutput output) throws IOException {
+        Objects.requireNonNull(output, "Output cannot be null!");
+
+        if (!(this.target instanceof StagedOutputTarget staged))
+            throw new IllegalStateException("Output is not staged!");
+
+        staged.commitTo(output.target);
+    }
+
+    /**
+     * Retrieve the target of this output.
+     *
+     * @return target of this output.
+     */
+    @NotNull OutputTarget target() {
+        return this.target;
     }
 
     /**
@@ -61,9 +217,36 @@ public final class ProcessorOutput implements Closeable {
         Objects.requireNonNull(entry, "Entry cannot be null!");
         Objects.requireNonNull(location, "Location cannot be null!");
 
-        try (InputStream input = entry.openStream()) {
-            this.writeEntry(input, location);
+        // Transformed entries only live while their source entry is processed, their content is copied right away.
+        if (entry instanceof TransformedEntry) {
+            try (InputStream input = entry.openStream()) {
+                this.target.write(input, location);
+            }
+
+            return;
         }
+
+        this.target.copy(entry, location);
+    }
+
+    /**
+     * Keep an entry of the previous archive, its compressed content is reused without being inflated.
+     *
+     * @param location location of the entry, in both the previous archive and this output.
+     *
+     * @return false if the previous archive does not contain the entry, nothing is written then.
+     *
+     * @throws IOException if the entry could not be kept.
+     */
+    @ApiStatus.Internal
+    public boolean keepEntry(@NotNull String location) throws IOException {
+        Objects.requireNonNull(location, "Location cannot be null!");
+
+        if (!this.target.canKeep(location))
+            return false;
+
+        this.target.keep(location);
+        return true;
     }
 
     /**
@@ -75,7 +258,11 @@ public final class ProcessorOutput implements Closeable {
      * @throws IOException if the entry could not be added.
      */
     public void writeJsonEntry(@NotNull JsonElement json, @NotNull String location) throws IOException {
-        this.writeEntry(GSON.toJson(json), location);
+        Objects.requireNonNull(json, "Json cannot be null!");
+
+        try (Writer writer = new OutputStreamWriter(this.openEntry(location), StandardCharsets.UTF_8)) {
+            GSON.toJson(json, writer);
+        }
     }
 
     /**
@@ -104,9 +291,25 @@ public final class ProcessorOutput implements Closeable {
     }
 
     /**
-     * Write an entry to the output.
+     * Open a new entry in the output, everything written to the returned stream becomes the content of the entry.
+     * <p>
+     * The entry is only complete once the stream is closed, which must happen on the thread that opened it.
      *
-     * @param input input to write to the output.
+     * @param location location to put the entry in the final zip.
+     *
+     * @return output stream to write the content of the entry to.
+     *
+     * @throws IOException if the entry could not be opened.
+     */
+    public @NotNull OutputStream openEntry(@NotNull String location) throws IOException {
+        Objects.requireNonNull(location, "Location cannot be null!");
+        return this.target.open(location);
+    }
+
+    /**
+     * Write an entry to the output, streaming the content of the input.
+     *
+     * @param input input to write to the output, it is not closed by this method.
      * @param location location to put the entry in the final zip.
      *
      * @throws IOException if the entry could not be added.
@@ -115,7 +318,7 @@ public final class ProcessorOutput implements Closeable {
         Objects.requireNonNull(input, "Input stream cannot be null!");
         Objects.requireNonNull(location, "Location cannot be null!");
 
-        this.writeEntry(input.readAllBytes(), location);
+        this.target.write(input, location);
     }
 
     /**
@@ -130,12 +333,7 @@ public final class ProcessorOutput implements Closeable {
         Objects.requireNonNull(bytes, "Bytes cannot be null!");
         Objects.requireNonNull(location, "Location cannot be null!");
 
-        ZipEntry zipEntry = new ZipEntry(location);
-        synchronized (this.stream) {
-            this.stream.putNextEntry(zipEntry);
-            this.stream.write(bytes);
-            this.stream.closeEntry();
-        }
+        this.target.write(bytes, location);
     }
 
     /**
@@ -144,9 +342,7 @@ public final class ProcessorOutput implements Closeable {
      * @throws IOException if the content could not be flushed.
      */
     public void flush() throws IOException {
-        synchronized (this.stream) {
-            this.stream.flush();
-        }
+        this.target.flush();
     }
 
     /**
@@ -155,8 +351,190 @@ public final class ProcessorOutput implements Closeable {
      */
     @Override
     public void close() throws IOException {
-        synchronized (this.stream) {
-            this.stream.close();
+        this.target.close();
+    }
+
+    /**
+     * Create a new {@link ProcessorOutput.Builder}.
+     *
+     * @param outputFile file in which the output of the processor will be written to.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create(@NotNull File outputFile) {
+        return new Builder(outputFile);
+    }
+
+    /**
+     * {@link ProcessorOutput} builder.
+     */
+    public static final class Builder {
+        private final File outputFile;
+
+        private CompressionPolicy compressionPolicy;
+        private PackDefinition definition;
+        private ExecutorService compressionExecutor;
+        private int parallelism;
+        private final Set<String> digestAlgorithms;
+        private File previousFile;
+        private boolean patch;
+        private double compactionThreshold;
+        private boolean exploded;
+
+        @ApiStatus.Internal
+        private Builder(@NotNull File outputFile) {
+            this.outputFile = Objects.requireNonNull(outputFile, "Output file cannot be null!");
+            this.compressionPolicy = new CompressionPolicy();
+            this.definition = PackDefinition.defaultDefinition();
+            this.parallelism = 1;
+            this.digestAlgorithms = new LinkedHashSet<>();
+            this.compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        }
+
+        /**
+         * Sets the compression policy deciding how each entry is compressed.
+         *
+         * @param policy compression policy.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder compression(@NotNull CompressionPolicy policy) {
+            Objects.requireNonNull(policy, "policy must not be null!");
+
+            this.compressionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Sets the pack definition used to determine the type of the written entries.
+         *
+         * @param definition pack definition.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder definition(@NotNull PackDefinition definition) {
+            Objects.requireNonNull(definition, "definition must not be null!");
+
+            this.definition = definition;
+            return this;
+        }
+
+        /**
+         * Compress entries concurrently on an executor, they are still written to the archive in order.
+         * <p>
+         * The executor is not shut down by the output.
+         *
+         * @param executor executor to compress the entries on.
+         * @param parallelism amount of threads of the executor, used to bound how many compressed entries are held at once.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder parallelCompression(@NotNull ExecutorService executor, int parallelism) {
+            Objects.requireNonNull(executor, "executor must not be null!");
+
+            if (parallelism < 1)
+                throw new IllegalArgumentException("Parallelism must be at least 1!");
+
+            this.compressionExecutor = executor;
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Compute digests of the archive while it is written, available through {@link ProcessorOutput#digests()} once closed.
+         *
+         * @param algorithms digest algorithms, ex: {@code SHA-1} or {@code SHA-256}.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder digests(@NotNull String... algorithms) {
+            Objects.requireNonNull(algorithms, "algorithms must not be null!");
+
+            this.digestAlgorithms.addAll(Arrays.asList(algorithms));
+            return this;
+        }
+
+        /**
+         * Reuse the entries of a previous archive, {@link ProcessorOutput#keepEntry(String) kept} entries are copied
+         * from it without being inflated and compressed again.
+         *
+         * @param previousFile archive written by a previous output, must differ from the output file.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder previous(@NotNull File previousFile) {
+            Objects.requireNonNull(previousFile, "previous file must not be null!");
+
+            this.previousFile = previousFile;
+            this.patch = false;
+            return this;
+        }
+
+        /**
+         * Patch the existing output file in place instead of writing it again.
+         * <p>
+         * {@link ProcessorOutput#keepEntry(String) Kept} entries are left untouched, every other entry is appended to the
+         * archive and the central directory is written again. Entries of the previous archive which are not kept leave
+         * unused space behind, once it exceeds {@code compactionThreshold} of the archive data the archive is rewritten
+         * with only its live entries. A patched archive has the same content as a fully written one, but its bytes differ
+         * until it is compacted.
+         *
+         * @param compactionThreshold fraction of unused space past which the archive is compacted, {@code 0} always compacts.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if the threshold is not between {@code 0} and {@code 1}.
+         */
+        public Builder patch(double compactionThreshold) {
+            if (compactionThreshold < 0 || compactionThreshold > 1)
+                throw new IllegalArgumentException("Compaction threshold must be between 0 and 1!");
+
+            this.previousFile = this.outputFile;
+            this.patch = true;
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Write the output as an exploded directory instead of a zip archive, the output file is then a directory.
+         * <p>
+         * Nothing is compressed, copied entries are hard-linked to their source file when possible,
+         * files of the directory which are not part of the output are deleted once it is closed.
+         * When {@link #patch(double) patching}, files of the previous output can be kept as they are.
+         * Digests are not computed.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder exploded() {
+            this.exploded = true;
+            return this;
+        }
+
+        private @NotNull OutputTarget createTarget() throws IOException {
+            if (this.exploded) {
+                if (this.previousFile != null && !this.patch)
+                    throw new IllegalArgumentException("Exploded outputs can only be patched!");
+
+                return new DirectoryOutputTarget(this.outputFile, this.patch);
+            }
+
+            if (this.previousFile != null && !this.patch && this.previousFile.getAbsoluteFile().equals(this.outputFile.getAbsoluteFile()))
+                throw new IllegalArgumentException("Previous file must differ from the output file, use patch instead!");
+
+            EntryCompressor compressor = new EntryCompressor(this.compressionPolicy, this.definition);
+            return new ZipOutputTarget(this.outputFile, compressor, this.compressionExecutor, this.parallelism * COMPRESSED_AHEAD_PER_THREAD,
+                    this.digestAlgorithms, this.previousFile, this.patch, this.compactionThreshold);
+        }
+
+        /**
+         * Create the output with the provided settings.
+         *
+         * @return newly created {@link ProcessorOutput}.
+         *
+         * @throws IOException if the output file could not be opened, or the previous archive could not be read.
+         */
+        public @NotNull ProcessorOutput build() throws IOException {
+            return new ProcessorOutput(this.createTarget());
         }
     }
 }
@@ -13,6 +13,9 @@ public interface ResourceProcessor {
 
     /**
      * Process a resource pack entry.
+     * <p>
+     * When the {@link fr.atlasworld.fresco.FrescoProcessor} runs in parallel,
+     * this method may be called concurrently for different entries.
      *
      * @param entry entry to process.
      * @param output output.
@@ -0,0 +1,162 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.EntryContent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output stream keeping its content in memory, until it grows past a threshold and gets spilled to a temporary file.
+ * <p>
+ * Once closed, the content can be read back any amount of times until {@link #delete()} is called.
+ */
+final class SpillOutputStream extends OutputStream {
+    static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    private final int threshold;
+
+    private ByteArrayOutputStream memory;
+    private Path file;
+    private OutputStream fileStream;
+    private long size;
+    private boolean closed;
+
+    SpillOutputStream() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    SpillOutputStream(int threshold) {
+        this.threshold = threshold;
+        this.memory = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) throws IOException {
+        if (this.closed)
+            throw new IOException("Stream closed");
+
+        if (this.fileStream == null && this.memory.size() + len > this.threshold) {
+            this.file = Files.createTempFile("fresco-", ".tmp");
+            this.fileStream = new BufferedOutputStream(Files.newOutputStream(this.file));
+            this.memory.writeTo(this.fileStream);
+            this.memory = null;
+        }
+
+        if (this.fileStream != null)
+            this.fileStream.write(b, off, len);
+        else
+            this.memory.write(b, off, len);
+
+        this.size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        if (this.fileStream != null)
+            this.fileStream.close();
+    }
+
+    /**
+     * Amount of bytes written to the stream.
+     *
+     * @return size of the content.
+     */
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * Content of the stream, if it was not spilled to disk.
+     *
+     * @return content of the stream, or {@code null} if it was spilled.
+     */
+    byte @Nullable [] bytes() {
+        return this.memory != null ? this.memory.toByteArray() : null;
+    }
+
+    /**
+     * Temporary file the content was spilled to.
+     *
+     * @return spilled file, or {@code null} if the content is kept in memory.
+     */
+    @Nullable Path file() {
+        return this.file;
+    }
+
+    /**
+     * Open the content of the stream, the stream must be closed first.
+     *
+     * @return input stream containing the content.
+     *
+     * @throws IOException if the content could not be opened.
+     */
+    @NotNull InputStream openStream() throws IOException {
+        if (!this.closed)
+            throw new IllegalStateException("Stream must be closed before being read!");
+
+        if (this.file != null)
+            return Files.newInputStream(this.file);
+
+        return new ByteArrayInputStream(this.memory.toByteArray());
+    }
+
+    /**
+     * Retrieve the content of the stream as a read-only buffer, the stream must be closed first.
+     * <p>
+     * Spilled content is memory-mapped rather than read back.
+     *
+     * @return buffer holding the content.
+     *
+     * @throws IOException if the spilled content could not be read.
+     */
+    @NotNull ByteBuffer content() throws IOException {
+        if (!this.closed)
+            throw new IllegalStateException("Stream must be closed before being read!");
+
+        if (this.file != null)
+            return EntryContent.read(this.file);
+
+        return ByteBuffer.wrap(this.memory.toByteArray()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Write the content of the stream to another output stream, the stream must be closed first.
+     *
+     * @param output output to write to.
+     *
+     * @throws IOException if the content could not be written.
+     */
+    void writeTo(@NotNull OutputStream output) throws IOException {
+        if (this.file == null && this.closed) {
+            this.memory.writeTo(output);
+            return;
+        }
+
+        try (InputStream input = this.openStream()) {
+            input.transferTo(output);
+        }
+    }
+
+    /**
+     * Delete the temporary file the content may have been spilled to.
+     */
+    void delete() {
+        if (this.file != null)
+            this.file.toFile().delete();
+
+        this.memory = null;
+    }
+}
@@ -0,0 +1,228 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output target holding back every write until it is committed to its parent target.
+ * <p>
+ * Processor generated content is kept in memory, or spilled to a temporary file once it grows too large.
+ * Copied entries are only kept as references and are read from their source when committing.
+ */
+final class StagedOutputTarget implements OutputTarget {
+    private final OutputTarget parent;
+    private final List<PendingEntry> pending;
+    private final AtomicLong writtenSize;
+
+    StagedOutputTarget(@NotNull OutputTarget parent) {
+        this.parent = parent;
+        this.pending = new ArrayList<>();
+        this.writtenSize = new AtomicLong();
+    }
+
+    @Override
+    public void copy(@NotNull SourceEntry entry, @NotNull String location) {
+        this.stage(new PendingEntry(location, entry, null, null, false));
+    }
+
+    @Override
+    public void write(byte @NotNull [] bytes, @NotNull String location) {
+        this.stage(new PendingEntry(location, null, bytes, null, false));
+        this.writtenSize.addAndGet(bytes.length);
+    }
+
+    @Override
+    public void write(@NotNull InputStream input, @NotNull String location) throws IOException {
+        try (OutputStream output = this.open(location)) {
+            input.transferTo(output);
+        }
+    }
+
+    @Override
+    public @NotNull OutputStream open(@NotNull String location) {
+        return new StagingOutputStream(location);
+    }
+
+    @Override
+    public boolean canKeep(@NotNull String location) {
+        return this.parent.canKeep(location);
+    }
+
+    @Override
+    public void keep(@NotNull String location) {
+        this.stage(new PendingEntry(location, null, null, null, true));
+    }
+
+    private void stage(@NotNull PendingEntry entry) {
+        synchronized (this.pending) {
+            this.pending.add(entry);
+        }
+    }
+
+    /**
+     * Snapshot of every staged entry, in the order they were staged.
+     *
+     * @return staged entries.
+     */
+    @NotNull List<PendingEntry> entries() {
+        synchronized (this.pending) {
+            return List.copyOf(this.pending);
+        }
+    }
+
+    /**
+     * Amount of bytes written to this target, copied and kept entries are not counted as they are only references.
+     *
+     * @return size of the content written to this target.
+     */
+    long writtenSize() {
+        return this.writtenSize.get();
+    }
+
+    /**
+     * Locations of every staged entry, in the order they were staged.
+     *
+     * @return locations of the staged entries.
+     */
+    @NotNull List<String> locations() {
+        synchronized (this.pending) {
+            List<String> locations = new ArrayList<>(this.pending.size());
+            for (PendingEntry entry : this.pending) {
+                locations.add(entry.location());
+            }
+
+            return locations;
+        }
+    }
+
+    /**
+     * Write every staged entry to the parent target, in the order they were staged.
+     *
+     * @throws IOException if one of the entries could not be written.
+     */
+    void commit() throws IOException {
+        synchronized (this.pending) {
+            try {
+                this.commitTo(this.parent);
+            } finally {
+                this.discard();
+            }
+        }
+    }
+
+    /**
+     * Write every staged entry to another target, in the order they were staged, the entries stay staged.
+     *
+     * @param target target to write the entries to.
+     *
+     * @throws IOException if one of the entries could not be written.
+     */
+    void commitTo(@NotNull OutputTarget target) throws IOException {
+        synchronized (this.pending) {
+            for (PendingEntry entry : this.pending) {
+                if (entry.kept()) {
+                    target.keep(entry.location());
+                } else if (entry.source() != null) {
+                    target.copy(entry.source(), entry.location());
+                } else if (entry.bytes() != null) {
+                    target.write(entry.bytes(), entry.location());
+                } else {
+                    try (InputStream input = entry.openStream()) {
+                        target.write(input, entry.location());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        synchronized (this.pending) {
+            this.discard();
+        }
+    }
+
+    // Must be called while holding the pending lock.
+    private void discard() {
+        for (PendingEntry entry : this.pending) {
+            if (entry.file() != null)
+                entry.file().toFile().delete();
+        }
+
+        this.pending.clear();
+    }
+
+    /**
+     * Entry held back by the staged target.
+     *
+     * @param location location of the entry in the target.
+     * @param source source entry to copy, if the entry is a copy.
+     * @param bytes content of the entry, if held in memory.
+     * @param file temporary file containing the entry, if it was spilled to disk.
+     * @param kept whether the entry is kept from the previous archive of the parent target, it then has no content.
+     */
+    record PendingEntry(@NotNull String location, @Nullable SourceEntry source, byte @Nullable [] bytes, @Nullable Path file,
+                        boolean kept) {
+
+        /**
+         * Open the content of the entry.
+         *
+         * @return input stream containing the entry content.
+         *
+         * @throws IOException if the content could not be opened.
+         */
+        @NotNull InputStream openStream() throws IOException {
+            if (this.source != null)
+                return this.source.openStream();
+
+            if (this.bytes != null)
+                return new ByteArrayInputStream(this.bytes);
+
+            return Files.newInputStream(this.file);
+        }
+    }
+
+    private final class StagingOutputStream extends OutputStream {
+        private final String location;
+        private final SpillOutputStream content;
+        private boolean closed;
+
+        private StagingOutputStream(@NotNull String location) {
+            this.location = location;
+            this.content = new SpillOutputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.content.write(b);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            this.content.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed)
+                return;
+
+            this.closed = true;
+            this.content.close();
+            StagedOutputTarget.this.stage(new PendingEntry(this.location, null, this.content.bytes(), this.content.file(), false));
+            StagedOutputTarget.this.writtenSize.addAndGet(this.content.size());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Output of an {@link EntryTransformer} stage, every property except its content comes from the original entry.
+ * <p>
+ * The content is kept in memory, or spilled to a temporary file once it grows too large, it is deleted when closed.
+ */
+public final class TransformedEntry implements SourceEntry, Closeable {
+    private final SourceEntry original;
+    private final SpillOutputStream content;
+
+    private TransformedEntry(@NotNull SourceEntry original, @NotNull SpillOutputStream content) {
+        this.original = original;
+        this.content = content;
+    }
+
+    /**
+     * Run a single transform stage over an entry.
+     *
+     * @param entry entry to transform, possibly the output of a previous stage.
+     * @param transformer transformer of the stage.
+     *
+     * @return transformed entry, or {@code null} if the transformer left the entry unchanged.
+     *
+     * @throws IOException if the transformer failed, nothing is left behind.
+     */
+    public static @Nullable TransformedEntry transform(@NotNull SourceEntry entry, @NotNull EntryTransformer transformer) throws IOException {
+        Objects.requireNonNull(entry, "entry must not be null!");
+        Objects.requireNonNull(transformer, "transformer must not be null!");
+
+        SpillOutputStream content = new SpillOutputStream();
+        boolean transformed;
+        try (content) {
+            transformed = transformer.transform(entry, content);
+        } catch (IOException | RuntimeException ex) {
+            content.delete();
+            throw ex;
+        }
+
+        if (!transformed) {
+            content.delete();
+            return null;
+        }
+
+        SourceEntry original = entry instanceof TransformedEntry previous ? previous.original : entry;
+        return new TransformedEntry(original, content);
+    }
+
+    /**
+     * Entry this entry was transformed from, before any stage.
+     *
+     * @return original entry.
+     */
+    public @NotNull SourceEntry original() {
+        return this.original;
+    }
+
+    /**
+     * Size of the transformed content.
+     *
+     * @return size in bytes.
+     */
+    public long size() {
+        return this.content.size();
+    }
+
+    @Override
+    public @NotNull String filename() {
+        return this.original.filename();
+    }
+
+    @Override
+    public @NotNull String key() {
+        return this.original.key();
+    }
+
+    @Override
+    public @NotNull String type() {
+        return this.original.type();
+    }
+
+    @Override
+    public @NotNull String namespace() {
+        return this.original.namespace();
+    }
+
+    @Override
+    public @NotNull String fullPath() {
+        return this.original.fullPath();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public boolean isInsideNamespace() {
+        return this.original.isInsideNamespace();
+    }
+
+    @Override
+    public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+        return this.original.entryType(definition);
+    }
+
+    @Override
+    public @NotNull InputStream openStream() throws IOException {
+        return this.content.openStream();
+    }
+
+    @Override
+    public @NotNull ByteBuffer content() throws IOException {
+        return this.content.content();
+    }
+
+    @Override
+    public void close() {
+        this.content.delete();
+    }
+
+    @Override
+    public String toString() {
+        return this.original.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.ZipCentralDirectory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of an archive written by {@link ZipArchiveWriter}.
+ * <p>
+ * Entries are never inflated, their local records (header, compressed data and data descriptor) are handed out as-is
+ * so they can be appended to another archive, or kept where they are when patching the archive in place.
+ */
+final class ZipArchiveReader implements Closeable {
+    private static final int DATA_DESCRIPTOR_SIZE = 16;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+    private final long centralDirectoryOffset;
+
+    /**
+     * Open an archive and read its central directory.
+     *
+     * @param file archive to read.
+     *
+     * @throws IOException if the archive could not be read, or was not written by {@link ZipArchiveWriter}.
+     */
+    ZipArchiveReader(@NotNull Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            this.entries = new LinkedHashMap<>();
+            this.centralDirectoryOffset = this.readCentralDirectory();
+        } catch (IOException | RuntimeException ex) {
+            this.channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Retrieve an entry of the archive.
+     *
+     * @param name name of the entry.
+     *
+     * @return the entry, or {@code null} if the archive does not contain it.
+     */
+    @Nullable Entry entry(@NotNull String name) {
+        return this.entries.get(name);
+    }
+
+    /**
+     * Every entry of the archive, in the order of the central directory.
+     *
+     * @return entries of the archive.
+     */
+    @NotNull Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(this.entries.values());
+    }
+
+    /**
+     * Offset of the central directory, every local record is stored before it.
+     *
+     * @return size of the data of the archive.
+     */
+    long centralDirectoryOffset() {
+        return this.centralDirectoryOffset;
+    }
+
+    /**
+     * Open the local record of an entry, its header, compressed data and data descriptor, exactly as stored.
+     * <p>
+     * Reads are positional, several records can be read at once.
+     *
+     * @param entry entry of this archive.
+     *
+     * @return input stream of the raw record.
+     */
+    @NotNull InputStream openRecord(@NotNull Entry entry) {
+        return new InputStream() {
+            private long position = entry.headerOffset();
+            private final long end = entry.headerOffset() + entry.recordSize();
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte @NotNull [] b, int off, int len) throws IOException {
+                if (this.position >= this.end)
+                    return -1;
+
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, this.end - this.position));
+                int read = ZipArchiveReader.this.channel.read(buffer, this.position);
+                if (read == -1)
+                    throw new ZipException("Unexpected end of archive");
+
+                this.position += read;
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private long readCentralDirectory() throws IOException {
+        ZipCentralDirectory directory = ZipCentralDirectory.read(this.channel);
+        for (ZipCentralDirectory.Header header : directory.headers()) {
+            long recordSize = ZipCentralDirectory.dataOffset(this.channel, header) - header.headerOffset() + header.compressedSize()
+                    + ((header.flags() & FLAG_DATA_DESCRIPTOR) != 0 ? DATA_DESCRIPTOR_SIZE : 0);
+
+            if (header.headerOffset() + recordSize > directory.offset())
+                throw new ZipException("Invalid local record for entry '" + header.name() + "'");
+
+            Entry entry = new Entry(header.name(), header.flags() & ~FLAG_UTF8, header.method(), header.crc(), header.compressedSize(),
+                    header.size(), header.headerOffset(), recordSize);
+            if (this.entries.put(entry.name(), entry) != null)
+                throw new ZipException("duplicate entry: " + entry.name());
+        }
+
+        return directory.offset();
+    }
+
+    /**
+     * Entry of the archive.
+     *
+     * @param name name of the entry.
+     * @param flags general purpose flags, without the UTF-8 flag which the writer always sets.
+     * @param method {@link java.util.zip.ZipEntry#STORED} or {@link java.util.zip.ZipEntry#DEFLATED}.
+     * @param crc CRC-32 of the uncompressed content.
+     * @param compressedSize size of the compressed data.
+     * @param size size of the uncompressed content.
+     * @param headerOffset offset of the local header.
+     * @param recordSize size of the local record, from the local header to the end of the data descriptor.
+     */
+    record Entry(@NotNull String name, int flags, int method, long crc, long compressedSize, long size,
+                 long headerOffset, long recordSize) {
+    }
+}
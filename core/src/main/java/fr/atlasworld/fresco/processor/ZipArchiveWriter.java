@@ -0,0 +1,443 @@
+package fr.atlasworld.fresco.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Append-only zip archive writer.
+ * <p>
+ * Unlike {@link java.util.zip.ZipOutputStream}, entries whose content was already compressed elsewhere
+ * can be appended as-is, which allows compressing entries concurrently and writing them in order afterward.
+ * Entries are written with a constant timestamp so identical inputs produce identical archives.
+ * The archive switches to Zip64 when it holds more than 65535 entries or grows past 4 GiB.
+ */
+final class ZipArchiveWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    // 1980-02-01 00:00:00 in MS-DOS format, same as Gradle's reproducible archives.
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (2 << 5) | 1;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private final OutputStream output;
+    private final List<CentralRecord> records;
+    private final Set<String> names;
+    private final byte[] header;
+    private final byte[] buffer;
+    private final Deflater deflater;
+    private final CRC32 crc;
+
+    private long offset;
+    private long deflateTime;
+    private boolean entryOpen;
+    private boolean closed;
+
+    /**
+     * Create a new archive writer.
+     *
+     * @param output output the archive is written to, it should be buffered.
+     */
+    ZipArchiveWriter(@NotNull OutputStream output) {
+        this(output, 0);
+    }
+
+    /**
+     * Create a new archive writer appending to existing archive data.
+     *
+     * @param output output the archive is written to, it should be buffered.
+     * @param offset amount of bytes already stored before the output, entries kept from them are offset accordingly.
+     */
+    ZipArchiveWriter(@NotNull OutputStream output, long offset) {
+        this.output = output;
+        this.offset = offset;
+        this.records = new ArrayList<>();
+        this.names = new HashSet<>();
+        this.header = new byte[64];
+        this.buffer = new byte[64 * 1024];
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.crc = new CRC32();
+    }
+
+    /**
+     * Append an entry whose checksum and sizes are already known.
+     *
+     * @param name name of the entry.
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     * @param crc CRC-32 of the uncompressed content.
+     * @param compressedSize size of the data.
+     * @param size size of the uncompressed content.
+     * @param data data of the entry, already compressed with {@code method}.
+     *
+     * @throws IOException if the entry could not be written, or the data does not match {@code compressedSize}.
+     */
+    void writeEntry(@NotNull String name, int method, long crc, long compressedSize, long size, @NotNull InputStream data) throws IOException {
+        this.ensureWritable();
+
+        if (compressedSize > MAX_32 || size > MAX_32)
+            throw new ZipException("Entry '" + name + "' is too large, entries are limited to 4 GiB");
+
+        // Deflated entries always use a data descriptor, so they are laid out exactly like streamed ones.
+        int flags = method == ZipEntry.DEFLATED ? FLAG_DATA_DESCRIPTOR : 0;
+        long headerOffset = this.offset;
+        byte[] encodedName = this.registerName(name);
+
+        if (flags == FLAG_DATA_DESCRIPTOR)
+            this.writeLocalHeader(encodedName, flags, method, 0, 0, 0);
+        else
+            this.writeLocalHeader(encodedName, flags, method, crc, compressedSize, size);
+
+        long written = 0;
+        int read;
+        while ((read = data.read(this.buffer)) != -1) {
+            this.write(this.buffer, 0, read);
+            written += read;
+        }
+
+        if (written != compressedSize)
+            throw new ZipException("Invalid size for entry '" + name + "': expected " + compressedSize + " but got " + written);
+
+        if (flags == FLAG_DATA_DESCRIPTOR)
+            this.writeDataDescriptor(crc, compressedSize, size);
+
+        this.records.add(new CentralRecord(encodedName, flags, method, crc, compressedSize, size, headerOffset));
+    }
+
+    /**
+     * Append the local record of an entry of another archive as-is, its data is neither inflated nor compressed again.
+     *
+     * @param entry entry of the other archive.
+     * @param record raw local record of the entry, as returned by {@link ZipArchiveReader#openRecord(ZipArchiveReader.Entry)}.
+     *
+     * @throws IOException if the entry could not be written, or the record does not match the entry.
+     */
+    void copyEntry(@NotNull ZipArchiveReader.Entry entry, @NotNull InputStream record) throws IOException {
+        this.ensureWritable();
+
+        long headerOffset = this.offset;
+        byte[] encodedName = this.registerName(entry.name());
+
+        long written = 0;
+        int read;
+        while ((read = record.read(this.buffer)) != -1) {
+            this.write(this.buffer, 0, read);
+            written += read;
+        }
+
+        if (written != entry.recordSize())
+            throw new ZipException("Invalid record size for entry '" + entry.name() + "': expected " + entry.recordSize() + " but got " + written);
+
+        this.records.add(new CentralRecord(encodedName, entry.flags(), entry.method(), entry.crc(), entry.compressedSize(),
+                entry.size(), headerOffset));
+    }
+
+    /**
+     * Keep an entry already stored before the {@link #ZipArchiveWriter(OutputStream, long) offset} of this writer,
+     * only its central directory header is written.
+     *
+     * @param entry entry of the archive being appended to.
+     *
+     * @throws IOException if the entry could not be kept.
+     */
+    void keepEntry(@NotNull ZipArchiveReader.Entry entry) throws IOException {
+        this.ensureWritable();
+
+        byte[] encodedName = this.registerName(entry.name());
+        this.records.add(new CentralRecord(encodedName, entry.flags(), entry.method(), entry.crc(), entry.compressedSize(),
+                entry.size(), entry.headerOffset()));
+    }
+
+    /**
+     * Open a new deflated entry, its checksum and sizes are written after its data once the stream is closed.
+     * <p>
+     * No other entry can be written until the returned stream is closed.
+     *
+     * @param name name of the entry.
+     * @param level deflate level.
+     *
+     * @return output stream to write the uncompressed content of the entry to.
+     *
+     * @throws IOException if the entry could not be opened.
+     */
+    @NotNull OutputStream openDeflated(@NotNull String name, int level) throws IOException {
+        this.ensureWritable();
+
+        long headerOffset = this.offset;
+        byte[] encodedName = this.registerName(name);
+        this.writeLocalHeader(encodedName, FLAG_DATA_DESCRIPTOR, ZipEntry.DEFLATED, 0, 0, 0);
+
+        this.deflater.reset();
+        this.deflater.setLevel(level);
+        this.crc.reset();
+        this.entryOpen = true;
+
+        return new OutputStream() {
+            private long size;
+            private long compressedSize;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                if (this.closed)
+                    throw new IOException("Stream closed");
+
+                ZipArchiveWriter.this.crc.update(b, off, len);
+                ZipArchiveWriter.this.deflater.setInput(b, off, len);
+                while (!ZipArchiveWriter.this.deflater.needsInput()) {
+                    this.compressedSize += ZipArchiveWriter.this.deflate();
+                }
+
+                this.size += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (this.closed)
+                    return;
+
+                this.closed = true;
+                ZipArchiveWriter.this.entryOpen = false;
+
+                ZipArchiveWriter.this.deflater.finish();
+                while (!ZipArchiveWriter.this.deflater.finished()) {
+                    this.compressedSize += ZipArchiveWriter.this.deflate();
+                }
+
+                if (this.compressedSize > MAX_32 || this.size > MAX_32)
+                    throw new ZipException("Entry '" + name + "' is too large, entries are limited to 4 GiB");
+
+                long crc = ZipArchiveWriter.this.crc.getValue();
+                ZipArchiveWriter.this.writeDataDescriptor(crc, this.compressedSize, this.size);
+                ZipArchiveWriter.this.records.add(new CentralRecord(encodedName, FLAG_DATA_DESCRIPTOR, ZipEntry.DEFLATED,
+                        crc, this.compressedSize, this.size, headerOffset));
+            }
+        };
+    }
+
+    /**
+     * Amount of bytes written so far.
+     *
+     * @return current size of the archive.
+     */
+    long offset() {
+        return this.offset;
+    }
+
+    /**
+     * Time spent deflating the entries opened with {@link #openDeflated(String, int)}.
+     *
+     * @return deflate time in nanoseconds.
+     */
+    long deflateTime() {
+        return this.deflateTime;
+    }
+
+    /**
+     * Flush the written content to the underlying output.
+     *
+     * @throws IOException if the content could not be flushed.
+     */
+    void flush() throws IOException {
+        this.output.flush();
+    }
+
+    /**
+     * Write the central directory and close the underlying output.
+     *
+     * @throws IOException if the archive could not be completed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        try {
+            this.writeCentralDirectory();
+        } finally {
+            this.deflater.end();
+            this.output.close();
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        if (this.closed)
+            throw new IOException("Archive is closed");
+
+        if (this.entryOpen)
+            throw new IOException("An entry is still open");
+    }
+
+    private byte @NotNull [] registerName(@NotNull String name) throws ZipException {
+        if (!this.names.add(name))
+            throw new ZipException("duplicate entry: " + name);
+
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        if (encodedName.length > MAX_16)
+            throw new ZipException("Entry name '" + name + "' is too long");
+
+        return encodedName;
+    }
+
+    private int deflate() throws IOException {
+        long start = System.nanoTime();
+        int length = this.deflater.deflate(this.buffer);
+        this.deflateTime += System.nanoTime() - start;
+
+        this.write(this.buffer, 0, length);
+        return length;
+    }
+
+    private void writeLocalHeader(byte @NotNull [] name, int flags, int method, long crc, long compressedSize, long size) throws IOException {
+        putInt(this.header, 0, LOCAL_HEADER_SIGNATURE);
+        putShort(this.header, 4, VERSION);
+        putShort(this.header, 6, flags | FLAG_UTF8);
+        putShort(this.header, 8, method);
+        putShort(this.header, 10, DOS_TIME);
+        putShort(this.header, 12, DOS_DATE);
+        putInt(this.header, 14, crc);
+        putInt(this.header, 18, compressedSize);
+        putInt(this.header, 22, size);
+        putShort(this.header, 26, name.length);
+        putShort(this.header, 28, 0);
+
+        this.write(this.header, 0, 30);
+        this.write(name, 0, name.length);
+    }
+
+    private void writeDataDescriptor(long crc, long compressedSize, long size) throws IOException {
+        putInt(this.header, 0, DATA_DESCRIPTOR_SIGNATURE);
+        putInt(this.header, 4, crc);
+        putInt(this.header, 8, compressedSize);
+        putInt(this.header, 12, size);
+
+        this.write(this.header, 0, 16);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long directoryOffset = this.offset;
+
+        for (CentralRecord record : this.records) {
+            boolean zip64 = record.headerOffset() > MAX_32;
+
+            putInt(this.header, 0, CENTRAL_HEADER_SIGNATURE);
+            putShort(this.header, 4, zip64 ? VERSION_ZIP64 : VERSION);
+            putShort(this.header, 6, zip64 ? VERSION_ZIP64 : VERSION);
+            putShort(this.header, 8, record.flags() | FLAG_UTF8);
+            putShort(this.header, 10, record.method());
+            putShort(this.header, 12, DOS_TIME);
+            putShort(this.header, 14, DOS_DATE);
+            putInt(this.header, 16, record.crc());
+            putInt(this.header, 20, record.compressedSize());
+            putInt(this.header, 24, record.size());
+            putShort(this.header, 28, record.name().length);
+            putShort(this.header, 30, zip64 ? 12 : 0);
+            putShort(this.header, 32, 0);
+            putShort(this.header, 34, 0);
+            putShort(this.header, 36, 0);
+            putInt(this.header, 38, 0);
+            putInt(this.header, 42, zip64 ? MAX_32 : record.headerOffset());
+
+            this.write(this.header, 0, 46);
+            this.write(record.name(), 0, record.name().length);
+
+            if (zip64) {
+                putShort(this.header, 0, 0x0001);
+                putShort(this.header, 2, 8);
+                putLong(this.header, 4, record.headerOffset());
+                this.write(this.header, 0, 12);
+            }
+        }
+
+        long directorySize = this.offset - directoryOffset;
+        int entries = this.records.size();
+        boolean zip64 = entries > MAX_16 || directoryOffset > MAX_32 || directorySize > MAX_32;
+
+        if (zip64) {
+            long zip64EndOffset = this.offset;
+
+            putInt(this.header, 0, ZIP64_END_SIGNATURE);
+            putLong(this.header, 4, 44);
+            putShort(this.header, 12, VERSION_ZIP64);
+            putShort(this.header, 14, VERSION_ZIP64);
+            putInt(this.header, 16, 0);
+            putInt(this.header, 20, 0);
+            putLong(this.header, 24, entries);
+            putLong(this.header, 32, entries);
+            putLong(this.header, 40, directorySize);
+            putLong(this.header, 48, directoryOffset);
+            this.write(this.header, 0, 56);
+
+            putInt(this.header, 0, ZIP64_LOCATOR_SIGNATURE);
+            putInt(this.header, 4, 0);
+            putLong(this.header, 8, zip64EndOffset);
+            putInt(this.header, 16, 1);
+            this.write(this.header, 0, 20);
+        }
+
+        putInt(this.header, 0, END_SIGNATURE);
+        putShort(this.header, 4, 0);
+        putShort(this.header, 6, 0);
+        putShort(this.header, 8, Math.min(entries, MAX_16));
+        putShort(this.header, 10, Math.min(entries, MAX_16));
+        putInt(this.header, 12, Math.min(directorySize, MAX_32));
+        putInt(this.header, 16, Math.min(directoryOffset, MAX_32));
+        putShort(this.header, 20, 0);
+        this.write(this.header, 0, 22);
+    }
+
+    private void write(byte @NotNull [] bytes, int offset, int length) throws IOException {
+        this.output.write(bytes, offset, length);
+        this.offset += length;
+    }
+
+    private static void putShort(byte @NotNull [] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte @NotNull [] bytes, int offset, long value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static void putLong(byte @NotNull [] bytes, int offset, long value) {
+        putInt(bytes, offset, value);
+        putInt(bytes, offset + 4, value >>> 32);
+    }
+
+    private record CentralRecord(byte @NotNull [] name, int flags, int method, long crc, long compressedSize, long size, long headerOffset) {
+    }
+}
@@ -0,0 +1,587 @@
+package fr.atlasworld.fresco.processor;
+
+import fr.atlasworld.fresco.source.EntryContentCache;
+import fr.atlasworld.fresco.source.SourceArchive;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+
+/**
+ * Output target writing every entry to a zip file.
+ * <p>
+ * Without an executor, entries are streamed into the archive on the calling thread.
+ * With an executor, entries are compressed concurrently on the executor and appended to the archive
+ * in the order they were written, only a bounded amount of compressed entries is held at once.
+ * <p>
+ * Entries kept from a previous archive are copied without being inflated or compressed again, so are entries copied
+ * from a {@link SourceArchive} when they are already compressed with the configured method, their data and checksum
+ * are reused as-is whatever their deflate level.
+ * When patching, the previous archive is the output file itself: kept entries are left where they are,
+ * other entries are appended after them in place of the previous central directory, and the space of the entries
+ * which were not kept is left unused. Once the unused space grows past the compaction threshold,
+ * the archive is rewritten with only its live entries, exactly as a full build would have written it.
+ */
+final class ZipOutputTarget implements OutputTarget {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipArchiveWriter writer;
+    private final DigestOutputStream digestStream;
+    private final EntryCompressor compressor;
+    private final @Nullable ExecutorService executor;
+    private final int maxPending;
+
+    private final Path outputPath;
+    private final Collection<String> digestAlgorithms;
+    private final @Nullable ZipArchiveReader previous;
+    private final boolean patch;
+    private final double compactionThreshold;
+    private long keptSize;
+    private long deadSize;
+    private Map<String, String> digests;
+    private long size;
+    private boolean closed;
+
+    private final Deque<PendingCompression> pending;
+    private final ReentrantLock lock;
+    private final byte[] buffer;
+
+    ZipOutputTarget(@NotNull File outputFile, @NotNull EntryCompressor compressor, @Nullable ExecutorService executor, int maxPending,
+                    @NotNull Collection<String> digestAlgorithms) throws IOException {
+        this(outputFile, compressor, executor, maxPending, digestAlgorithms, null, false, 1);
+    }
+
+    /**
+     * Create a target reusing the entries of a previous archive.
+     *
+     * @param previousFile previous archive, or {@code null} if there is none.
+     * @param patch whether the previous archive is the output file, which is then patched in place.
+     * @param compactionThreshold fraction of unused space of a patched archive past which it is compacted.
+     */
+    ZipOutputTarget(@NotNull File outputFile, @NotNull EntryCompressor compressor, @Nullable ExecutorService executor, int maxPending,
+                    @NotNull Collection<String> digestAlgorithms, @Nullable File previousFile, boolean patch,
+                    double compactionThreshold) throws IOException {
+        this.outputPath = outputFile.toPath();
+        this.digestAlgorithms = List.copyOf(digestAlgorithms);
+        this.patch = patch;
+        this.compactionThreshold = compactionThreshold;
+        this.previous = previousFile != null ? new ZipArchiveReader(previousFile.toPath()) : null;
+
+        try {
+            if (patch) {
+                // Appended entries overwrite the previous central directory, the digests are computed once complete.
+                long offset = this.previous.centralDirectoryOffset();
+                FileChannel channel = FileChannel.open(this.outputPath, StandardOpenOption.WRITE);
+                channel.position(offset);
+
+                this.digestStream = new DigestOutputStream(Channels.newOutputStream(channel), List.of());
+                this.writer = new ZipArchiveWriter(new BufferedOutputStream(this.digestStream, BUFFER_SIZE), offset);
+            } else {
+                if (outputFile.exists())
+                    outputFile.delete();
+
+                outputFile.createNewFile();
+                this.digestStream = new DigestOutputStream(new FileOutputStream(outputFile), digestAlgorithms);
+                this.writer = new ZipArchiveWriter(new BufferedOutputStream(this.digestStream, BUFFER_SIZE));
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (this.previous != null)
+                this.previous.close();
+
+            throw ex;
+        }
+
+        this.compressor = compressor;
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+
+        this.pending = new ArrayDeque<>();
+        this.lock = new ReentrantLock();
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void copy(@NotNull SourceEntry entry, @NotNull String location) throws IOException {
+        SourceEntry source = entry instanceof EntryContentCache.SharedEntry shared ? shared.source() : entry;
+        if (source instanceof SourceArchive.Entry archived && this.canPassThrough(archived, location)) {
+            this.passThrough(archived, location);
+            return;
+        }
+
+        this.writeContent(location, entry::openStream, null);
+    }
+
+    @Override
+    public void write(byte @NotNull [] bytes, @NotNull String location) throws IOException {
+        this.writeContent(location, () -> new ByteArrayInputStream(bytes), null);
+    }
+
+    @Override
+    public void write(@NotNull InputStream input, @NotNull String location) throws IOException {
+        if (this.executor == null && this.compressor.configured(location).method() == Compression.Method.DEFLATED) {
+            this.lock.lock();
+            try (OutputStream output = this.writer.openDeflated(location, this.compressor.configured(location).level())) {
+                int read;
+                while ((read = input.read(this.buffer)) != -1) {
+                    output.write(this.buffer, 0, read);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            return;
+        }
+
+        // The stream can only be read once, it must be buffered to be compressed later or checksummed before being stored.
+        SpillOutputStream content = new SpillOutputStream();
+        try (content) {
+            input.transferTo(content);
+        }
+
+        this.writeContent(location, content::openStream, content);
+    }
+
+    @Override
+    public @NotNull OutputStream open(@NotNull String location) throws IOException {
+        Compression compression = this.compressor.configured(location);
+
+        if (this.executor == null && compression.method() == Compression.Method.DEFLATED) {
+            this.lock.lock();
+            try {
+                return new LockedOutputStream(this.writer.openDeflated(location, compression.level()));
+            } catch (IOException | RuntimeException ex) {
+                this.lock.unlock();
+                throw ex;
+            }
+        }
+
+        SpillOutputStream content = new SpillOutputStream();
+        return new FilterOutputStream(content) {
+            private boolean closed;
+
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (this.closed)
+                    return;
+
+                this.closed = true;
+                content.close();
+                ZipOutputTarget.this.writeContent(location, content::openStream, content);
+            }
+        };
+    }
+
+    @Override
+    public boolean canKeep(@NotNull String location) {
+        return this.previous != null && this.previous.entry(location) != null;
+    }
+
+    @Override
+    public void keep(@NotNull String location) throws IOException {
+        ZipArchiveReader.Entry entry = this.previous != null ? this.previous.entry(location) : null;
+        if (entry == null)
+            throw new IOException("Entry '" + location + "' is not part of the previous archive");
+
+        this.lock.lock();
+        try {
+            if (this.executor == null) {
+                this.appendKept(entry);
+                return;
+            }
+
+            while (this.pending.size() >= this.maxPending) {
+                this.appendNext();
+            }
+
+            this.pending.add(new PendingCompression(location, null, null, entry, null));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean canPassThrough(@NotNull SourceArchive.Entry entry, @NotNull String location) {
+        Compression.Method method = this.compressor.configured(location).method();
+        if (method == Compression.Method.AUTO)
+            return true;
+
+        return method == (entry.method() == ZipEntry.STORED ? Compression.Method.STORED : Compression.Method.DEFLATED);
+    }
+
+    private void passThrough(@NotNull SourceArchive.Entry entry, @NotNull String location) throws IOException {
+        this.lock.lock();
+        try {
+            if (this.executor == null) {
+                this.appendRaw(entry, location);
+                return;
+            }
+
+            while (this.pending.size() >= this.maxPending) {
+                this.appendNext();
+            }
+
+            this.pending.add(new PendingCompression(location, null, null, null, entry));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Must be called while holding the lock.
+    private void appendRaw(@NotNull SourceArchive.Entry entry, @NotNull String location) throws IOException {
+        try (InputStream data = entry.openRaw()) {
+            this.writer.writeEntry(location, entry.method(), entry.crc(), entry.compressedSize(), entry.size(), data);
+        }
+    }
+
+    // Must be called while holding the lock.
+    private void appendKept(@NotNull ZipArchiveReader.Entry entry) throws IOException {
+        if (this.patch) {
+            this.writer.keepEntry(entry);
+            this.keptSize += entry.recordSize();
+            return;
+        }
+
+        try (InputStream record = this.previous.openRecord(entry)) {
+            this.writer.copyEntry(entry, record);
+        }
+    }
+
+    // Writes re-readable content, the buffer holding it (if any) is released once written.
+    private void writeContent(@NotNull String location, @NotNull ContentSupplier content, @Nullable SpillOutputStream buffer) throws IOException {
+        if (this.executor != null) {
+            this.submit(location, content, buffer);
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            Compression compression = this.compressor.resolve(location, content);
+
+            if (compression.method() == Compression.Method.STORED) {
+                long[] checksum = this.compressor.checksum(content);
+                try (InputStream input = content.open()) {
+                    this.writer.writeEntry(location, ZipEntry.STORED, checksum[0], checksum[1], checksum[1], input);
+                }
+            } else {
+                try (InputStream input = content.open();
+                     OutputStream output = this.writer.openDeflated(location, compression.level())) {
+                    int read;
+                    while ((read = input.read(this.buffer)) != -1) {
+                        output.write(this.buffer, 0, read);
+                    }
+                }
+            }
+        } finally {
+            this.lock.unlock();
+
+            if (buffer != null)
+                buffer.delete();
+        }
+    }
+
+    private void submit(@NotNull String location, @NotNull ContentSupplier content, @Nullable SpillOutputStream buffer) throws IOException {
+        this.lock.lock();
+        try {
+            while (this.pending.size() >= this.maxPending) {
+                this.appendNext();
+            }
+
+            // The buffer is only released once appended, stored entries are read again from it.
+            Future<EntryCompressor.CompressedEntry> future = this.executor.submit(() -> this.compressor.compress(location, content));
+
+            this.pending.add(new PendingCompression(location, future, buffer, null, null));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Must be called while holding the lock.
+    private void appendNext() throws IOException {
+        PendingCompression next = this.pending.poll();
+        if (next == null)
+            return;
+
+        if (next.kept() != null) {
+            this.appendKept(next.kept());
+            return;
+        }
+
+        if (next.raw() != null) {
+            this.appendRaw(next.raw(), next.location());
+            return;
+        }
+
+        EntryCompressor.CompressedEntry entry;
+        try {
+            entry = next.future().get();
+        } catch (ExecutionException ex) {
+            if (next.buffer() != null)
+                next.buffer().delete();
+
+            throw new IOException("Failed to compress entry '" + next.location() + "'", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing entry '" + next.location() + "'");
+        }
+
+        try (InputStream data = entry.data().open()) {
+            this.writer.writeEntry(entry.location(), entry.method(), entry.crc(), entry.compressedSize(), entry.size(), data);
+        } finally {
+            entry.release();
+            if (next.buffer() != null)
+                next.buffer().delete();
+        }
+    }
+
+    // Must be called while holding the lock.
+    private void drain() throws IOException {
+        while (!this.pending.isEmpty()) {
+            this.appendNext();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.lock.lock();
+        try {
+            this.drain();
+            this.writer.flush();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if (this.closed)
+                return;
+
+            this.closed = true;
+
+            long dataSize;
+            try {
+                this.drain();
+            } finally {
+                dataSize = this.writer.offset();
+                try {
+                    this.writer.close();
+                } finally {
+                    this.compressor.close();
+                    if (this.previous != null)
+                        this.previous.close();
+                }
+            }
+
+            if (!this.patch) {
+                this.digests = this.digestStream.digests();
+                this.size = this.digestStream.size;
+                return;
+            }
+
+            this.finishPatch(dataSize);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Drops what is left of the previous central directory, and compacts the archive once too much space is unused.
+    private void finishPatch(long dataSize) throws IOException {
+        long size = this.writer.offset();
+        try (FileChannel channel = FileChannel.open(this.outputPath, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+
+        this.deadSize = this.previous.centralDirectoryOffset() - this.keptSize;
+        if (dataSize > 0 && this.deadSize > dataSize * this.compactionThreshold) {
+            this.compact();
+            return;
+        }
+
+        DigestOutputStream digests = new DigestOutputStream(OutputStream.nullOutputStream(), this.digestAlgorithms);
+        try (InputStream input = Files.newInputStream(this.outputPath); digests) {
+            input.transferTo(digests);
+        }
+
+        // Digests are only computed once the stream is closed.
+        this.digests = digests.digests();
+        this.size = digests.size;
+    }
+
+    private void compact() throws IOException {
+        Path compacted = this.outputPath.resolveSibling(this.outputPath.getFileName() + ".compact");
+
+        try (ZipArchiveReader patched = new ZipArchiveReader(this.outputPath)) {
+            DigestOutputStream digests = new DigestOutputStream(Files.newOutputStream(compacted), this.digestAlgorithms);
+            try (ZipArchiveWriter writer = new ZipArchiveWriter(new BufferedOutputStream(digests, BUFFER_SIZE))) {
+                for (ZipArchiveReader.Entry entry : patched.entries()) {
+                    try (InputStream record = patched.openRecord(entry)) {
+                        writer.copyEntry(entry, record);
+                    }
+                }
+            }
+
+            this.digests = digests.digests();
+            this.size = digests.size;
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(compacted);
+            throw ex;
+        }
+
+        Files.move(compacted, this.outputPath, StandardCopyOption.REPLACE_EXISTING);
+        this.deadSize = 0;
+    }
+
+    /**
+     * Digests of the archive, computed while it was written.
+     *
+     * @return hex encoded digests of the archive by algorithm.
+     *
+     * @throws IllegalStateException if the target is not closed yet.
+     */
+    @NotNull Map<String, String> digests() {
+        if (this.digests == null)
+            throw new IllegalStateException("Digests are only available once the output is closed!");
+
+        return this.digests;
+    }
+
+    /**
+     * Size of the archive.
+     *
+     * @return amount of bytes written to the archive file, only complete once the target is closed.
+     */
+    long size() {
+        return this.digests != null ? this.size : this.digestStream.size;
+    }
+
+    /**
+     * Space of the archive used by entries of the previous archive which were not kept.
+     *
+     * @return amount of unused bytes of a patched archive, {@code 0} if it was compacted or not patched.
+     */
+    long deadSize() {
+        return this.deadSize;
+    }
+
+    /**
+     * Time spent compressing entries, summed across every thread.
+     *
+     * @return compression time in nanoseconds.
+     */
+    long compressTime() {
+        this.lock.lock();
+        try {
+            return this.compressor.time() + this.writer.deflateTime();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Computes the digests of everything written to the archive file, so it doesn't need to be read again.
+    private static final class DigestOutputStream extends FilterOutputStream {
+        private final Map<String, MessageDigest> digests;
+        private Map<String, String> results;
+        private long size;
+
+        private DigestOutputStream(@NotNull OutputStream output, @NotNull Collection<String> algorithms) throws IOException {
+            super(output);
+
+            this.digests = new LinkedHashMap<>();
+            for (String algorithm : algorithms) {
+                try {
+                    this.digests.put(algorithm, MessageDigest.getInstance(algorithm));
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new IOException("Unsupported digest algorithm: " + algorithm, ex);
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            for (MessageDigest digest : this.digests.values()) {
+                digest.update(b, off, len);
+            }
+
+            this.size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.results != null)
+                return;
+
+            super.close();
+
+            Map<String, String> results = new LinkedHashMap<>();
+            this.digests.forEach((algorithm, digest) -> results.put(algorithm, HexFormat.of().formatHex(digest.digest())));
+            this.results = Collections.unmodifiableMap(results);
+        }
+
+        private @NotNull Map<String, String> digests() {
+            if (this.results == null)
+                throw new IllegalStateException("Digests are only available once the output is closed!");
+
+            return this.results;
+        }
+    }
+
+    // Kept and raw archived entries have no compression, they are appended in order with the others.
+    private record PendingCompression(@NotNull String location, @Nullable Future<EntryCompressor.CompressedEntry> future,
+                                      @Nullable SpillOutputStream buffer, @Nullable ZipArchiveReader.Entry kept,
+                                      @Nullable SourceArchive.Entry raw) {
+    }
+
+    // Keeps the target locked until the entry is closed.
+    private final class LockedOutputStream extends FilterOutputStream {
+        private boolean closed;
+
+        private LockedOutputStream(@NotNull OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed)
+                return;
+
+            this.closed = true;
+            try {
+                this.out.close();
+            } finally {
+                ZipOutputTarget.this.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package fr.atlasworld.fresco.prune;
+
+import com.google.gson.JsonParseException;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.reference.ResourceReference;
+import fr.atlasworld.fresco.reference.ResourceReferences;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+
+/**
+ * Finds the entries nothing references, so they can be left out of the resource pack.
+ * <p>
+ * Only {@link #PRUNABLE_TYPES models, textures and sounds} can be pruned, every other entry is a root of the reference graph.
+ * The graph follows the references found by {@link ResourceReferences},
+ * unknown formats are scanned for strings looking like resource locations, so they keep what they may reference.
+ */
+public final class AssetPruner {
+    public static final Set<EntryType> PRUNABLE_TYPES = Set.of(EntryType.MODELS, EntryType.TEXTURES, EntryType.SOUNDS);
+    public static final String VANILLA_NAMESPACE = ResourceReferences.VANILLA_NAMESPACE;
+
+    private final List<PathMatcher> roots;
+    private final boolean keepVanilla;
+
+    private AssetPruner(@NotNull List<PathMatcher> roots, boolean keepVanilla) {
+        this.roots = roots;
+        this.keepVanilla = keepVanilla;
+    }
+
+    /**
+     * Find the entries which are not reachable from any root.
+     *
+     * @param entries every entry of the resource pack.
+     * @param definition pack definition used to determine the type of the entries.
+     *
+     * @return report containing the entries to prune.
+     */
+    public @NotNull PruneReport prune(@NotNull Collection<SourceEntry> entries, @NotNull PackDefinition definition) {
+        Objects.requireNonNull(entries, "entries must not be null!");
+        Objects.requireNonNull(definition, "definition must not be null!");
+
+        return new Graph(entries, definition).prune();
+    }
+
+    /**
+     * Create a new {@link AssetPruner.Builder}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create() {
+        return new Builder();
+    }
+
+    // Reference graph of a single pruning pass.
+    private final class Graph {
+        private final Collection<SourceEntry> entries;
+        private final PackDefinition definition;
+        private final Map<String, SourceEntry> index;
+        private final Set<SourceEntry> reached;
+        private final Deque<SourceEntry> queue;
+        private final List<String> warnings;
+
+        private Graph(@NotNull Collection<SourceEntry> entries, @NotNull PackDefinition definition) {
+            this.entries = entries;
+            this.definition = definition;
+            this.index = new HashMap<>();
+            this.reached = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.queue = new ArrayDeque<>();
+            this.warnings = new ArrayList<>();
+        }
+
+        private @NotNull PruneReport prune() {
+            for (SourceEntry entry : this.entries) {
+                if (entry.isDirectory())
+                    continue;
+
+                String path = ResourceReferences.pathOf(entry);
+                if (path != null && !entry.isInsideNamespace())
+                    this.index.put(indexKey(this.typeOf(entry), entry.namespace(), path), entry);
+            }
+
+            for (SourceEntry entry : this.entries) {
+                if (!entry.isDirectory() && this.isRoot(entry))
+                    this.reach(entry);
+            }
+
+            while (!this.queue.isEmpty()) {
+                SourceEntry entry = this.queue.poll();
+                try {
+                    this.visit(entry);
+                } catch (IOException | JsonParseException | IllegalStateException ex) {
+                    this.warnings.add("Could not read references of '" + entry.fullPath() + "': " + ex.getMessage());
+                }
+            }
+
+            List<String> pruned = new ArrayList<>();
+            for (SourceEntry entry : this.entries) {
+                if (!entry.isDirectory() && !this.reached.contains(entry))
+                    pruned.add(entry.fullPath());
+            }
+
+            pruned.sort(null);
+            return new PruneReport(pruned, this.reached.size(), this.warnings);
+        }
+
+        private boolean isRoot(@NotNull SourceEntry entry) {
+            if (entry.isInsideNamespace() || !PRUNABLE_TYPES.contains(this.typeOf(entry)) || ResourceReferences.pathOf(entry) == null)
+                return true;
+
+            if (AssetPruner.this.keepVanilla && VANILLA_NAMESPACE.equals(entry.namespace()))
+                return true;
+
+            Path path = Path.of(entry.fullPath());
+            for (PathMatcher root : AssetPruner.this.roots) {
+                if (root.matches(path))
+                    return true;
+            }
+
+            return false;
+        }
+
+        private void reach(@Nullable SourceEntry entry) {
+            if (entry == null || !this.reached.add(entry))
+                return;
+
+            this.queue.add(entry);
+
+            // Animation and texture metadata always follow their texture.
+            if (entry.filename().endsWith(ResourceReferences.TEXTURE_EXTENSION) && this.typeOf(entry) == EntryType.TEXTURES)
+                this.reach(this.index.get(indexKey(EntryType.TEXTURES, entry.namespace(),
+                        ResourceReferences.pathOf(entry) + ResourceReferences.META_EXTENSION)));
+        }
+
+        private void visit(@NotNull SourceEntry entry) throws IOException {
+            EntryType type = this.typeOf(entry);
+            if (!ResourceReferences.hasReferences(entry, type))
+                return;
+
+            ResourceReferences.visit(entry, type, entry.openAsJson(), reference -> {
+                if (reference.kind() == ResourceReference.Kind.DIRECTORY)
+                    this.reachDirectory(reference.path());
+                else
+                    this.reach(this.index.get(indexKey(reference.type(), reference.namespace(), reference.path())));
+
+                return null;
+            });
+        }
+
+        // Directory sources stitch every texture of the directory, in every namespace.
+        private void reachDirectory(@NotNull String directory) {
+            for (SourceEntry entry : this.entries) {
+                if (entry.isDirectory() || entry.isInsideNamespace() || this.typeOf(entry) != EntryType.TEXTURES)
+                    continue;
+
+                String path = ResourceReferences.pathOf(entry);
+                if (path != null && path.startsWith(directory))
+                    this.reach(entry);
+            }
+        }
+
+        private @NotNull EntryType typeOf(@NotNull SourceEntry entry) {
+            return ResourceReferences.typeOf(entry, this.definition);
+        }
+    }
+
+    private static @NotNull String indexKey(@NotNull EntryType type, @NotNull String namespace, @NotNull String path) {
+        return type.name() + '|' + namespace + '|' + path;
+    }
+
+    /**
+     * {@link AssetPruner} builder.
+     */
+    public static final class Builder {
+        private final List<PathMatcher> roots;
+        private boolean keepVanilla;
+
+        @ApiStatus.Internal
+        private Builder() {
+            this.roots = new ArrayList<>();
+            this.keepVanilla = true;
+        }
+
+        /**
+         * Always keep the entries matching glob patterns, and everything they reference.
+         * <p>
+         * Patterns are matched against the full path of the entries, ex: {@code assets/example/textures/gui/**}.
+         *
+         * @param patterns glob patterns of the root entries.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder keep(@NotNull String... patterns) {
+            Objects.requireNonNull(patterns, "patterns must not be null!");
+
+            for (String pattern : patterns) {
+                this.roots.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets whether every entry of the {@value #VANILLA_NAMESPACE} namespace is kept, enabled by default.
+         * <p>
+         * Vanilla assets are mostly referenced by the game itself, overriding them is the only reason for them to be in the pack.
+         *
+         * @param keepVanilla whether vanilla entries are roots.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder keepVanilla(boolean keepVanilla) {
+            this.keepVanilla = keepVanilla;
+            return this;
+        }
+
+        /**
+         * Create a new pruner with the provided settings.
+         *
+         * @return newly created {@link AssetPruner}.
+         */
+        public @NotNull AssetPruner build() {
+            return new AssetPruner(List.copyOf(this.roots), this.keepVanilla);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package fr.atlasworld.fresco.prune;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Result of an {@link AssetPruner} pass.
+ *
+ * @param pruned full paths of the entries nothing references, sorted.
+ * @param kept amount of entries reachable from a root.
+ * @param warnings entries whose references could not be read, they are kept but may reference entries which were pruned.
+ */
+public record PruneReport(@NotNull List<String> pruned, int kept, @NotNull List<String> warnings) {
+
+    public PruneReport {
+        pruned = List.copyOf(pruned);
+        warnings = List.copyOf(warnings);
+    }
+}
@@ -0,0 +1,22 @@
+package fr.atlasworld.fresco.reference;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Visits the references found in a resource pack entry.
+ */
+@FunctionalInterface
+public interface ReferenceVisitor {
+
+    /**
+     * Visit a reference.
+     *
+     * @param reference reference found in the entry.
+     *
+     * @return reference to point to instead, or {@code null} to leave it untouched.
+     *         Only {@link ResourceReference.Kind#REWRITABLE rewritable} references can be replaced,
+     *         the replacement must have the same type and extension.
+     */
+    @Nullable ResourceReference visit(@NotNull ResourceReference reference);
+}
@@ -0,0 +1,43 @@
+package fr.atlasworld.fresco.reference;
+
+import fr.atlasworld.fresco.source.EntryType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reference from a resource pack entry to another one.
+ *
+ * @param type type of the referenced entry.
+ * @param namespace namespace of the referenced entry, {@code null} for {@link Kind#DIRECTORY directory} references.
+ * @param path path of the referenced entry inside its type directory, including its extension.
+ *             Ex: {@code block/stone.png}, or {@code block/} for directory references.
+ * @param kind how the reference was found.
+ */
+public record ResourceReference(@NotNull EntryType type, @Nullable String namespace, @NotNull String path, @NotNull Kind kind) {
+
+    /**
+     * Kind of reference.
+     */
+    public enum Kind {
+
+        /**
+         * Reference from a model, blockstate or item definition field, it can be rewritten.
+         */
+        REWRITABLE,
+
+        /**
+         * Reference from a known field of another format, it can't be rewritten.
+         */
+        FIXED,
+
+        /**
+         * Reference to every entry of a directory, in every namespace.
+         */
+        DIRECTORY,
+
+        /**
+         * String of an unknown format which looks like a resource location, the referenced entry may not exist.
+         */
+        GUESSED
+    }
+}
@@ -0,0 +1,333 @@
+package fr.atlasworld.fresco.reference;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.SourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the references between resource pack entries.
+ * <p>
+ * Blockstates and items reference models, models reference their parents and textures, {@code sounds.json} references sound files,
+ * atlases reference their sources, fonts their bitmaps, equipment, particles and special item models their textures.
+ * Any other JSON entry is scanned for strings looking like resource locations.
+ */
+public final class ResourceReferences {
+    public static final String VANILLA_NAMESPACE = "minecraft";
+    public static final String SOUNDS_FILE = "sounds.json";
+
+    public static final String JSON_EXTENSION = ".json";
+    public static final String TEXTURE_EXTENSION = ".png";
+    public static final String SOUND_EXTENSION = ".ogg";
+    public static final String META_EXTENSION = ".mcmeta";
+
+    private static final Pattern RESOURCE_LOCATION = Pattern.compile("([a-z0-9_.-]+:)?[a-z0-9_./-]+");
+
+    // Special item models naming a texture, and the directory their texture is resolved from.
+    private static final Map<String, String> SPECIAL_MODEL_TEXTURES = Map.of(
+            "chest", "entity/chest/",
+            "shulker_box", "entity/shulker/",
+            "bed", "entity/bed/",
+            "head", "entity/",
+            "standing_sign", "entity/signs/",
+            "hanging_sign", "entity/signs/hanging/"
+    );
+
+    private final ReferenceVisitor visitor;
+    private boolean modified;
+
+    private ResourceReferences(@NotNull ReferenceVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Determine the type of an entry, entries inside the namespace root are {@link EntryType#CUSTOM}.
+     *
+     * @param entry entry to determine the type of.
+     * @param definition pack definition.
+     *
+     * @return type of the entry.
+     */
+    public static @NotNull EntryType typeOf(@NotNull SourceEntry entry, @NotNull PackDefinition definition) {
+        return entry.entryType(definition);
+    }
+
+    /**
+     * Path of an entry inside its type directory, including its extension.
+     * <p>
+     * Ex: {@code assets/minecraft/textures/block/stone.png} would become {@code block/stone.png}
+     *
+     * @param entry entry to retrieve the path of.
+     *
+     * @return path of the entry, or {@code null} if it has no extension.
+     */
+    public static @Nullable String pathOf(@NotNull SourceEntry entry) {
+        String filename = entry.filename();
+        int extension = filename.lastIndexOf('.');
+        if (extension < 0)
+            return null;
+
+        return entry.key() + filename.substring(extension);
+    }
+
+    /**
+     * Checks whether an entry may contain references.
+     *
+     * @param entry entry to check.
+     * @param type type of the entry.
+     *
+     * @return {@code true} if the entry should be passed to {@link #visit(SourceEntry, EntryType, JsonElement, ReferenceVisitor)}.
+     */
+    public static boolean hasReferences(@NotNull SourceEntry entry, @NotNull EntryType type) {
+        return !entry.isDirectory() && entry.filename().endsWith(JSON_EXTENSION) && type != EntryType.LANGUAGES;
+    }
+
+    /**
+     * Visit every reference of an entry.
+     *
+     * @param entry entry the JSON was read from.
+     * @param type type of the entry.
+     * @param json content of the entry.
+     * @param visitor visitor called for every reference, it may replace rewritable references.
+     *
+     * @return {@code true} if a reference was replaced, and {@code json} modified.
+     */
+    public static boolean visit(@NotNull SourceEntry entry, @NotNull EntryType type, @NotNull JsonElement json,
+                                @NotNull ReferenceVisitor visitor) {
+        Objects.requireNonNull(entry, "entry must not be null!");
+        Objects.requireNonNull(type, "type must not be null!");
+        Objects.requireNonNull(json, "json must not be null!");
+        Objects.requireNonNull(visitor, "visitor must not be null!");
+
+        ResourceReferences references = new ResourceReferences(visitor);
+        if (entry.isInsideNamespace()) {
+            if (entry.filename().equals(SOUNDS_FILE))
+                references.visitSounds(json);
+            else
+                references.visitUnknown(json);
+
+            return false;
+        }
+
+        switch (type) {
+            case MODELS -> references.visitModel(json);
+            case BLOCKSTATES, ITEMS -> references.visitModelHolders(json);
+            case ATLASES -> references.visitAtlas(json);
+            case FONT -> references.visitFont(json);
+            case EQUIPMENT -> references.visitEquipment(json);
+            case PARTICLES -> references.visitParticle(json);
+            case LANGUAGES -> {
+            }
+            default -> references.visitUnknown(json);
+        }
+
+        return references.modified;
+    }
+
+    private void visitModel(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject model))
+            return;
+
+        String parent = string(model.get("parent"));
+        if (parent != null && !parent.startsWith("builtin/"))
+            this.rewritable(model, "parent", EntryType.MODELS, JSON_EXTENSION);
+
+        if (model.get("textures") instanceof JsonObject textures) {
+            for (String key : textures.keySet()) {
+                String location = string(textures.get(key));
+                if (location != null && !location.startsWith("#"))
+                    this.rewritable(textures, key, EntryType.TEXTURES, TEXTURE_EXTENSION);
+            }
+        }
+
+        if (model.get("overrides") instanceof JsonArray overrides) {
+            for (JsonElement override : overrides) {
+                if (override instanceof JsonObject object)
+                    this.rewritable(object, "model", EntryType.MODELS, JSON_EXTENSION);
+            }
+        }
+    }
+
+    // Blockstates and item definitions, models may be nested anywhere, special item models reference their texture directly.
+    private void visitModelHolders(@NotNull JsonElement json) {
+        if (json instanceof JsonArray array) {
+            for (JsonElement element : array) {
+                this.visitModelHolders(element);
+            }
+        } else if (json instanceof JsonObject object) {
+            String type = stripNamespace(string(object.get("type")));
+            if (type != null && SPECIAL_MODEL_TEXTURES.containsKey(type))
+                this.fixed(EntryType.TEXTURES, string(object.get("texture")), SPECIAL_MODEL_TEXTURES.get(type), TEXTURE_EXTENSION);
+
+            for (String key : object.keySet()) {
+                JsonElement value = object.get(key);
+                if ((key.equals("model") || key.equals("base")) && value instanceof JsonPrimitive)
+                    this.rewritable(object, key, EntryType.MODELS, JSON_EXTENSION);
+                else
+                    this.visitModelHolders(value);
+            }
+        }
+    }
+
+    private void visitAtlas(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject atlas) || !(atlas.get("sources") instanceof JsonArray sources))
+            return;
+
+        for (JsonElement element : sources) {
+            if (!(element instanceof JsonObject source))
+                continue;
+
+            String type = stripNamespace(string(source.get("type")));
+            if (type == null)
+                continue;
+
+            switch (type) {
+                case "single", "unstitch" -> this.fixed(EntryType.TEXTURES, string(source.get("resource")), "", TEXTURE_EXTENSION);
+                case "directory" -> {
+                    String directory = string(source.get("source"));
+                    if (directory != null)
+                        this.visitor.visit(new ResourceReference(EntryType.TEXTURES, null,
+                                directory.endsWith("/") ? directory : directory + "/", ResourceReference.Kind.DIRECTORY));
+                }
+                case "paletted_permutations" -> {
+                    if (source.get("textures") instanceof JsonArray textures) {
+                        for (JsonElement texture : textures) {
+                            this.fixed(EntryType.TEXTURES, string(texture), "", TEXTURE_EXTENSION);
+                        }
+                    }
+
+                    this.fixed(EntryType.TEXTURES, string(source.get("palette_key")), "", TEXTURE_EXTENSION);
+                    if (source.get("permutations") instanceof JsonObject permutations) {
+                        for (Map.Entry<String, JsonElement> permutation : permutations.entrySet()) {
+                            this.fixed(EntryType.TEXTURES, string(permutation.getValue()), "", TEXTURE_EXTENSION);
+                        }
+                    }
+                }
+                default -> this.visitUnknown(source);
+            }
+        }
+    }
+
+    private void visitFont(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject font) || !(font.get("providers") instanceof JsonArray providers))
+            return;
+
+        for (JsonElement element : providers) {
+            if (element instanceof JsonObject provider && "bitmap".equals(stripNamespace(string(provider.get("type")))))
+                this.fixed(EntryType.TEXTURES, string(provider.get("file")), "", "");
+        }
+    }
+
+    private void visitEquipment(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject equipment) || !(equipment.get("layers") instanceof JsonObject layers))
+            return;
+
+        for (Map.Entry<String, JsonElement> layerType : layers.entrySet()) {
+            if (!(layerType.getValue() instanceof JsonArray layerList))
+                continue;
+
+            for (JsonElement element : layerList) {
+                if (element instanceof JsonObject layer)
+                    this.fixed(EntryType.TEXTURES, string(layer.get("texture")), "entity/equipment/" + layerType.getKey() + "/",
+                            TEXTURE_EXTENSION);
+            }
+        }
+    }
+
+    private void visitParticle(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject particle) || !(particle.get("textures") instanceof JsonArray textures))
+            return;
+
+        for (JsonElement texture : textures) {
+            this.fixed(EntryType.TEXTURES, string(texture), "particle/", TEXTURE_EXTENSION);
+        }
+    }
+
+    private void visitSounds(@NotNull JsonElement json) {
+        if (!(json instanceof JsonObject events))
+            return;
+
+        for (Map.Entry<String, JsonElement> event : events.entrySet()) {
+            if (!(event.getValue() instanceof JsonObject definition) || !(definition.get("sounds") instanceof JsonArray sounds))
+                continue;
+
+            for (JsonElement sound : sounds) {
+                if (sound instanceof JsonObject object) {
+                    // Event references point to other events, not sound files.
+                    if (!"event".equals(string(object.get("type"))))
+                        this.fixed(EntryType.SOUNDS, string(object.get("name")), "", SOUND_EXTENSION);
+                } else {
+                    this.fixed(EntryType.SOUNDS, string(sound), "", SOUND_EXTENSION);
+                }
+            }
+        }
+    }
+
+    // Unknown formats, any string looking like a resource location may reference a model, texture or sound.
+    private void visitUnknown(@NotNull JsonElement json) {
+        if (json instanceof JsonArray array) {
+            for (JsonElement element : array) {
+                this.visitUnknown(element);
+            }
+        } else if (json instanceof JsonObject object) {
+            for (JsonElement element : object.asMap().values()) {
+                this.visitUnknown(element);
+            }
+        } else if (json instanceof JsonPrimitive primitive && primitive.isString()) {
+            String value = primitive.getAsString();
+            if (!RESOURCE_LOCATION.matcher(value).matches())
+                return;
+
+            this.reference(EntryType.MODELS, value, "", JSON_EXTENSION, ResourceReference.Kind.GUESSED);
+            this.reference(EntryType.TEXTURES, value, "", value.endsWith(TEXTURE_EXTENSION) ? "" : TEXTURE_EXTENSION,
+                    ResourceReference.Kind.GUESSED);
+            this.reference(EntryType.SOUNDS, value, "", SOUND_EXTENSION, ResourceReference.Kind.GUESSED);
+        }
+    }
+
+    private void fixed(@NotNull EntryType type, @Nullable String location, @NotNull String prefix, @NotNull String extension) {
+        this.reference(type, location, prefix, extension, ResourceReference.Kind.FIXED);
+    }
+
+    private void rewritable(@NotNull JsonObject holder, @NotNull String key, @NotNull EntryType type, @NotNull String extension) {
+        ResourceReference replacement = this.reference(type, string(holder.get(key)), "", extension, ResourceReference.Kind.REWRITABLE);
+        if (replacement == null)
+            return;
+
+        if (replacement.type() != type || replacement.namespace() == null || !replacement.path().endsWith(extension))
+            throw new IllegalArgumentException("Replacement " + replacement + " does not match the type and extension of the reference!");
+
+        String path = replacement.path();
+        holder.addProperty(key, replacement.namespace() + ':' + path.substring(0, path.length() - extension.length()));
+        this.modified = true;
+    }
+
+    private @Nullable ResourceReference reference(@NotNull EntryType type, @Nullable String location, @NotNull String prefix,
+                                                  @NotNull String extension, @NotNull ResourceReference.Kind kind) {
+        if (location == null || location.isEmpty())
+            return null;
+
+        int separator = location.indexOf(':');
+        String namespace = separator < 0 ? VANILLA_NAMESPACE : location.substring(0, separator);
+        String path = location.substring(separator + 1);
+
+        return this.visitor.visit(new ResourceReference(type, namespace, prefix + path + extension, kind));
+    }
+
+    private static @Nullable String string(@Nullable JsonElement element) {
+        return element instanceof JsonPrimitive primitive && primitive.isString() ? primitive.getAsString() : null;
+    }
+
+    private static @Nullable String stripNamespace(@Nullable String location) {
+        return location == null ? null : location.substring(location.indexOf(':') + 1);
+    }
+}
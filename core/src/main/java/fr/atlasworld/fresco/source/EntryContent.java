@@ -0,0 +1,56 @@
+package fr.atlasworld.fresco.source;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads files into the read-only buffers returned by {@link SourceEntry#content()}.
+ * <p>
+ * Large files are memory-mapped, their content is never copied onto the heap and is paged in by the OS when accessed.
+ * Mapping has a fixed cost, so smaller files are read into a heap buffer of their exact size instead.
+ */
+public final class EntryContent {
+    /**
+     * Size from which files are memory-mapped rather than read.
+     */
+    public static final long MAP_THRESHOLD = 64 * 1024;
+
+    private EntryContent() {
+    }
+
+    /**
+     * Read the content of a file.
+     * <p>
+     * A mapped file stays mapped until the buffer is garbage collected,
+     * on some platforms the file can't be deleted or replaced in the meantime.
+     *
+     * @param file file to read.
+     *
+     * @return read-only buffer holding the whole content of the file, positioned at its start.
+     *
+     * @throws IOException if the file could not be read, or is larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    public static @NotNull ByteBuffer read(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File '" + file + "' is too large to be read at once");
+
+            if (size >= MAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    break; // Truncated while reading.
+            }
+
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package fr.atlasworld.fresco.source;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the content of the entries being processed between every processor reading them and the final copy.
+ * <p>
+ * The content of a {@link #share(SourceEntry) shared entry} is read from its source once, on first access, and its JSON
+ * is parsed once. Memory is bounded: entries larger than the entry limit, or read while the cache is full,
+ * are streamed from their source every time instead.
+ */
+public final class EntryContentCache {
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private final int maxEntrySize;
+    private final long maxSize;
+    private final AtomicLong size;
+
+    /**
+     * Create a new content cache.
+     *
+     * @param maxEntrySize maximum size of a single entry kept in memory, in bytes.
+     * @param maxSize maximum size of every entry kept in memory at once, in bytes.
+     *
+     * @throws IllegalArgumentException if one of the limits is negative.
+     */
+    public EntryContentCache(int maxEntrySize, long maxSize) {
+        if (maxEntrySize < 0 || maxSize < 0)
+            throw new IllegalArgumentException("Cache limits cannot be negative!");
+
+        this.maxEntrySize = maxEntrySize;
+        this.maxSize = maxSize;
+        this.size = new AtomicLong();
+    }
+
+    /**
+     * Wrap an entry so its content is shared between every reader.
+     * <p>
+     * The returned entry must be {@link SharedEntry#release() released} once it is not read anymore.
+     *
+     * @param entry entry to share.
+     *
+     * @return shared view of the entry.
+     */
+    public @NotNull SharedEntry share(@NotNull SourceEntry entry) {
+        Objects.requireNonNull(entry, "entry must not be null!");
+        return new SharedEntry(entry);
+    }
+
+    /**
+     * Amount of bytes currently kept in memory.
+     *
+     * @return size of the shared content.
+     */
+    public long size() {
+        return this.size.get();
+    }
+
+    // Reserve room for content that is already read, fails if the cache would grow past its limit.
+    private boolean reserve(long bytes) {
+        long current;
+        do {
+            current = this.size.get();
+            if (current + bytes > this.maxSize)
+                return false;
+        } while (!this.size.compareAndSet(current, current + bytes));
+
+        return true;
+    }
+
+    /**
+     * Entry whose content is read once and shared with every reader.
+     * <p>
+     * {@link #openAsJson()} returns a copy of the parsed content, so readers may modify it freely.
+     */
+    public final class SharedEntry implements SourceEntry {
+        private final SourceEntry source;
+
+        private byte[] content;
+        private JsonElement json;
+        private boolean streamed;
+        private boolean released;
+
+        private SharedEntry(@NotNull SourceEntry source) {
+            this.source = source;
+        }
+
+        /**
+         * Entry this entry shares the content of.
+         *
+         * @return source entry.
+         */
+        public @NotNull SourceEntry source() {
+            return this.source;
+        }
+
+        /**
+         * Give the memory of the shared content back to the cache, once every processor of the entry is done.
+         * <p>
+         * Content already read stays readable, so the archive writer may still copy the entry after it was committed,
+         * it is dropped along with the entry.
+         */
+        public synchronized void release() {
+            if (this.released)
+                return;
+
+            this.released = true;
+            if (this.content != null)
+                EntryContentCache.this.size.addAndGet(-this.content.length);
+
+            this.json = null;
+        }
+
+        @Override
+        public @NotNull String filename() {
+            return this.source.filename();
+        }
+
+        @Override
+        public @NotNull String key() {
+            return this.source.key();
+        }
+
+        @Override
+        public @NotNull String type() {
+            return this.source.type();
+        }
+
+        @Override
+        public @NotNull String namespace() {
+            return this.source.namespace();
+        }
+
+        @Override
+        public @NotNull String fullPath() {
+            return this.source.fullPath();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return this.source.isDirectory();
+        }
+
+        @Override
+        public boolean isInsideNamespace() {
+            return this.source.isInsideNamespace();
+        }
+
+        @Override
+        public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+            return this.source.entryType(definition);
+        }
+
+        @Override
+        public @Nullable Path file() {
+            return this.source.file();
+        }
+
+        @Override
+        public synchronized @NotNull InputStream openStream() throws IOException {
+            if (this.content != null)
+                return new ByteArrayInputStream(this.content);
+
+            if (this.streamed || this.released)
+                return this.source.openStream();
+
+            long allowance = Math.min(EntryContentCache.this.maxEntrySize,
+                    EntryContentCache.this.maxSize - EntryContentCache.this.size.get());
+
+            InputStream input = this.source.openStream();
+            byte[] head;
+            try {
+                head = input.readNBytes((int) Math.min(Math.max(0, allowance), Integer.MAX_VALUE - 1) + 1);
+            } catch (IOException ex) {
+                input.close();
+                throw ex;
+            }
+
+            // Too large to be kept, hand the part already read back to the reader and stream the rest.
+            if (head.length > allowance || !EntryContentCache.this.reserve(head.length)) {
+                this.streamed = true;
+                return new SequenceInputStream(new ByteArrayInputStream(head), input);
+            }
+
+            input.close();
+            this.content = head;
+            return new ByteArrayInputStream(head);
+        }
+
+        // Content which is not kept in memory is not worth reading into it, mapping the source avoids copying it.
+        @Override
+        public synchronized @NotNull ByteBuffer content() throws IOException {
+            if (this.content != null)
+                return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
+
+            return this.source.content();
+        }
+
+        @Override
+        public synchronized @NotNull JsonElement openAsJson() throws IOException, JsonParseException {
+            if (this.json == null) {
+                JsonElement json;
+                try (InputStream stream = this.openStream();
+                     Reader reader = new InputStreamReader(stream)) {
+                    json = JsonParser.parseReader(reader);
+                }
+
+                // Only keep the parsed content of entries kept in memory.
+                if (this.content == null || this.released)
+                    return json;
+
+                this.json = json;
+            }
+
+            return this.json.deepCopy();
+        }
+
+        @Override
+        public String toString() {
+            return this.source.toString();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package fr.atlasworld.fresco.source;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compact table of the files of a resource pack.
+ * <p>
+ * Every property of an entry is resolved once when it is added, namespaces, types and roots are stored once in a pool
+ * and entries only keep their index in it. The {@link SourceEntry entries} of the table are flyweight views over it.
+ */
+public final class EntryTable {
+    private static final EntryType[] ENTRY_TYPES = EntryType.values();
+
+    private final PackDefinition definition;
+    private final Path[] roots;
+    private final String[] segments;
+
+    private final String[] fullPaths;
+    private final String[] filenames;
+    private final String[] keys;
+    private final int[] entryRoots;
+    private final int[] namespaces;
+    private final int[] types;
+    private final byte[] entryTypes;
+    private final boolean[] insideNamespace;
+
+    private final List<SourceEntry> entries;
+
+    private EntryTable(@NotNull Builder builder) {
+        int size = builder.size;
+
+        this.definition = builder.definition;
+        this.roots = builder.roots.toArray(new Path[0]);
+        this.segments = builder.segments.toArray(new String[0]);
+
+        this.fullPaths = Arrays.copyOf(builder.fullPaths, size);
+        this.filenames = Arrays.copyOf(builder.filenames, size);
+        this.keys = Arrays.copyOf(builder.keys, size);
+        this.entryRoots = Arrays.copyOf(builder.entryRoots, size);
+        this.namespaces = Arrays.copyOf(builder.namespaces, size);
+        this.types = Arrays.copyOf(builder.types, size);
+        this.entryTypes = Arrays.copyOf(builder.entryTypes, size);
+        this.insideNamespace = Arrays.copyOf(builder.insideNamespace, size);
+
+        SourceEntry[] entries = new SourceEntry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(this, i);
+        }
+
+        this.entries = List.of(entries);
+    }
+
+    /**
+     * Amount of entries in the table.
+     *
+     * @return amount of entries.
+     */
+    public int size() {
+        return this.fullPaths.length;
+    }
+
+    /**
+     * Retrieve every entry of the table, in the order they were added.
+     * <p>
+     * The same view is always returned for an entry, so entries can be compared by identity.
+     *
+     * @return unmodifiable list of the entries.
+     */
+    public @NotNull List<SourceEntry> entries() {
+        return this.entries;
+    }
+
+    /**
+     * Retrieve a single entry of the table.
+     *
+     * @param index index of the entry.
+     *
+     * @return view of the entry.
+     *
+     * @throws IndexOutOfBoundsException if there is no entry at this index.
+     */
+    public @NotNull SourceEntry entry(int index) {
+        return this.entries.get(index);
+    }
+
+    /**
+     * Pack definition the types of the entries were resolved with.
+     *
+     * @return pack definition of the table.
+     */
+    public @NotNull PackDefinition definition() {
+        return this.definition;
+    }
+
+    /**
+     * Create a new {@link EntryTable.Builder}.
+     *
+     * @param definition pack definition used to resolve the type of the entries.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create(@NotNull PackDefinition definition) {
+        Objects.requireNonNull(definition, "definition must not be null!");
+        return new Builder(definition);
+    }
+
+    // Flyweight view of an entry, every property is read from the table.
+    private static final class Entry implements SourceEntry {
+        private final EntryTable table;
+        private final int index;
+
+        private Entry(@NotNull EntryTable table, int index) {
+            this.table = table;
+            this.index = index;
+        }
+
+        @Override
+        public @NotNull String filename() {
+            return this.table.filenames[this.index];
+        }
+
+        @Override
+        public @NotNull String key() {
+            return this.table.keys[this.index];
+        }
+
+        @Override
+        public @NotNull String type() {
+            return this.table.segments[this.table.types[this.index]];
+        }
+
+        @Override
+        public @NotNull String namespace() {
+            return this.table.segments[this.table.namespaces[this.index]];
+        }
+
+        @Override
+        public @NotNull String fullPath() {
+            return this.table.fullPaths[this.index];
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false; // Only files are added to the table.
+        }
+
+        @Override
+        public boolean isInsideNamespace() {
+            return this.table.insideNamespace[this.index];
+        }
+
+        @Override
+        public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+            if (definition == this.table.definition)
+                return ENTRY_TYPES[this.table.entryTypes[this.index]];
+
+            return SourceEntry.super.entryType(definition);
+        }
+
+        @Override
+        public @NotNull Path file() {
+            return this.table.roots[this.table.entryRoots[this.index]].resolve(this.fullPath());
+        }
+
+        @Override
+        public @NotNull InputStream openStream() throws IOException {
+            return Files.newInputStream(this.file());
+        }
+
+        @Override
+        public @NotNull ByteBuffer content() throws IOException {
+            return EntryContent.read(this.file());
+        }
+
+        @Override
+        public String toString() {
+            return this.fullPath();
+        }
+    }
+
+    /**
+     * {@link EntryTable} builder.
+     */
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final PackDefinition definition;
+        private final List<Path> roots;
+        private final Map<Path, Integer> rootIds;
+        private final List<String> segments;
+        private final Map<String, Integer> segmentIds;
+
+        private int size;
+        private String[] fullPaths;
+        private String[] filenames;
+        private String[] keys;
+        private int[] entryRoots;
+        private int[] namespaces;
+        private int[] types;
+        private byte[] entryTypes;
+        private boolean[] insideNamespace;
+
+        @ApiStatus.Internal
+        private Builder(@NotNull PackDefinition definition) {
+            this.definition = definition;
+            this.roots = new ArrayList<>();
+            this.rootIds = new HashMap<>();
+            this.segments = new ArrayList<>();
+            this.segmentIds = new HashMap<>();
+
+            this.fullPaths = new String[INITIAL_CAPACITY];
+            this.filenames = new String[INITIAL_CAPACITY];
+            this.keys = new String[INITIAL_CAPACITY];
+            this.entryRoots = new int[INITIAL_CAPACITY];
+            this.namespaces = new int[INITIAL_CAPACITY];
+            this.types = new int[INITIAL_CAPACITY];
+            this.entryTypes = new byte[INITIAL_CAPACITY];
+            this.insideNamespace = new boolean[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Add a file to the table.
+         *
+         * @param root root directory of the resource pack the file is in.
+         * @param relativePath path of the file relative to the root, ex: {@code assets/example/models/item/foo.json}.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if the path is not a valid resource pack entry.
+         */
+        public Builder add(@NotNull Path root, @NotNull String relativePath) {
+            Objects.requireNonNull(root, "root must not be null!");
+            Objects.requireNonNull(relativePath, "relative path must not be null!");
+
+            String path = File.separatorChar == '/' ? relativePath : relativePath.replace(File.separatorChar, '/');
+
+            // assets/<namespace>/<type>/<key>
+            int namespaceStart = path.indexOf('/') + 1;
+            int namespaceEnd = namespaceStart == 0 ? -1 : path.indexOf('/', namespaceStart);
+            if (namespaceEnd < 0 || namespaceEnd == path.length() - 1)
+                throw new IllegalArgumentException("Source file '" + root.resolve(relativePath) + "' is not a valid resource pack entry!");
+
+            int typeEnd = path.indexOf('/', namespaceEnd + 1);
+            int filenameStart = path.lastIndexOf('/') + 1;
+            boolean inside = typeEnd < 0;
+
+            String filename = path.substring(filenameStart);
+            int type = this.segment(path.substring(namespaceEnd + 1, inside ? path.length() : typeEnd));
+
+            // Keys may be nested, ex: assets/example/models/item/foo.json is item/foo
+            String key = inside ? filename : path.substring(typeEnd + 1);
+            int extension = key.lastIndexOf('.');
+            if (extension > key.lastIndexOf('/'))
+                key = key.substring(0, extension);
+
+            this.ensureCapacity();
+            int index = this.size++;
+
+            this.fullPaths[index] = path;
+            this.filenames[index] = filename;
+            this.keys[index] = key;
+            this.entryRoots[index] = this.rootIds.computeIfAbsent(root, r -> {
+                this.roots.add(r);
+                return this.roots.size() - 1;
+            });
+            this.namespaces[index] = this.segment(path.substring(namespaceStart, namespaceEnd));
+            this.types[index] = type;
+            this.entryTypes[index] = (byte) (inside ? EntryType.CUSTOM : this.definition.determineType(this.segments.get(type))).ordinal();
+            this.insideNamespace[index] = inside;
+
+            return this;
+        }
+
+        /**
+         * Create the table containing every added file.
+         *
+         * @return newly created {@link EntryTable}.
+         */
+        public @NotNull EntryTable build() {
+            return new EntryTable(this);
+        }
+
+        private int segment(@NotNull String segment) {
+            Integer id = this.segmentIds.get(segment);
+            if (id != null)
+                return id;
+
+            this.segments.add(segment);
+            this.segmentIds.put(segment, this.segments.size() - 1);
+            return this.segments.size() - 1;
+        }
+
+        private void ensureCapacity() {
+            if (this.size < this.fullPaths.length)
+                return;
+
+            int capacity = this.fullPaths.length * 2;
+            this.fullPaths = Arrays.copyOf(this.fullPaths, capacity);
+            this.filenames = Arrays.copyOf(this.filenames, capacity);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.entryRoots = Arrays.copyOf(this.entryRoots, capacity);
+            this.namespaces = Arrays.copyOf(this.namespaces, capacity);
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.entryTypes = Arrays.copyOf(this.entryTypes, capacity);
+            this.insideNamespace = Arrays.copyOf(this.insideNamespace, capacity);
+        }
+    }
+}
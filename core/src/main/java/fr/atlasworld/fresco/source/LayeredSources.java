@@ -0,0 +1,210 @@
+package fr.atlasworld.fresco.source;
+
+import fr.atlasworld.fresco.pack.PackDefinition;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Resource pack roots layered on top of each other, ex: a base pack, a seasonal pack and per-server overrides.
+ * <p>
+ * A root is either a directory or a zip or jar {@link SourceArchive archive}, archives are read without being extracted.
+ * The roots are indexed by path before anything is read. When several layers contain the same path,
+ * the {@link MergeStrategy} of the entry decides how they are combined, only the entry of the highest layer
+ * is kept for {@link MergeStrategy#REPLACE replaced} entries, the lower layers are never read.
+ * Only JSON entries can be merged, every other entry is replaced.
+ * <p>
+ * By default, language files and {@code sounds.json} are {@link MergeStrategy#DEEP_MERGE deep merged},
+ * atlases have their {@link MergeStrategy#APPEND_LISTS lists appended} and every other entry is replaced.
+ */
+public final class LayeredSources {
+    private static final String JSON_EXTENSION = ".json";
+
+    private final PackDefinition definition;
+    private final List<Path> layers;
+    private final SourceScanner scanner;
+    private final Map<EntryType, MergeStrategy> typeStrategies;
+    private final Map<String, MergeStrategy> fileStrategies;
+
+    private LayeredSources(@NotNull PackDefinition definition, @NotNull List<Path> layers, @NotNull SourceScanner scanner,
+                           @NotNull Map<EntryType, MergeStrategy> typeStrategies, @NotNull Map<String, MergeStrategy> fileStrategies) {
+        this.definition = definition;
+        this.layers = layers;
+        this.scanner = scanner;
+        this.typeStrategies = typeStrategies;
+        this.fileStrategies = fileStrategies;
+    }
+
+    /**
+     * Scan every layer and resolve the entries of the resource pack.
+     *
+     * @return one entry per path, sorted by full path.
+     *
+     * @throws IOException if one of the layers could not be scanned, or one of the archives could not be read.
+     */
+    public @NotNull List<SourceEntry> resolve() throws IOException {
+        Map<String, List<SourceEntry>> index = new HashMap<>();
+        for (Path layer : this.layers) {
+            for (SourceEntry entry : this.entriesOf(layer)) {
+                index.computeIfAbsent(entry.fullPath(), path -> new ArrayList<>(1)).add(entry);
+            }
+        }
+
+        List<SourceEntry> entries = new ArrayList<>(index.size());
+        for (List<SourceEntry> layers : index.values()) {
+            SourceEntry top = layers.get(layers.size() - 1);
+            if (layers.size() == 1) {
+                entries.add(top);
+                continue;
+            }
+
+            MergeStrategy strategy = this.strategyOf(top);
+            entries.add(strategy == MergeStrategy.REPLACE ? top : new MergedSourceEntry(layers, strategy));
+        }
+
+        entries.sort(Comparator.comparing(SourceEntry::fullPath));
+        return entries;
+    }
+
+    private @NotNull List<SourceEntry> entriesOf(@NotNull Path layer) throws IOException {
+        if (Files.isRegularFile(layer))
+            return SourceArchive.open(layer, this.definition, this.scanner).entries();
+
+        EntryTable.Builder table = EntryTable.create(this.definition);
+        this.scanner.scan(layer, table);
+        return table.build().entries();
+    }
+
+    /**
+     * Resolve the strategy merging the layers of an entry.
+     *
+     * @param entry entry to resolve the strategy of.
+     *
+     * @return merge strategy of the entry, always {@link MergeStrategy#REPLACE} for entries which are not JSON.
+     */
+    public @NotNull MergeStrategy strategyOf(@NotNull SourceEntry entry) {
+        Objects.requireNonNull(entry, "entry must not be null!");
+
+        if (!entry.filename().endsWith(JSON_EXTENSION))
+            return MergeStrategy.REPLACE;
+
+        if (entry.isInsideNamespace())
+            return this.fileStrategies.getOrDefault(entry.filename(), MergeStrategy.REPLACE);
+
+        return this.typeStrategies.getOrDefault(entry.entryType(this.definition), MergeStrategy.REPLACE);
+    }
+
+    /**
+     * Create a new {@link LayeredSources.Builder}.
+     *
+     * @param definition pack definition used to resolve the type of the entries.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create(@NotNull PackDefinition definition) {
+        Objects.requireNonNull(definition, "definition must not be null!");
+        return new Builder(definition);
+    }
+
+    /**
+     * {@link LayeredSources} builder.
+     */
+    public static final class Builder {
+        private final PackDefinition definition;
+        private final List<Path> layers;
+        private final Map<EntryType, MergeStrategy> typeStrategies;
+        private final Map<String, MergeStrategy> fileStrategies;
+
+        private SourceScanner scanner;
+
+        @ApiStatus.Internal
+        private Builder(@NotNull PackDefinition definition) {
+            this.definition = definition;
+            this.layers = new ArrayList<>();
+            this.typeStrategies = new EnumMap<>(EntryType.class);
+            this.fileStrategies = new HashMap<>();
+
+            this.typeStrategies.put(EntryType.LANGUAGES, MergeStrategy.DEEP_MERGE);
+            this.typeStrategies.put(EntryType.ATLASES, MergeStrategy.APPEND_LISTS);
+            this.fileStrategies.put("sounds.json", MergeStrategy.DEEP_MERGE);
+        }
+
+        /**
+         * Add a layer on top of the layers already added.
+         *
+         * @param root root directory of the layer, or a zip or jar archive holding it.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder layer(@NotNull Path root) {
+            Objects.requireNonNull(root, "root must not be null!");
+
+            this.layers.add(root);
+            return this;
+        }
+
+        /**
+         * Set the scanner listing the files of every layer.
+         *
+         * @param scanner source scanner, defaults to a scanner keeping every file of the {@code assets} directories.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder scanner(@NotNull SourceScanner scanner) {
+            Objects.requireNonNull(scanner, "scanner must not be null!");
+
+            this.scanner = scanner;
+            return this;
+        }
+
+        /**
+         * Set the merge strategy of the entries of a type.
+         *
+         * @param type type of the entries.
+         * @param strategy merge strategy.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder strategy(@NotNull EntryType type, @NotNull MergeStrategy strategy) {
+            Objects.requireNonNull(type, "type must not be null!");
+            Objects.requireNonNull(strategy, "strategy must not be null!");
+
+            if (type == EntryType.ALL || type == EntryType.CUSTOM)
+                throw new IllegalArgumentException("Entries of type " + type + " must be matched by their file name!");
+
+            this.typeStrategies.put(type, strategy);
+            return this;
+        }
+
+        /**
+         * Set the merge strategy of the entries at the root of the namespaces with a file name, ex: {@code sounds.json}.
+         *
+         * @param filename file name of the entries.
+         * @param strategy merge strategy.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder strategy(@NotNull String filename, @NotNull MergeStrategy strategy) {
+            Objects.requireNonNull(filename, "filename must not be null!");
+            Objects.requireNonNull(strategy, "strategy must not be null!");
+
+            this.fileStrategies.put(filename, strategy);
+            return this;
+        }
+
+        /**
+         * Create the layered sources with the provided settings.
+         *
+         * @return newly created {@link LayeredSources}.
+         */
+        public @NotNull LayeredSources build() {
+            return new LayeredSources(this.definition, List.copyOf(this.layers),
+                    this.scanner != null ? this.scanner : SourceScanner.create().build(),
+                    new EnumMap<>(this.typeStrategies), Map.copyOf(this.fileStrategies));
+        }
+    }
+}
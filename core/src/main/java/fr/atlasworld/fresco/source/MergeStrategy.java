@@ -0,0 +1,70 @@
+package fr.atlasworld.fresco.source;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * How the entries sharing the same path in several {@link LayeredSources layers} are combined.
+ */
+public enum MergeStrategy {
+    /**
+     * The entry of the highest layer replaces the others, which are never read.
+     */
+    REPLACE,
+
+    /**
+     * JSON objects are merged recursively, the highest layer wins when both layers have the same key with non-object values.
+     * <p>
+     * Ex: language files, {@code sounds.json}.
+     */
+    DEEP_MERGE,
+
+    /**
+     * Same as {@link #DEEP_MERGE}, except arrays are concatenated, the elements of the lower layer first.
+     * <p>
+     * Ex: the {@code sources} of atlases.
+     */
+    APPEND_LISTS;
+
+    /**
+     * Merge the content of two layers.
+     * <p>
+     * Neither element is modified, the result may share elements with them.
+     *
+     * @param lower content of the lower layer.
+     * @param upper content of the upper layer.
+     *
+     * @return merged content.
+     */
+    public @NotNull JsonElement merge(@NotNull JsonElement lower, @NotNull JsonElement upper) {
+        if (this == REPLACE)
+            return upper;
+
+        if (lower.isJsonObject() && upper.isJsonObject()) {
+            JsonObject merged = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : lower.getAsJsonObject().entrySet()) {
+                merged.add(entry.getKey(), entry.getValue());
+            }
+
+            for (Map.Entry<String, JsonElement> entry : upper.getAsJsonObject().entrySet()) {
+                JsonElement previous = merged.get(entry.getKey());
+                merged.add(entry.getKey(), previous != null ? this.merge(previous, entry.getValue()) : entry.getValue());
+            }
+
+            return merged;
+        }
+
+        if (this == APPEND_LISTS && lower.isJsonArray() && upper.isJsonArray()) {
+            JsonArray merged = new JsonArray(lower.getAsJsonArray().size() + upper.getAsJsonArray().size());
+            merged.addAll(lower.getAsJsonArray());
+            merged.addAll(upper.getAsJsonArray());
+            return merged;
+        }
+
+        return upper;
+    }
+}
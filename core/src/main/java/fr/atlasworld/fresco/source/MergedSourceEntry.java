@@ -0,0 +1,116 @@
+package fr.atlasworld.fresco.source;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import fr.atlasworld.fresco.processor.ProcessorOutput;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Entry present in several layers, its content is the content of every layer merged together.
+ * <p>
+ * Every property except its content comes from the entry of the highest layer. The layers are only read
+ * once the content is first needed, it is then kept for the lifetime of the entry.
+ */
+final class MergedSourceEntry implements SourceEntry {
+    private final List<SourceEntry> layers;
+    private final SourceEntry top;
+    private final MergeStrategy strategy;
+
+    private byte[] content;
+
+    /**
+     * Create a new merged entry.
+     *
+     * @param layers entries sharing the same path, lowest layer first.
+     * @param strategy strategy merging the layers.
+     */
+    MergedSourceEntry(@NotNull List<SourceEntry> layers, @NotNull MergeStrategy strategy) {
+        this.layers = List.copyOf(layers);
+        this.top = this.layers.get(this.layers.size() - 1);
+        this.strategy = strategy;
+    }
+
+    @Override
+    public @NotNull String filename() {
+        return this.top.filename();
+    }
+
+    @Override
+    public @NotNull String key() {
+        return this.top.key();
+    }
+
+    @Override
+    public @NotNull String type() {
+        return this.top.type();
+    }
+
+    @Override
+    public @NotNull String namespace() {
+        return this.top.namespace();
+    }
+
+    @Override
+    public @NotNull String fullPath() {
+        return this.top.fullPath();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public boolean isInsideNamespace() {
+        return this.top.isInsideNamespace();
+    }
+
+    @Override
+    public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+        return this.top.entryType(definition);
+    }
+
+    @Override
+    public @NotNull InputStream openStream() throws IOException {
+        return new ByteArrayInputStream(this.merge());
+    }
+
+    @Override
+    public @NotNull ByteBuffer content() throws IOException {
+        return ByteBuffer.wrap(this.merge()).asReadOnlyBuffer();
+    }
+
+    private synchronized byte @NotNull [] merge() throws IOException {
+        if (this.content != null)
+            return this.content;
+
+        JsonElement merged = null;
+        for (SourceEntry layer : this.layers) {
+            JsonElement json;
+            try {
+                json = layer.openAsJson();
+            } catch (JsonParseException ex) {
+                Object origin = layer instanceof SourceArchive.Entry archived ? archived.archive().file() : layer.file();
+                throw new IOException("Could not merge entry '" + this.fullPath() + "', '" + origin + "' is not valid JSON", ex);
+            }
+
+            merged = merged == null ? json : this.strategy.merge(merged, json);
+        }
+
+        this.content = ProcessorOutput.GSON.toJson(merged).getBytes(StandardCharsets.UTF_8);
+        return this.content;
+    }
+
+    @Override
+    public String toString() {
+        return this.top.toString();
+    }
+}
@@ -0,0 +1,355 @@
+package fr.atlasworld.fresco.source;
+
+import fr.atlasworld.fresco.FrescoProcessor;
+import fr.atlasworld.fresco.pack.PackDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Resource pack packaged in a zip or jar archive, used as a source root without being extracted.
+ * <p>
+ * Only the central directory is read when the archive is opened. The content of the entries is inflated when read,
+ * while their {@link Entry#openRaw() compressed data} can be read as-is, so outputs can copy untouched entries
+ * without inflating and compressing them again. No file handle is held between reads.
+ * <p>
+ * Only stored and deflated entries are supported, files directly inside the {@value FrescoProcessor#ASSETS_DIR}
+ * directory (ex: {@code .mcassetsroot}) are not part of any namespace and are left out.
+ */
+public final class SourceArchive {
+    private static final int FLAG_ENCRYPTED = 1;
+
+    private final Path file;
+    private final List<SourceEntry> entries;
+
+    private SourceArchive(@NotNull Path file, @NotNull EntryTable table, @NotNull List<ZipCentralDirectory.Header> headers) {
+        this.file = file;
+
+        SourceEntry[] entries = new SourceEntry[headers.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry(this, table.entry(i), headers.get(i));
+        }
+
+        this.entries = List.of(entries);
+    }
+
+    /**
+     * Archive file of this source.
+     *
+     * @return path of the archive.
+     */
+    public @NotNull Path file() {
+        return this.file;
+    }
+
+    /**
+     * Retrieve every entry of the archive kept by the scanner, in the order of its central directory.
+     *
+     * @return unmodifiable list of {@link Entry entries}.
+     */
+    public @NotNull List<SourceEntry> entries() {
+        return this.entries;
+    }
+
+    /**
+     * Open an archive and read its central directory.
+     *
+     * @param file archive to open, ex: a zip or jar file.
+     * @param definition pack definition used to resolve the type of the entries.
+     * @param scanner scanner whose include and exclude patterns select the entries.
+     *
+     * @return opened archive.
+     *
+     * @throws IOException if the archive could not be read, or contains encrypted or unsupported entries.
+     */
+    public static @NotNull SourceArchive open(@NotNull Path file, @NotNull PackDefinition definition, @NotNull SourceScanner scanner) throws IOException {
+        Objects.requireNonNull(file, "file must not be null!");
+        Objects.requireNonNull(definition, "definition must not be null!");
+        Objects.requireNonNull(scanner, "scanner must not be null!");
+
+        List<ZipCentralDirectory.Header> headers = new ArrayList<>();
+        EntryTable.Builder table = EntryTable.create(definition);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (ZipCentralDirectory.Header header : ZipCentralDirectory.read(channel).headers()) {
+                String name = header.name();
+                if (name.endsWith("/") || !scanner.accepts(name) || name.indexOf('/', FrescoProcessor.ASSETS_DIR.length() + 1) < 0)
+                    continue;
+
+                if (name.equals("..") || name.contains("/../") || name.endsWith("/.."))
+                    throw new ZipException("Entry '" + name + "' of '" + file + "' points outside of the archive");
+
+                if ((header.flags() & FLAG_ENCRYPTED) != 0)
+                    throw new ZipException("Entry '" + name + "' of '" + file + "' is encrypted");
+
+                if (header.method() != ZipEntry.STORED && header.method() != ZipEntry.DEFLATED)
+                    throw new ZipException("Entry '" + name + "' of '" + file + "' uses unsupported compression method " + header.method());
+
+                table.add(file, name);
+                headers.add(header);
+            }
+        }
+
+        return new SourceArchive(file, table.build(), headers);
+    }
+
+    /**
+     * Entry of a {@link SourceArchive}, exposing its compressed data along with its content.
+     * <p>
+     * The checksum and sizes are the ones of the central directory, the entry has no backing {@link #file() file}.
+     */
+    public static final class Entry implements SourceEntry {
+        private final SourceArchive archive;
+        private final SourceEntry path;
+        private final ZipCentralDirectory.Header header;
+
+        private Entry(@NotNull SourceArchive archive, @NotNull SourceEntry path, @NotNull ZipCentralDirectory.Header header) {
+            this.archive = archive;
+            this.path = path;
+            this.header = header;
+        }
+
+        /**
+         * Archive this entry is stored in.
+         *
+         * @return archive of the entry.
+         */
+        public @NotNull SourceArchive archive() {
+            return this.archive;
+        }
+
+        /**
+         * Compression method of the entry.
+         *
+         * @return {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+         */
+        public int method() {
+            return this.header.method();
+        }
+
+        /**
+         * CRC-32 of the uncompressed content.
+         *
+         * @return checksum of the content.
+         */
+        public long crc() {
+            return this.header.crc();
+        }
+
+        /**
+         * Size of the compressed data.
+         *
+         * @return size of the data stored in the archive, in bytes.
+         */
+        public long compressedSize() {
+            return this.header.compressedSize();
+        }
+
+        /**
+         * Size of the uncompressed content.
+         *
+         * @return size of the content, in bytes.
+         */
+        public long size() {
+            return this.header.size();
+        }
+
+        /**
+         * Open the data of the entry exactly as stored in the archive, compressed with its {@link #method() method}.
+         *
+         * @return input stream of the {@link #compressedSize() compressed data}.
+         *
+         * @throws IOException if the archive could not be read.
+         */
+        public @NotNull InputStream openRaw() throws IOException {
+            FileChannel channel = FileChannel.open(this.archive.file, StandardOpenOption.READ);
+            try {
+                return new RawInputStream(channel, this.dataOffset(channel), this.header.compressedSize());
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public @NotNull String filename() {
+            return this.path.filename();
+        }
+
+        @Override
+        public @NotNull String key() {
+            return this.path.key();
+        }
+
+        @Override
+        public @NotNull String type() {
+            return this.path.type();
+        }
+
+        @Override
+        public @NotNull String namespace() {
+            return this.path.namespace();
+        }
+
+        @Override
+        public @NotNull String fullPath() {
+            return this.path.fullPath();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false; // Directories are left out when the archive is opened.
+        }
+
+        @Override
+        public boolean isInsideNamespace() {
+            return this.path.isInsideNamespace();
+        }
+
+        @Override
+        public @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+            return this.path.entryType(definition);
+        }
+
+        @Override
+        public @NotNull InputStream openStream() throws IOException {
+            InputStream raw = this.openRaw();
+            if (this.header.method() == ZipEntry.STORED)
+                return raw;
+
+            // Raw inflaters may need an extra byte past the end of the data, same as ZipFile.
+            Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1])), inflater) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (this.closed)
+                        return;
+
+                    this.closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        // Stored entries are read or mapped like files, deflated entries are inflated into a buffer of their exact size.
+        @Override
+        public @NotNull ByteBuffer content() throws IOException {
+            if (this.header.size() > Integer.MAX_VALUE || this.header.compressedSize() >= Integer.MAX_VALUE)
+                throw new IOException("Entry '" + this.fullPath() + "' of '" + this.archive.file + "' is too large to be read at once");
+
+            try (FileChannel channel = FileChannel.open(this.archive.file, StandardOpenOption.READ)) {
+                long offset = this.dataOffset(channel);
+
+                if (this.header.method() == ZipEntry.STORED) {
+                    if (this.header.size() >= EntryContent.MAP_THRESHOLD)
+                        return channel.map(FileChannel.MapMode.READ_ONLY, offset, this.header.size());
+
+                    return ZipCentralDirectory.read(channel, offset, (int) this.header.size()).asReadOnlyBuffer();
+                }
+
+                // Raw inflaters may need an extra byte past the end of the data.
+                ByteBuffer data = ByteBuffer.allocate((int) this.header.compressedSize() + 1);
+                ZipCentralDirectory.readFully(channel, data.limit((int) this.header.compressedSize()), offset);
+
+                byte[] content = new byte[(int) this.header.size()];
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data.array());
+
+                    int inflated = 0;
+                    while (inflated < content.length && !inflater.finished()) {
+                        int read = inflater.inflate(content, inflated, content.length - inflated);
+                        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                            break;
+
+                        inflated += read;
+                    }
+
+                    if (inflated != content.length)
+                        throw new ZipException("Invalid size for entry '" + this.fullPath() + "': expected " + content.length + " but got " + inflated);
+                } catch (DataFormatException ex) {
+                    throw new ZipException("Invalid compressed data for entry '" + this.fullPath() + "': " + ex.getMessage());
+                } finally {
+                    inflater.end();
+                }
+
+                return ByteBuffer.wrap(content).asReadOnlyBuffer();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.fullPath();
+        }
+
+        private long dataOffset(@NotNull FileChannel channel) throws IOException {
+            long offset = ZipCentralDirectory.dataOffset(channel, this.header);
+            if (offset + this.header.compressedSize() > channel.size())
+                throw new ZipException("Invalid local record for entry '" + this.fullPath() + "' of '" + this.archive.file + "'");
+
+            return offset;
+        }
+    }
+
+    // Positional reads of the data of an entry, the channel is closed with the stream.
+    private static final class RawInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private RawInputStream(@NotNull FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (this.position >= this.end)
+                return -1;
+
+            if (len == 0)
+                return 0;
+
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, this.end - this.position));
+            int read = this.channel.read(buffer, this.position);
+            if (read == -1)
+                throw new ZipException("Unexpected end of archive");
+
+            this.position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+}
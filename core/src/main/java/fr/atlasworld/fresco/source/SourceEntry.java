@@ -3,11 +3,15 @@ package fr.atlasworld.fresco.source;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import fr.atlasworld.fresco.pack.PackDefinition;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 /**
  * Represents a source entry that holds all meta-data and file inside it.
@@ -68,6 +72,20 @@ public interface SourceEntry {
      */
     boolean isInsideNamespace();
 
+    /**
+     * Resolve the type of the entry, entries inside the namespace root are {@link EntryType#CUSTOM}.
+     *
+     * @param definition pack definition linking the type directories to their type.
+     *
+     * @return type of the entry.
+     */
+    default @NotNull EntryType entryType(@NotNull PackDefinition definition) {
+        if (this.isInsideNamespace())
+            return EntryType.CUSTOM;
+
+        return definition.determineType(this.type());
+    }
+
     /**
      * Checks whether the entry is a meta file.
      * <br>
@@ -88,6 +106,33 @@ public interface SourceEntry {
      */
     @NotNull InputStream openStream() throws IOException;
 
+    /**
+     * Retrieve the whole content of the entry as a read-only buffer, for processors needing random access to it.
+     * <p>
+     * Entries backed by a {@link #file() file} map it into memory when it is large, see {@link EntryContent}.
+     * Every call returns a new buffer positioned at the start of the content, callers may move it freely.
+     *
+     * @return read-only buffer holding the content of the entry.
+     *
+     * @throws IOException if the content could not be read.
+     */
+    default @NotNull ByteBuffer content() throws IOException {
+        try (InputStream stream = this.openStream()) {
+            return ByteBuffer.wrap(stream.readAllBytes()).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Retrieve the file holding the content of the entry, when the content of the entry is exactly the content of the file.
+     * <p>
+     * Allows outputs to link or copy the file instead of reading it, entries whose content is generated or modified return {@code null}.
+     *
+     * @return the file backing this entry, or {@code null} if there is none.
+     */
+    default @Nullable Path file() {
+        return null;
+    }
+
     /**
      * Helper method to open the entry as JSON.
      *
@@ -0,0 +1,320 @@
+package fr.atlasworld.fresco.source;
+
+import fr.atlasworld.fresco.FrescoProcessor;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans the files of a resource pack root into an {@link EntryTable}.
+ * <p>
+ * Only the {@value FrescoProcessor#ASSETS_DIR} directory of the root is walked, anything next to it is never listed.
+ * Include and exclude glob patterns are matched against the path of the files relative to the root while walking,
+ * directories matched by an exclude pattern are skipped entirely, ex: {@code assets/*}{@code /textures/src/**}.
+ * <p>
+ * Directories can be listed concurrently, symbolic links are followed.
+ */
+public final class SourceScanner {
+    private static final String ANY_SUFFIX = "/**";
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final List<PathMatcher> excludedDirectories;
+    private final int parallelism;
+
+    private SourceScanner(@NotNull List<PathMatcher> includes, @NotNull List<PathMatcher> excludes,
+                          @NotNull List<PathMatcher> excludedDirectories, int parallelism) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.excludedDirectories = excludedDirectories;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scan a resource pack root, adding every matching file to the table.
+     *
+     * @param root root directory of the resource pack.
+     * @param table table receiving the files.
+     *
+     * @return amount of files added to the table.
+     *
+     * @throws IOException if one of the directories could not be listed.
+     */
+    public int scan(@NotNull Path root, @NotNull EntryTable.Builder table) throws IOException {
+        Objects.requireNonNull(root, "root must not be null!");
+        Objects.requireNonNull(table, "table must not be null!");
+
+        Path assets = root.resolve(FrescoProcessor.ASSETS_DIR);
+        if (!Files.isDirectory(assets))
+            return 0;
+
+        Object assetsKey = Files.readAttributes(assets, BasicFileAttributes.class).fileKey();
+
+        Walk walk = new Walk(root, table);
+        DirectoryTask task = new DirectoryTask(walk, assets, FrescoProcessor.ASSETS_DIR,
+                assetsKey != null ? List.of(assetsKey) : List.of());
+
+        try {
+            if (this.parallelism > 1) {
+                ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+                try {
+                    pool.invoke(task);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                task.walk(false);
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        return walk.count;
+    }
+
+    /**
+     * Check whether a file would be kept by this scanner.
+     *
+     * @param relativePath path of the file relative to its root, ex: {@code assets/example/models/item/foo.json}.
+     *
+     * @return true if the file matches the include and exclude patterns.
+     */
+    public boolean accepts(@NotNull String relativePath) {
+        Objects.requireNonNull(relativePath, "relative path must not be null!");
+        return relativePath.startsWith(FrescoProcessor.ASSETS_DIR + '/') && this.isIncluded(relativePath);
+    }
+
+    /**
+     * Create a new {@link SourceScanner.Builder}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create() {
+        return new Builder();
+    }
+
+    // State of a single scan, shared by every directory task.
+    private static final class Walk {
+        private final Path root;
+        private final EntryTable.Builder table;
+        private int count;
+
+        private Walk(@NotNull Path root, @NotNull EntryTable.Builder table) {
+            this.root = root;
+            this.table = table;
+        }
+
+        private synchronized void add(@NotNull String relativePath) {
+            this.table.add(this.root, relativePath);
+            this.count++;
+        }
+    }
+
+    @SuppressWarnings("serial") // Never serialized, fork/join tasks are only Serializable by inheritance.
+    private final class DirectoryTask extends RecursiveAction {
+        private final Walk walk;
+        private final Path directory;
+        private final String relativePath;
+        private final List<Object> ancestors;
+
+        private DirectoryTask(@NotNull Walk walk, @NotNull Path directory, @NotNull String relativePath, @NotNull List<Object> ancestors) {
+            this.walk = walk;
+            this.directory = directory;
+            this.relativePath = relativePath;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            this.walk(true);
+        }
+
+        private void walk(boolean fork) {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path path : stream) {
+                    String relativePath = this.relativePath + '/' + path.getFileName();
+
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch (NoSuchFileException ex) {
+                        continue; // Deleted while walking, or a broken link.
+                    }
+
+                    if (attributes.isDirectory()) {
+                        if (SourceScanner.this.isExcludedDirectory(relativePath) || this.isLoop(attributes))
+                            continue;
+
+                        subtasks.add(new DirectoryTask(this.walk, path, relativePath, this.childAncestors(attributes)));
+                    } else if (attributes.isRegularFile() && SourceScanner.this.isIncluded(relativePath)) {
+                        this.walk.add(relativePath);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            if (fork) {
+                invokeAll(subtasks);
+                return;
+            }
+
+            for (DirectoryTask subtask : subtasks) {
+                subtask.walk(false);
+            }
+        }
+
+        // Guards against symbolic links to a parent directory, on file systems identifying their files.
+        private boolean isLoop(@NotNull BasicFileAttributes attributes) {
+            Object key = attributes.fileKey();
+            return key != null && this.ancestors.contains(key);
+        }
+
+        private @NotNull List<Object> childAncestors(@NotNull BasicFileAttributes attributes) {
+            if (attributes.fileKey() == null)
+                return this.ancestors;
+
+            List<Object> ancestors = new ArrayList<>(this.ancestors.size() + 1);
+            ancestors.addAll(this.ancestors);
+            ancestors.add(attributes.fileKey());
+            return ancestors;
+        }
+    }
+
+    private boolean isExcludedDirectory(@NotNull String relativePath) {
+        if (this.excludedDirectories.isEmpty())
+            return false;
+
+        Path path = Path.of(relativePath);
+        for (PathMatcher matcher : this.excludedDirectories) {
+            if (matcher.matches(path))
+                return true;
+        }
+
+        return false;
+    }
+
+    private boolean isIncluded(@NotNull String relativePath) {
+        if (this.includes.isEmpty() && this.excludes.isEmpty())
+            return true;
+
+        Path path = Path.of(relativePath);
+        for (PathMatcher matcher : this.excludes) {
+            if (matcher.matches(path))
+                return false;
+        }
+
+        if (this.includes.isEmpty())
+            return true;
+
+        for (PathMatcher matcher : this.includes) {
+            if (matcher.matches(path))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@link SourceScanner} builder.
+     */
+    public static final class Builder {
+        private final List<PathMatcher> includes;
+        private final List<PathMatcher> excludes;
+        private final List<PathMatcher> excludedDirectories;
+        private int parallelism;
+
+        @ApiStatus.Internal
+        private Builder() {
+            this.includes = new ArrayList<>();
+            this.excludes = new ArrayList<>();
+            this.excludedDirectories = new ArrayList<>();
+            this.parallelism = 1;
+        }
+
+        /**
+         * Only keep the files matching at least one of these glob patterns, every file is kept if none are set.
+         * <p>
+         * Patterns are matched against the path of the files relative to the root, ex: {@code assets/example/**}.
+         *
+         * @param patterns glob patterns of the files to keep.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder include(@NotNull String... patterns) {
+            Objects.requireNonNull(patterns, "patterns must not be null!");
+
+            for (String pattern : patterns) {
+                this.includes.add(matcher(pattern));
+            }
+
+            return this;
+        }
+
+        /**
+         * Leave out the files matching one of these glob patterns, excludes take precedence over includes.
+         * <p>
+         * Patterns are matched against the path of the files relative to the root,
+         * a directory is not walked at all when a pattern matches it, or when a pattern ending with {@code /**} matches
+         * it without this suffix, ex: {@code assets/*}{@code /textures/src/**} skips every {@code src} directory.
+         *
+         * @param patterns glob patterns of the files to leave out.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder exclude(@NotNull String... patterns) {
+            Objects.requireNonNull(patterns, "patterns must not be null!");
+
+            for (String pattern : patterns) {
+                this.excludes.add(matcher(pattern));
+                this.excludedDirectories.add(matcher(pattern));
+
+                // Everything below a directory matching the prefix matches the pattern, the directory can be skipped.
+                if (pattern.endsWith(ANY_SUFFIX) && pattern.length() > ANY_SUFFIX.length())
+                    this.excludedDirectories.add(matcher(pattern.substring(0, pattern.length() - ANY_SUFFIX.length())));
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets the amount of threads listing directories concurrently.
+         *
+         * @param parallelism amount of threads, {@code 1} walks the directories on the calling thread.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if {@code parallelism} is lower than {@code 1}.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("Parallelism must be at least 1!");
+
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Create a new scanner with the provided settings.
+         *
+         * @return newly created {@link SourceScanner}.
+         */
+        public @NotNull SourceScanner build() {
+            return new SourceScanner(List.copyOf(this.includes), List.copyOf(this.excludes),
+                    List.copyOf(this.excludedDirectories), this.parallelism);
+        }
+
+        private static @NotNull PathMatcher matcher(@NotNull String pattern) {
+            return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        }
+    }
+}
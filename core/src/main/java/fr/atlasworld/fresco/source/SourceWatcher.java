@@ -0,0 +1,307 @@
+package fr.atlasworld.fresco.source;
+
+import fr.atlasworld.fresco.FrescoProcessor;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Watches the {@value FrescoProcessor#ASSETS_DIR} directories of resource pack roots for changes.
+ * <p>
+ * Changes are reported in bursts: once a change is seen, following changes are gathered until none happened
+ * for the debounce delay, so saving many files at once only leads to a single rebuild.
+ */
+public final class SourceWatcher implements Closeable {
+    private final WatchService service;
+    private final Map<WatchKey, WatchedDirectory> directories;
+    private final Predicate<String> filter;
+    private final long debounceNanos;
+
+    // Set while handling events when some changes may have been lost.
+    private boolean overflowed;
+
+    private SourceWatcher(@NotNull List<Path> roots, @NotNull Predicate<String> filter, @NotNull Duration debounce) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.directories = new HashMap<>();
+        this.filter = filter;
+        this.debounceNanos = debounce.toNanos();
+
+        try {
+            for (Path root : roots) {
+                // The root itself is watched, so an assets directory created later is picked up.
+                this.register(root, root, "");
+
+                Path assets = root.resolve(FrescoProcessor.ASSETS_DIR);
+                if (Files.isDirectory(assets))
+                    this.registerTree(root, assets, FrescoProcessor.ASSETS_DIR, null);
+            }
+        } catch (IOException ex) {
+            this.service.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Wait for the next burst of changes.
+     *
+     * @return changes of the burst.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ClosedWatchServiceException if the watcher was closed.
+     */
+    public @NotNull ChangeSet awaitChanges() throws InterruptedException {
+        Set<String> modified = new TreeSet<>();
+        Set<String> removed = new TreeSet<>();
+        boolean overflow = false;
+        long firstChange = 0;
+        long lastChange = 0;
+
+        WatchKey key = this.service.take();
+        while (true) {
+            if (key != null) {
+                boolean changed = this.handle(key, modified, removed);
+                overflow |= this.overflowed;
+                this.overflowed = false;
+
+                if (changed) {
+                    lastChange = System.nanoTime();
+                    if (firstChange == 0)
+                        firstChange = lastChange;
+                }
+            }
+
+            long quiet = lastChange == 0 ? 0 : this.debounceNanos - (System.nanoTime() - lastChange);
+            if (lastChange != 0 && quiet <= 0)
+                break;
+
+            key = lastChange == 0 ? this.service.take() : this.service.poll(quiet, TimeUnit.NANOSECONDS);
+        }
+
+        // A file written then deleted within the burst is only removed.
+        modified.removeAll(removed);
+        return new ChangeSet(Collections.unmodifiableSet(modified), Collections.unmodifiableSet(removed), overflow, firstChange, lastChange);
+    }
+
+    // Returns whether any relevant change was found.
+    private boolean handle(@NotNull WatchKey key, @NotNull Set<String> modified, @NotNull Set<String> removed) {
+        WatchedDirectory directory = this.directories.get(key);
+        boolean changed = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                this.overflowed = true;
+                changed = true;
+                continue;
+            }
+
+            if (directory == null)
+                continue;
+
+            Path name = (Path) event.context();
+            String relativePath = directory.relativePath().isEmpty()
+                    ? name.toString() : directory.relativePath() + '/' + name;
+
+            // Only the assets directory matters in the root.
+            if (directory.relativePath().isEmpty() && !relativePath.equals(FrescoProcessor.ASSETS_DIR))
+                continue;
+
+            Path path = directory.path().resolve(name);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                // Deleted directories can't be told apart from files anymore, incremental builds treat the entries below a removed path as changed.
+                removed.add(relativePath);
+                modified.remove(relativePath);
+                changed = true;
+                continue;
+            }
+
+            if (Files.isDirectory(path)) {
+                // Files may have been created before the directory was registered.
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    try {
+                        changed |= this.registerTree(directory.root(), path, relativePath, modified);
+                    } catch (IOException ex) {
+                        this.overflowed = true;
+                        changed = true;
+                    }
+                }
+
+                continue;
+            }
+
+            if (this.filter.test(relativePath)) {
+                modified.add(relativePath);
+                removed.remove(relativePath);
+                changed = true;
+            }
+        }
+
+        if (!key.reset())
+            this.directories.remove(key);
+
+        return changed;
+    }
+
+    // Registers a directory and every directory below it, files found are added to the modified files if provided.
+    private boolean registerTree(@NotNull Path root, @NotNull Path directory, @NotNull String relativePath,
+                                 @Nullable Set<String> modified) throws IOException {
+        boolean[] found = {false};
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                SourceWatcher.this.register(root, dir, relativeTo(relativePath, directory, dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String path = relativeTo(relativePath, directory, file);
+                if (modified != null && attrs.isRegularFile() && SourceWatcher.this.filter.test(path)) {
+                    modified.add(path);
+                    found[0] = true;
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                return FileVisitResult.CONTINUE; // Deleted while walking, or a link loop.
+            }
+        });
+
+        return found[0];
+    }
+
+    private void register(@NotNull Path root, @NotNull Path directory, @NotNull String relativePath) throws IOException {
+        WatchKey key = directory.register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        this.directories.put(key, new WatchedDirectory(root, directory, relativePath));
+    }
+
+    private static @NotNull String relativeTo(@NotNull String relativePath, @NotNull Path directory, @NotNull Path path) {
+        if (path.equals(directory))
+            return relativePath;
+
+        String child = directory.relativize(path).toString();
+        if (File.separatorChar != '/')
+            child = child.replace(File.separatorChar, '/');
+
+        return relativePath + '/' + child;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.service.close();
+    }
+
+    /**
+     * Create a new {@link SourceWatcher.Builder}.
+     *
+     * @return newly created builder.
+     */
+    public static @NotNull Builder create() {
+        return new Builder();
+    }
+
+    private record WatchedDirectory(@NotNull Path root, @NotNull Path path, @NotNull String relativePath) {
+    }
+
+    /**
+     * Changes gathered during a single burst.
+     *
+     * @param modified paths of the files created or modified, relative to their root, sorted.
+     * @param removed paths of the files or directories deleted, relative to their root, sorted.
+     * @param overflow whether some changes may have been lost, everything should then be considered modified.
+     * @param firstChange {@link System#nanoTime()} of the first change of the burst.
+     * @param lastChange {@link System#nanoTime()} of the last change of the burst.
+     */
+    public record ChangeSet(@NotNull Set<String> modified, @NotNull Set<String> removed, boolean overflow,
+                            long firstChange, long lastChange) {
+    }
+
+    /**
+     * {@link SourceWatcher} builder.
+     */
+    public static final class Builder {
+        public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(200);
+
+        private final List<Path> roots;
+        private Predicate<String> filter;
+        private Duration debounce;
+
+        @ApiStatus.Internal
+        private Builder() {
+            this.roots = new ArrayList<>();
+            this.filter = path -> true;
+            this.debounce = DEFAULT_DEBOUNCE;
+        }
+
+        /**
+         * Add a resource pack root to watch.
+         *
+         * @param root root directory of the resource pack.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder root(@NotNull Path root) {
+            Objects.requireNonNull(root, "root must not be null!");
+
+            this.roots.add(root);
+            return this;
+        }
+
+        /**
+         * Sets which files are relevant, changes to other files are ignored.
+         *
+         * @param filter predicate receiving the path of the files relative to their root, ex: {@link SourceScanner#accepts(String)}.
+         *
+         * @return instance of this {@link Builder}.
+         */
+        public Builder filter(@NotNull Predicate<String> filter) {
+            Objects.requireNonNull(filter, "filter must not be null!");
+
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Sets how long no change must happen before a burst of changes is reported, {@code 200ms} by default.
+         *
+         * @param debounce quiet period ending a burst.
+         *
+         * @return instance of this {@link Builder}.
+         *
+         * @throws IllegalArgumentException if the delay is negative.
+         */
+        public Builder debounce(@NotNull Duration debounce) {
+            Objects.requireNonNull(debounce, "debounce must not be null!");
+            if (debounce.isNegative())
+                throw new IllegalArgumentException("Debounce cannot be negative!");
+
+            this.debounce = debounce;
+            return this;
+        }
+
+        /**
+         * Start watching the roots.
+         *
+         * @return newly created {@link SourceWatcher}, it must be closed once done.
+         *
+         * @throws IOException if one of the directories could not be watched.
+         */
+        public @NotNull SourceWatcher build() throws IOException {
+            return new SourceWatcher(List.copyOf(this.roots), this.filter, this.debounce);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package fr.atlasworld.fresco.source;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Central directory of a zip archive, shared by the {@link SourceArchive source archives}
+ * and the previous outputs read back by incremental builds.
+ * <p>
+ * Zip64 archives are supported, a comment is tolerated after the end record. Entries are only checked
+ * to be stored before the central directory, their content is never read.
+ */
+@ApiStatus.Internal
+public final class ZipCentralDirectory {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int ZIP64_EXTRA = 0x0001;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private final List<Header> headers;
+    private final long offset;
+
+    private ZipCentralDirectory(@NotNull List<Header> headers, long offset) {
+        this.headers = headers;
+        this.offset = offset;
+    }
+
+    /**
+     * Headers of every entry of the archive, in the order of the central directory.
+     *
+     * @return unmodifiable list of the headers.
+     */
+    public @NotNull List<Header> headers() {
+        return this.headers;
+    }
+
+    /**
+     * Offset of the central directory, every local record is stored before it.
+     *
+     * @return size of the data of the archive.
+     */
+    public long offset() {
+        return this.offset;
+    }
+
+    /**
+     * Read the central directory of an archive.
+     *
+     * @param channel channel of the archive, only read with positional reads.
+     *
+     * @return central directory of the archive.
+     *
+     * @throws IOException if the archive could not be read, or is not a valid zip archive.
+     */
+    public static @NotNull ZipCentralDirectory read(@NotNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < END_SIZE)
+            throw new ZipException("Not a zip archive");
+
+        int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, size - tailSize, tailSize);
+        int endPosition = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                endPosition = i;
+                break;
+            }
+        }
+
+        if (endPosition < 0)
+            throw new ZipException("End of central directory not found");
+
+        long endOffset = size - tailSize + endPosition;
+        long entryCount = tail.getShort(endPosition + 10) & MAX_16;
+        long directorySize = tail.getInt(endPosition + 12) & MAX_32;
+        long directoryOffset = tail.getInt(endPosition + 16) & MAX_32;
+
+        if (endOffset >= ZIP64_LOCATOR_SIZE) {
+            ByteBuffer locator = read(channel, endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64End = read(channel, locator.getLong(8), ZIP64_END_SIZE);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE)
+                    throw new ZipException("Invalid Zip64 end of central directory");
+
+                entryCount = zip64End.getLong(32);
+                directorySize = zip64End.getLong(40);
+                directoryOffset = zip64End.getLong(48);
+            }
+        }
+
+        if (directoryOffset + directorySize > endOffset || directorySize > Integer.MAX_VALUE)
+            throw new ZipException("Invalid central directory");
+
+        ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+        List<Header> headers = new ArrayList<>();
+        for (long i = 0; i < entryCount; i++) {
+            Header header = readHeader(directory);
+            if (header.headerOffset() + LOCAL_HEADER_SIZE + header.compressedSize() > directoryOffset)
+                throw new ZipException("Invalid local record for entry '" + header.name() + "'");
+
+            headers.add(header);
+        }
+
+        return new ZipCentralDirectory(Collections.unmodifiableList(headers), directoryOffset);
+    }
+
+    /**
+     * Find where the data of an entry starts, the local header may carry a different extra field than the central one.
+     *
+     * @param channel channel of the archive.
+     * @param header header of the entry.
+     *
+     * @return offset of the compressed data of the entry.
+     *
+     * @throws IOException if the local header could not be read, or is invalid.
+     */
+    public static long dataOffset(@NotNull FileChannel channel, @NotNull Header header) throws IOException {
+        ByteBuffer localHeader = read(channel, header.headerOffset(), LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE)
+            throw new ZipException("Invalid local header for entry '" + header.name() + "'");
+
+        return header.headerOffset() + LOCAL_HEADER_SIZE + (localHeader.getShort(26) & MAX_16) + (localHeader.getShort(28) & MAX_16);
+    }
+
+    /**
+     * Read part of an archive.
+     *
+     * @param channel channel of the archive.
+     * @param position offset of the first byte to read.
+     * @param length amount of bytes to read.
+     *
+     * @return little-endian buffer containing the bytes read.
+     *
+     * @throws IOException if the bytes could not be read, or the archive ended before.
+     */
+    public static @NotNull ByteBuffer read(@NotNull FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, position);
+        return buffer.flip();
+    }
+
+    /**
+     * Fill a buffer from an archive.
+     *
+     * @param channel channel of the archive.
+     * @param buffer buffer to fill up to its limit.
+     * @param position offset of the first byte to read.
+     *
+     * @throws IOException if the bytes could not be read, or the archive ended before.
+     */
+    public static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new ZipException("Unexpected end of archive");
+        }
+    }
+
+    private static @NotNull Header readHeader(@NotNull ByteBuffer directory) throws IOException {
+        int start = directory.position();
+        if (directory.remaining() < CENTRAL_HEADER_SIZE || directory.getInt(start) != CENTRAL_HEADER_SIGNATURE)
+            throw new ZipException("Invalid central directory header");
+
+        int flags = directory.getShort(start + 8) & MAX_16;
+        int method = directory.getShort(start + 10) & MAX_16;
+        long crc = directory.getInt(start + 16) & MAX_32;
+        long compressedSize = directory.getInt(start + 20) & MAX_32;
+        long size = directory.getInt(start + 24) & MAX_32;
+        int nameLength = directory.getShort(start + 28) & MAX_16;
+        int extraLength = directory.getShort(start + 30) & MAX_16;
+        int commentLength = directory.getShort(start + 32) & MAX_16;
+        long headerOffset = directory.getInt(start + 42) & MAX_32;
+
+        if (directory.remaining() < CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength)
+            throw new ZipException("Invalid central directory header");
+
+        byte[] name = new byte[nameLength];
+        directory.position(start + CENTRAL_HEADER_SIZE);
+        directory.get(name);
+
+        // Zip64 values are stored in order, only for the fields which overflowed.
+        int extraEnd = directory.position() + extraLength;
+        while (directory.position() + 4 <= extraEnd) {
+            int id = directory.getShort() & MAX_16;
+            int length = directory.getShort() & MAX_16;
+            int next = directory.position() + length;
+
+            if (id == ZIP64_EXTRA) {
+                if (size == MAX_32)
+                    size = directory.getLong();
+                if (compressedSize == MAX_32)
+                    compressedSize = directory.getLong();
+                if (headerOffset == MAX_32)
+                    headerOffset = directory.getLong();
+            }
+
+            directory.position(next);
+        }
+
+        directory.position(extraEnd + commentLength);
+        return new Header(new String(name, StandardCharsets.UTF_8), flags, method, crc, compressedSize, size, headerOffset);
+    }
+
+    /**
+     * Central directory header of an entry.
+     *
+     * @param name name of the entry.
+     * @param flags general purpose flags.
+     * @param method compression method.
+     * @param crc CRC-32 of the uncompressed content.
+     * @param compressedSize size of the compressed data.
+     * @param size size of the uncompressed content.
+     * @param headerOffset offset of the local header.
+     */
+    public record Header(@NotNull String name, int flags, int method, long crc, long compressedSize, long size, long headerOffset) {
+    }
+}
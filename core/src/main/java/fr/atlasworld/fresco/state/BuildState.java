@@ -0,0 +1,132 @@
+package fr.atlasworld.fresco.state;
+
+import com.google.gson.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Build state, keeps track of the output entries produced by each source entry during a build.
+ * <p>
+ * Incremental builds use the state of the previous build to carry over the output of unchanged entries.
+ */
+public final class BuildState {
+    private static final int VERSION = 1;
+
+    private final Map<String, List<String>> outputs;
+
+    /**
+     * Create a new empty build state.
+     */
+    public BuildState() {
+        this.outputs = new LinkedHashMap<>();
+    }
+
+    /**
+     * Load a build state previously saved using {@link #save(File)}.
+     *
+     * @param file file to load the state from.
+     *
+     * @return loaded build state.
+     *
+     * @throws IOException if the file could not be read, or was saved by an incompatible version.
+     * @throws JsonParseException if the file is not a valid build state.
+     */
+    public static @NotNull BuildState load(@NotNull File file) throws IOException, JsonParseException {
+        Objects.requireNonNull(file, "file must not be null!");
+
+        JsonObject json;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            json = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (IllegalStateException ex) {
+            throw new JsonParseException("Build state must be a JSON object", ex);
+        }
+
+        if (!json.has("version") || json.get("version").getAsInt() != VERSION)
+            throw new IOException("Unsupported build state version in '" + file.getAbsolutePath() + "'");
+
+        BuildState state = new BuildState();
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("entries").entrySet()) {
+            List<String> locations = new ArrayList<>();
+            for (JsonElement location : entry.getValue().getAsJsonArray()) {
+                locations.add(location.getAsString());
+            }
+
+            state.outputs.put(entry.getKey(), locations);
+        }
+
+        return state;
+    }
+
+    /**
+     * Save this build state to a file.
+     *
+     * @param file file to save the state to.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void save(@NotNull File file) throws IOException {
+        Objects.requireNonNull(file, "file must not be null!");
+
+        JsonObject entries = new JsonObject();
+        synchronized (this.outputs) {
+            this.outputs.forEach((source, locations) -> {
+                JsonArray array = new JsonArray(locations.size());
+                locations.forEach(array::add);
+                entries.add(source, array);
+            });
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("version", VERSION);
+        json.add("entries", entries);
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new Gson().toJson(json, writer);
+        }
+    }
+
+    /**
+     * Record the output entries produced by a source entry, replacing any previous record.
+     *
+     * @param source full path of the source entry.
+     * @param locations locations of the produced output entries.
+     */
+    public void record(@NotNull String source, @NotNull Collection<String> locations) {
+        Objects.requireNonNull(source, "source must not be null!");
+        Objects.requireNonNull(locations, "locations must not be null!");
+
+        synchronized (this.outputs) {
+            this.outputs.put(source, List.copyOf(locations));
+        }
+    }
+
+    /**
+     * Retrieve the output entries produced by a source entry.
+     *
+     * @param source full path of the source entry.
+     *
+     * @return locations of the produced output entries, or {@code null} if the source entry is unknown.
+     */
+    public @Nullable List<String> outputsOf(@NotNull String source) {
+        Objects.requireNonNull(source, "source must not be null!");
+
+        synchronized (this.outputs) {
+            return this.outputs.get(source);
+        }
+    }
+
+    /**
+     * Amount of source entries recorded in this state.
+     *
+     * @return amount of recorded source entries.
+     */
+    public int size() {
+        synchronized (this.outputs) {
+            return this.outputs.size();
+        }
+    }
+}
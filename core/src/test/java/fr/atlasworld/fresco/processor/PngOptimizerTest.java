@@ -0,0 +1,159 @@
+package fr.atlasworld.fresco.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the optimized textures decode to the exact same pixels as the originals.
+ */
+final class PngOptimizerTest {
+    private static final int SIZE = 16;
+
+    private static final int GRAY = 0;
+    private static final int PALETTE = 3;
+    private static final int RGB_ALPHA = 6;
+
+    @Test
+    void sixteenBitImageWithFewColorsReduced() throws IOException {
+        int[][] colors = {{0x11, 0x22, 0x33, 0xFF}, {0xAA, 0xBB, 0xCC, 0x80}, {0x00, 0x00, 0x00, 0x00}, {0xFF, 0xEE, 0xDD, 0xFF}};
+        ByteBuffer pixels = ByteBuffer.allocate(SIZE * SIZE * 8);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            for (int sample : colors[(i / 3 + i % 5) % colors.length]) {
+                pixels.put((byte) sample).put((byte) sample);
+            }
+        }
+
+        byte[] optimized = assertLossless(png(16, RGB_ALPHA, null, null, pixels.array()));
+        assertTrue(optimized[24] < 16, "Bit depth should have been reduced");
+    }
+
+    @Test
+    void sixteenBitImageKeepsItsPrecision() throws IOException {
+        ByteBuffer pixels = ByteBuffer.allocate(SIZE * SIZE * 8);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            pixels.putShort((short) (i * 257 + 1)).putShort((short) (i * 31)).putShort((short) 0x1234).putShort((short) 0xFFFF);
+        }
+
+        assertLossless(png(16, RGB_ALPHA, null, null, pixels.array()));
+    }
+
+    @Test
+    void grayWithTransparentValue() throws IOException {
+        int[] grays = {0x00, 0x40, 0x80, 0xFF};
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) grays[(i * 7 / 5) % grays.length];
+        }
+
+        assertLossless(png(8, GRAY, null, new byte[]{0x00, 0x40}, pixels));
+    }
+
+    @Test
+    void paletteWithTransparency() throws IOException {
+        byte[] palette = {
+                (byte) 0xFF, 0x00, 0x00,
+                0x00, (byte) 0xFF, 0x00,
+                0x00, 0x00, (byte) 0xFF,
+                0x10, 0x20, 0x30,
+                (byte) 0xF0, (byte) 0xE0, (byte) 0xD0
+        };
+
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) ((i / SIZE + i % 3) % 5);
+        }
+
+        assertLossless(png(8, PALETTE, palette, new byte[]{0x00, (byte) 0x80}, pixels));
+    }
+
+    @Test
+    void transparentPixelsKeepTheirColor() throws IOException {
+        byte[] pixels = new byte[SIZE * SIZE * 4];
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            boolean transparent = i % 4 == 0;
+            pixels[i * 4] = (byte) (transparent ? i : 0x80);
+            pixels[i * 4 + 1] = (byte) (transparent ? 0xFF - i : 0x40);
+            pixels[i * 4 + 2] = (byte) (transparent ? i * 3 : 0x20);
+            pixels[i * 4 + 3] = (byte) (transparent ? 0x00 : 0xFF);
+        }
+
+        assertLossless(png(8, RGB_ALPHA, null, null, pixels));
+    }
+
+    // The optimized image may be larger, only its pixels are compared.
+    private static byte[] assertLossless(byte[] original) throws IOException {
+        byte[] optimized = PngOptimizer.optimize(original);
+        assertNotNull(optimized, "Image should have been optimized");
+
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(original));
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(optimized));
+        assertNotNull(actual, "Optimized image could not be decoded");
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int pixelX = x;
+                int pixelY = y;
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), () -> "Pixel " + pixelX + "," + pixelY + " differs");
+            }
+        }
+
+        return optimized;
+    }
+
+    // Square image of SIZE pixels, every scanline unfiltered.
+    private static byte[] png(int bitDepth, int colorType, byte[] palette, byte[] transparency, byte[] pixels) {
+        int rowSize = pixels.length / SIZE;
+        ByteArrayOutputStream scanlines = new ByteArrayOutputStream();
+        for (int row = 0; row < SIZE; row++) {
+            scanlines.write(0);
+            scanlines.write(pixels, row * rowSize, rowSize);
+        }
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(scanlines.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            data.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        deflater.end();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.writeBytes(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        chunk(png, "IHDR", ByteBuffer.allocate(13).putInt(SIZE).putInt(SIZE).put((byte) bitDepth).put((byte) colorType).array());
+        if (palette != null)
+            chunk(png, "PLTE", palette);
+        if (transparency != null)
+            chunk(png, "tRNS", transparency);
+        chunk(png, "IDAT", data.toByteArray());
+        chunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void chunk(ByteArrayOutputStream png, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        png.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        png.writeBytes(typeBytes);
+        png.writeBytes(data);
+        png.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
@@ -0,0 +1,30 @@
+package fr.atlasworld.fresco.config;
+
+import org.gradle.api.tasks.Input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DedupeConfig {
+    private boolean enabled;
+    private final List<String> keepPatterns = new ArrayList<>();
+
+    @Input
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Input
+    public List<String> getKeepPatterns() {
+        return keepPatterns;
+    }
+
+    public void keep(String... patterns) {
+        this.keepPatterns.addAll(Arrays.asList(patterns));
+    }
+}
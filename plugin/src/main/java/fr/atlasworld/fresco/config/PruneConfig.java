@@ -0,0 +1,40 @@
+package fr.atlasworld.fresco.config;
+
+import org.gradle.api.tasks.Input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PruneConfig {
+    private boolean enabled;
+    private boolean keepVanilla = true;
+    private final List<String> roots = new ArrayList<>();
+
+    @Input
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Input
+    public boolean isKeepVanilla() {
+        return keepVanilla;
+    }
+
+    public void setKeepVanilla(boolean keepVanilla) {
+        this.keepVanilla = keepVanilla;
+    }
+
+    @Input
+    public List<String> getRoots() {
+        return roots;
+    }
+
+    public void keep(String... patterns) {
+        this.roots.addAll(Arrays.asList(patterns));
+    }
+}
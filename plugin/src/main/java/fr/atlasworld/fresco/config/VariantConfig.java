@@ -0,0 +1,49 @@
+package fr.atlasworld.fresco.config;
+
+import fr.atlasworld.fresco.processor.ResourceProcessor;
+import fr.atlasworld.fresco.source.EntryType;
+import org.gradle.api.Action;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class VariantConfig {
+    private final String name;
+    private final VariantMetaConfig metaConfig = new VariantMetaConfig();
+    private final Map<EntryType, Set<ResourceProcessor>> processors = new HashMap<>();
+
+    public VariantConfig(String name) {
+        this.name = name;
+    }
+
+    @Input
+    public String getName() {
+        return name;
+    }
+
+    @Nested
+    public VariantMetaConfig getMetaConfig() {
+        return metaConfig;
+    }
+
+    public void meta(Action<VariantMetaConfig> action) {
+        action.execute(this.metaConfig);
+    }
+
+    @Internal
+    public Map<EntryType, Set<ResourceProcessor>> getProcessors() {
+        return processors;
+    }
+
+    public void overrideProcessor(EntryType type, ResourceProcessor processor) {
+        if (type == null || processor == null)
+            throw new IllegalArgumentException("Type and processor must not be null!");
+
+        this.processors.computeIfAbsent(type, k -> new LinkedHashSet<>()).add(processor);
+    }
+}
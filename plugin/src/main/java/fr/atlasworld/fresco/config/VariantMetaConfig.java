@@ -0,0 +1,29 @@
+package fr.atlasworld.fresco.config;
+
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+
+public class VariantMetaConfig {
+    private String description;
+    private Integer packFormat;
+
+    @Input
+    @Optional
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    @Input
+    @Optional
+    public Integer getPackFormat() {
+        return packFormat;
+    }
+
+    public void setPackFormat(Integer packFormat) {
+        this.packFormat = packFormat;
+    }
+}
@@ -1,39 +1,106 @@
 package fr.atlasworld.fresco.task;
 
 import fr.atlasworld.fresco.FrescoProcessor;
+import fr.atlasworld.fresco.OutputVariant;
+import fr.atlasworld.fresco.ProcessResult;
+import fr.atlasworld.fresco.config.DedupeConfig;
 import fr.atlasworld.fresco.config.PackMetaConfig;
-import fr.atlasworld.fresco.entity.GradleSourceEntry;
+import fr.atlasworld.fresco.config.PruneConfig;
+import fr.atlasworld.fresco.config.VariantConfig;
+import fr.atlasworld.fresco.config.VariantMetaConfig;
+import fr.atlasworld.fresco.dedupe.AssetDeduplicator;
+import fr.atlasworld.fresco.dedupe.DedupeReport;
+import fr.atlasworld.fresco.metrics.MetricsReport;
+import fr.atlasworld.fresco.metrics.StageMetrics;
 import fr.atlasworld.fresco.pack.PackDefinition;
 import fr.atlasworld.fresco.pack.PackMeta;
+import fr.atlasworld.fresco.processor.CacheableProcessor;
+import fr.atlasworld.fresco.processor.CacheableTransformer;
+import fr.atlasworld.fresco.processor.CompressionPolicy;
+import fr.atlasworld.fresco.processor.EntryTransformer;
+import fr.atlasworld.fresco.processor.JsonMinifier;
+import fr.atlasworld.fresco.processor.PngOptimizer;
+import fr.atlasworld.fresco.processor.ProcessorCache;
+import fr.atlasworld.fresco.processor.ProcessorOutput;
 import fr.atlasworld.fresco.processor.ResourceProcessor;
+import fr.atlasworld.fresco.prune.AssetPruner;
+import fr.atlasworld.fresco.prune.PruneReport;
 import fr.atlasworld.fresco.source.EntryType;
+import fr.atlasworld.fresco.source.LayeredSources;
+import fr.atlasworld.fresco.source.MergeStrategy;
+import fr.atlasworld.fresco.source.SourceScanner;
+import fr.atlasworld.fresco.source.SourceWatcher;
+import fr.atlasworld.fresco.state.BuildState;
 import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileType;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.SetProperty;
 import org.gradle.api.tasks.*;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.work.FileChange;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
 
+import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * Resource pack task, handle the processing of the resource pack assets.
+ * <p>
+ * The resource pack is built on a Gradle worker, in parallel with other tasks. Source files are tracked relative
+ * to their root, so the resource pack can be pulled from the build cache by any checkout of the project,
+ * as long as every processor and transformer is {@link CacheableProcessor cacheable}.
  */
-public class ResourcePackTask extends DefaultTask {
+@CacheableTask
+public abstract class ResourcePackTask extends DefaultTask {
+    private static final String PREVIOUS_OUTPUT_FILE = "previous.zip";
 
     // Processor Settings
 
     private final PackMetaConfig metaConfig = new PackMetaConfig();
+    private final PruneConfig pruneConfig = new PruneConfig();
+    private final DedupeConfig dedupeConfig = new DedupeConfig();
+    private final Map<String, VariantConfig> variants = new LinkedHashMap<>();
     private PackDefinition definition = PackDefinition.defaultDefinition();
+    private final CompressionPolicy compression = new CompressionPolicy();
     private final Map<EntryType, Set<ResourceProcessor>> processors = new HashMap<>();
+    private final Map<EntryType, Set<EntryTransformer>> transformers = new HashMap<>();
+    private final Map<EntryType, MergeStrategy> typeMergeStrategies = new EnumMap<>(EntryType.class);
+    private final Map<String, MergeStrategy> fileMergeStrategies = new HashMap<>();
+    private final Property<Boolean> minifyJson = getProject().getObjects().property(Boolean.class);
+    private final Property<Boolean> optimizePng = getProject().getObjects().property(Boolean.class);
+    private final Property<Integer> parallelism = getProject().getObjects().property(Integer.class);
+    private final Property<File> cacheDirectory = getProject().getObjects().property(File.class);
+    private final Property<Long> cacheMaxSize = getProject().getObjects().property(Long.class);
+    private final SetProperty<String> digests = getProject().getObjects().setProperty(String.class);
+    private final Property<Boolean> patchOutput = getProject().getObjects().property(Boolean.class);
+    private final Property<Double> compactionThreshold = getProject().getObjects().property(Double.class);
+    private final Property<Boolean> watch = getProject().getObjects().property(Boolean.class);
+    private final Property<Long> watchDebounce = getProject().getObjects().property(Long.class);
 
     // Input properties
 
     private final Property<FileCollection> from = getProject().getObjects().property(FileCollection.class);
+    private final ListProperty<String> includes = getProject().getObjects().listProperty(String.class);
+    private final ListProperty<String> excludes = getProject().getObjects().listProperty(String.class);
+    private List<SourceRoot> sourceRoots = List.of();
+    private List<Object> sourceRootsKey = List.of();
 
     // Output properties
 
@@ -41,14 +108,35 @@ public class ResourcePackTask extends DefaultTask {
     private final Property<String> archiveVersion = getProject().getObjects().property(String.class);
     private final Property<String> archiveClassifier = getProject().getObjects().property(String.class);
     private final Property<File> destinationDirectory = getProject().getObjects().property(File.class);
+    private final Property<File> explodedDirectory = getProject().getObjects().property(File.class);
 
     public ResourcePackTask() {
         this.archiveBaseName.set(getProject().getName());
         this.archiveVersion.set(getProject().getVersion().toString());
         this.archiveClassifier.set("resource-pack");
+        this.minifyJson.convention(false);
+        this.optimizePng.convention(false);
+        this.parallelism.convention(1);
+        this.cacheMaxSize.convention(ProcessorCache.DEFAULT_MAX_SIZE);
+        this.patchOutput.convention(false);
+        this.compactionThreshold.convention(ProcessorOutput.DEFAULT_COMPACTION_THRESHOLD);
+        this.watch.convention(false);
+        this.watchDebounce.convention(SourceWatcher.Builder.DEFAULT_DEBOUNCE.toMillis());
         this.destinationDirectory.set(new File(getProject().getLayout().getBuildDirectory().getAsFile().get(), "resourcepacks"));
+
+        this.getOutputs().doNotCacheIf("Processors and transformers without a cache key may depend on more than the processed entries",
+                task -> !this.isCacheable());
+        this.getOutputs().doNotCacheIf("Exploded directories link their source files", task -> this.explodedDirectory.isPresent());
+        this.getOutputs().doNotCacheIf("Patched resource packs depend on the previous build", task -> this.patchOutput.get());
+        this.getOutputs().doNotCacheIf("Watch mode keeps the task running", task -> this.watch.get());
+
+        // Watching must start even if the resource pack is up-to-date.
+        this.getOutputs().upToDateWhen(task -> !this.watch.get());
     }
 
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
     /**
      * Retrieves the metadata configuration for the resource pack.
      *
@@ -68,16 +156,304 @@ public class ResourcePackTask extends DefaultTask {
         action.execute(this.metaConfig);
     }
 
+    /**
+     * Retrieves the configuration of the unused asset pruning.
+     *
+     * @return the pruning configuration as a {@link PruneConfig} instance.
+     */
+    @Nested
+    public PruneConfig getPruneConfig() {
+        return this.pruneConfig;
+    }
+
+    /**
+     * Configures the pruning of unused assets using the provided action.
+     * <p>
+     * When enabled, models, textures and sounds nothing references are left out of the resource pack,
+     * and the pruned entries are listed in a report next to it.
+     *
+     * @param action the action to configure the {@link PruneConfig} of the resource pack.
+     */
+    public void prune(Action<PruneConfig> action) {
+        action.execute(this.pruneConfig);
+    }
+
+    /**
+     * Retrieves the configuration of the duplicated asset removal.
+     *
+     * @return the deduplication configuration as a {@link DedupeConfig} instance.
+     */
+    @Nested
+    public DedupeConfig getDedupeConfig() {
+        return this.dedupeConfig;
+    }
+
+    /**
+     * Configures the removal of duplicated textures and models using the provided action.
+     * <p>
+     * When enabled, byte-identical textures and models are stored once and the models, blockstates and item definitions
+     * referencing a removed copy are rewritten, the removed entries are listed in a report next to the resource pack.
+     *
+     * @param action the action to configure the {@link DedupeConfig} of the resource pack.
+     */
+    public void dedupe(Action<DedupeConfig> action) {
+        action.execute(this.dedupeConfig);
+    }
+
+    /**
+     * Retrieves the configurations of the resource pack variants.
+     *
+     * @return the variant configurations, in the order they were declared.
+     */
+    @Nested
+    public List<VariantConfig> getVariants() {
+        return new ArrayList<>(this.variants.values());
+    }
+
+    /**
+     * Configures an additional variant of the resource pack using the provided action, ex: for an older pack format.
+     * <p>
+     * Variants are written in the same pass as the resource pack, each source entry is read and processed once
+     * and its output is written to every variant, unless the variant overrides the processors of its type.
+     * A variant is written next to the resource pack, its name appended to the archive name.
+     * Incremental builds are disabled while variants are configured.
+     *
+     * @param name   the name of the variant, ex: {@code legacy}.
+     * @param action the action to configure the {@link VariantConfig} of the variant.
+     */
+    public void variant(String name, Action<VariantConfig> action) {
+        action.execute(this.variants.computeIfAbsent(name, VariantConfig::new));
+    }
+
+    /**
+     * Retrieves the compression policy deciding how each entry of the resource pack is compressed.
+     *
+     * @return the compression policy of the resource pack.
+     */
+    @Input
+    public CompressionPolicy getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * Configures the compression policy of the resource pack using the provided action.
+     *
+     * @param action the action to configure the {@link CompressionPolicy} of the resource pack.
+     */
+    public void compression(Action<CompressionPolicy> action) {
+        action.execute(this.compression);
+    }
+
+    /**
+     * Retrieves whether the JSON entries of the resource pack are minified.
+     * <p>
+     * Applies to the {@link JsonMinifier#DEFAULT_TYPES models, blockstates, atlases, items and languages}.
+     *
+     * @return a property containing whether JSON entries are minified, defaults to {@code false}.
+     */
+    @Input
+    public Property<Boolean> getMinifyJson() {
+        return this.minifyJson;
+    }
+
+    /**
+     * Retrieves whether the PNG textures of the resource pack are losslessly optimized.
+     * <p>
+     * Per-texture savings are logged at the info level.
+     *
+     * @return a property containing whether PNG textures are optimized, defaults to {@code false}.
+     */
+    @Input
+    public Property<Boolean> getOptimizePng() {
+        return this.optimizePng;
+    }
+
+    /**
+     * Retrieves the amount of threads used to process the resource pack entries.
+     * <p>
+     * The output does not depend on it, processors must be thread-safe when it is greater than {@code 1}.
+     *
+     * @return a property containing the amount of processing threads, defaults to {@code 1}.
+     */
+    @Internal
+    public Property<Integer> getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Retrieves the directory in which the results of {@link fr.atlasworld.fresco.processor.CacheableProcessor CacheableProcessors} are cached.
+     * <p>
+     * The cache is disabled unless this property is set.
+     *
+     * @return a property containing the processor cache directory.
+     */
+    @Internal
+    public Property<File> getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * Retrieves the maximum size of the processor cache, least recently used results are evicted first.
+     *
+     * @return a property containing the maximum size of the processor cache in bytes.
+     */
+    @Internal
+    public Property<Long> getCacheMaxSize() {
+        return this.cacheMaxSize;
+    }
+
+    /**
+     * Retrieves the digest algorithms computed for the resource pack, in addition to {@code SHA-1} which is always computed.
+     * <p>
+     * Each digest is written next to the resource pack, in a sidecar file named after the algorithm, ex: {@code pack.zip.sha256}.
+     *
+     * @return a property containing the additional digest algorithms.
+     */
+    @Input
+    public SetProperty<String> getDigests() {
+        return this.digests;
+    }
+
+    /**
+     * Retrieves whether incremental builds patch the previous resource pack in place instead of writing it again.
+     * <p>
+     * Unchanged entries are left untouched and only changed entries are appended, the space left by replaced entries
+     * is reclaimed once it exceeds the {@link #getCompactionThreshold() compaction threshold}. A patched resource pack
+     * has the same content as a fully built one, but not the same bytes until it is compacted.
+     *
+     * @return a property containing whether the resource pack is patched in place, defaults to {@code false}.
+     */
+    @Internal
+    public Property<Boolean> getPatchOutput() {
+        return this.patchOutput;
+    }
+
+    /**
+     * Retrieves the fraction of unused space past which a {@link #getPatchOutput() patched} resource pack is compacted.
+     *
+     * @return a property containing the compaction threshold, between {@code 0} and {@code 1}, defaults to {@code 0.25}.
+     */
+    @Internal
+    public Property<Double> getCompactionThreshold() {
+        return this.compactionThreshold;
+    }
+
+    /**
+     * Retrieves whether the task keeps watching the source roots once the resource pack is built.
+     * <p>
+     * Every burst of changes leads to an incremental rebuild of the changed entries, the task runs until it is cancelled.
+     * Can be enabled from the command line with {@code --watch}.
+     *
+     * @return a property containing whether the source roots are watched, defaults to {@code false}.
+     */
+    @Internal
+    @Option(option = "watch", description = "Keeps rebuilding the resource pack when its sources change.")
+    public Property<Boolean> getWatch() {
+        return this.watch;
+    }
+
+    /**
+     * Retrieves how long the sources must stay unchanged before a rebuild starts, while {@link #getWatch() watching}.
+     *
+     * @return a property containing the quiet period in milliseconds, defaults to {@code 200}.
+     */
+    @Internal
+    public Property<Long> getWatchDebounce() {
+        return this.watchDebounce;
+    }
+
+    /**
+     * Retrieves the SHA-1 of the resource pack, as expected by Minecraft servers.
+     * <p>
+     * Read from the sidecar file written next to the resource pack, only available once the task has run.
+     *
+     * @return a provider containing the hex encoded SHA-1 of the resource pack.
+     */
+    @Internal
+    public Provider<String> getSha1() {
+        return this.destinationDirectory.map(directory -> {
+            try {
+                String content = Files.readString(digestFile(directory, this.computeOutputFile(), ProcessResult.SHA_1).toPath(), StandardCharsets.UTF_8);
+                return content.split("\\s+", 2)[0];
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Resource pack SHA-1 is not available, has the task run?", ex);
+            }
+        });
+    }
+
     /**
      * Retrieves the file collection that represents the source files for the task.
+     * <p>
+     * Every root is layered on top of the roots before it, when several roots contain the same file
+     * it is merged according to its {@link #getTypeMergeStrategies() merge strategy}, or taken from the last root.
+     * Roots are either directories or zip and jar archives, archives are read without being extracted.
      *
      * @return a property containing the collection of files to be used as input for the task.
      */
-    @InputFiles
+    @Internal
     public Property<FileCollection> getFrom() {
         return this.from;
     }
 
+    /**
+     * Retrieves the glob patterns of the source files to keep, every file of the {@code assets} directories is kept if empty.
+     * <p>
+     * Patterns are matched against the path of the files relative to their source root, ex: {@code assets/example/**}.
+     *
+     * @return a property containing the include patterns.
+     */
+    @Input
+    public ListProperty<String> getIncludes() {
+        return this.includes;
+    }
+
+    /**
+     * Retrieves the glob patterns of the source files to leave out, they take precedence over the includes.
+     * <p>
+     * Directories matching a pattern, or a pattern ending with {@code /**} without this suffix, are not walked at all,
+     * ex: {@code assets/*}{@code /textures/src/**}.
+     *
+     * @return a property containing the exclude patterns.
+     */
+    @Input
+    public ListProperty<String> getExcludes() {
+        return this.excludes;
+    }
+
+    /**
+     * Retrieves the {@link #getFrom() source roots}, in order, each tracking its files for incremental builds.
+     * <p>
+     * Only the files of the {@code assets} directories matching the {@link #getIncludes() includes}
+     * and {@link #getExcludes() excludes} are tracked, archives are tracked as a whole.
+     *
+     * @return the source roots, in the order they are layered.
+     */
+    @Nested
+    public List<SourceRoot> getSourceRoots() {
+        List<File> rootFiles = new ArrayList<>();
+        if (this.from.isPresent())
+            this.from.get().forEach(rootFiles::add);
+
+        // Changes are looked up by file collection, the same instances are returned while the roots and patterns stay the same.
+        List<Object> key = List.of(rootFiles, this.includes.get(), this.excludes.get());
+        if (key.equals(this.sourceRootsKey))
+            return this.sourceRoots;
+
+        // Filtered by the scanner itself, Gradle patterns do not match like the glob patterns of the scanner.
+        SourceScanner scanner = this.createScanner();
+        List<SourceRoot> roots = new ArrayList<>(rootFiles.size());
+        for (File rootFile : rootFiles) {
+            FileCollection files = rootFile.isFile() ? this.getProject().files(rootFile) : this.getProject().files(rootFile).getAsFileTree()
+                    .matching(patterns -> patterns.include(element -> element.isDirectory() || scanner.accepts(element.getRelativePath().getPathString())));
+
+            roots.add(new SourceRoot(rootFile, files));
+        }
+
+        this.sourceRoots = Collections.unmodifiableList(roots);
+        this.sourceRootsKey = key;
+        return this.sourceRoots;
+    }
+
     /**
      * Retrieves the base name for the archive this task produces.
      *
@@ -119,6 +495,21 @@ public class ResourcePackTask extends DefaultTask {
         return this.destinationDirectory;
     }
 
+    /**
+     * Retrieves the directory the resource pack is written to as an exploded directory instead of an archive, for development builds.
+     * <p>
+     * When set, nothing is compressed and unmodified entries are hard-linked to their source file, or copied if linking fails,
+     * ex: a sub-directory of the client's {@code resourcepacks} folder. Files of the directory which are not part of the
+     * resource pack are deleted, the directory must either be empty or already contain a resource pack. No digest is computed.
+     *
+     * @return a property containing the exploded output directory.
+     */
+    @Optional
+    @OutputDirectory
+    public Property<File> getExplodedDirectory() {
+        return this.explodedDirectory;
+    }
+
     /**
      * Replaces the default {@link PackDefinition} with an empty one.
      * This allows for a completely custom pack definition.
@@ -147,58 +538,535 @@ public class ResourcePackTask extends DefaultTask {
         if (type == null || processor == null)
             throw new IllegalArgumentException("Type and processor must not be null!");
 
-        this.processors.computeIfAbsent(type, k -> new HashSet<>()).add(processor);
+        this.processors.computeIfAbsent(type, k -> new LinkedHashSet<>()).add(processor);
+    }
+
+    /**
+     * Add a custom transformer to the transform pipeline of a specific entry type.
+     * <p>
+     * Transformers are chained in the order they were added, each receiving the output of the previous one,
+     * the built-in JSON minifier and PNG optimizer run after them.
+     *
+     * @param type        the entry type the transformer should transform.
+     * @param transformer the transformer implementation.
+     */
+    public void addTransformer(EntryType type, EntryTransformer transformer) {
+        if (type == null || transformer == null)
+            throw new IllegalArgumentException("Type and transformer must not be null!");
+
+        this.transformers.computeIfAbsent(type, k -> new LinkedHashSet<>()).add(transformer);
+    }
+
+    /**
+     * Retrieves the directories associated with each entry type by the {@link PackDefinition}.
+     *
+     * @return the directories of each entry type, only for the types having some.
+     */
+    @Input
+    public Map<EntryType, List<String>> getDefinitionDirectories() {
+        Map<EntryType, List<String>> directories = new EnumMap<>(EntryType.class);
+        for (EntryType type : EntryType.values()) {
+            List<String> typeDirectories = this.definition.directoriesOf(type);
+            if (!typeDirectories.isEmpty())
+                directories.put(type, typeDirectories);
+        }
+
+        return directories;
+    }
+
+    /**
+     * Retrieves the keys of every processor and transformer of the resource pack and its variants.
+     * <p>
+     * {@link CacheableProcessor Cacheable} processors and transformers are identified by their cache key,
+     * the others by their class.
+     *
+     * @return the keys of the processors and transformers, by type and order.
+     */
+    @Input
+    public Map<String, String> getProcessorKeys() {
+        Map<String, String> keys = new TreeMap<>();
+        this.collectStages((name, stage) -> keys.put(name, keyOf(stage)));
+        return keys;
+    }
+
+    /**
+     * Retrieves the merge strategies set by entry type, on top of the {@link LayeredSources defaults}.
+     *
+     * @return the merge strategies by entry type.
+     */
+    @Input
+    public Map<EntryType, MergeStrategy> getTypeMergeStrategies() {
+        return this.typeMergeStrategies;
+    }
+
+    /**
+     * Retrieves the merge strategies set by file name, for the files at the root of the namespaces.
+     *
+     * @return the merge strategies by file name.
+     */
+    @Input
+    public Map<String, MergeStrategy> getFileMergeStrategies() {
+        return this.fileMergeStrategies;
+    }
+
+    /**
+     * Set how the files of a type found in several {@link #getFrom() source roots} are combined.
+     *
+     * @param type     the entry type of the files.
+     * @param strategy the merge strategy of the files.
+     */
+    public void merge(EntryType type, MergeStrategy strategy) {
+        if (type == null || strategy == null)
+            throw new IllegalArgumentException("Type and strategy must not be null!");
+
+        this.typeMergeStrategies.put(type, strategy);
+    }
+
+    /**
+     * Set how the files at the root of the namespaces found in several {@link #getFrom() source roots} are combined,
+     * ex: {@code sounds.json}.
+     *
+     * @param filename the name of the files.
+     * @param strategy the merge strategy of the files.
+     */
+    public void merge(String filename, MergeStrategy strategy) {
+        if (filename == null || strategy == null)
+            throw new IllegalArgumentException("Filename and strategy must not be null!");
+
+        this.fileMergeStrategies.put(filename, strategy);
     }
 
     @TaskAction
-    public void process() throws IOException {
-        FrescoProcessor.Builder builder = FrescoProcessor.create();
+    public void process(InputChanges changes) throws IOException {
+        Set<String> changedEntries = changes.isIncremental() ? this.collectChangedEntries(changes) : null;
+        ResolvedBuild build = new ResolvedBuild(this);
 
-        builder.meta(new PackMeta(this.metaConfig.getDescription(), this.metaConfig.getPackFormat()));
-        builder.logger(this.getLogger());
-        builder.outputFile(this.computeOutputFile());
-        builder.definition(this.definition);
+        String buildId = ResourcePackWork.register(build);
+        try {
+            this.getWorkerExecutor().noIsolation().submit(ResourcePackWork.class, parameters -> {
+                parameters.getBuildId().set(buildId);
+                parameters.getIncremental().set(changedEntries != null);
+                parameters.getChangedEntries().set(changedEntries != null ? changedEntries : Set.of());
+            });
+        } catch (RuntimeException ex) {
+            ResourcePackWork.unregister(buildId);
+            throw ex;
+        }
+
+        if (this.watch.get()) {
+            this.getWorkerExecutor().await();
+            this.watch(build);
+        }
+    }
+
+    // Rebuilds the resource pack on every burst of changes, until interrupted.
+    private void watch(ResolvedBuild build) throws IOException {
+        SourceWatcher.Builder watcherBuilder = SourceWatcher.create()
+                .filter(build.scanner::accepts)
+                .debounce(Duration.ofMillis(this.watchDebounce.get()));
+
+        // Archives are not watched, changes to them are picked up by the next rebuild.
+        for (File rootFile : build.roots) {
+            if (rootFile.isDirectory())
+                watcherBuilder.root(rootFile.toPath());
+        }
+
+        try (SourceWatcher watcher = watcherBuilder.build()) {
+            this.getLogger().lifecycle("Watching {} source roots for changes, cancel the build to stop", build.roots.size());
+
+            while (true) {
+                SourceWatcher.ChangeSet changes = watcher.awaitChanges();
+                long start = System.nanoTime();
 
-        this.processors.forEach((type, processors) -> builder.addProcessors(type, processors.toArray(new ResourceProcessor[0])));
-        this.collectEntries(builder);
+                try {
+                    Set<String> changedEntries = new HashSet<>(changes.modified());
+                    changedEntries.addAll(changes.removed());
+                    build.run(!changes.overflow(), changedEntries);
+                } catch (IOException | RuntimeException ex) {
+                    // The state is gone, the next rebuild is a full one.
+                    this.getLogger().error("Could not rebuild the resource pack, waiting for the next change", ex);
+                    continue;
+                }
+
+                long end = System.nanoTime();
+                this.getLogger().lifecycle("Rebuilt {} changed and {} removed entries in {} ms, {} ms after the last change",
+                        changes.overflow() ? "all" : changes.modified().size(), changes.removed().size(),
+                        TimeUnit.NANOSECONDS.toMillis(end - start), TimeUnit.NANOSECONDS.toMillis(end - changes.lastChange()));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.getLogger().lifecycle("Stopped watching the source roots");
+        }
+    }
 
-        try (FrescoProcessor processor = builder.build()) {
-            processor.process(); // AutoClosable should close by itself
+    // Returns null when an archive changed, it does not tell which of its entries changed.
+    private Set<String> collectChangedEntries(InputChanges changes) {
+        Set<String> changedEntries = new HashSet<>();
+        for (SourceRoot root : this.getSourceRoots()) {
+            for (FileChange change : changes.getFileChanges(root.getFiles())) {
+                if (!root.getRoot().isDirectory())
+                    return null;
+
+                // Removed files stay in the set, a deleted override or layer changes what the path resolves to.
+                if (change.getFileType() == FileType.DIRECTORY)
+                    continue;
+
+                // Normalized paths are relative to the root, always separated by '/'.
+                changedEntries.add(change.getNormalizedPath());
+            }
         }
+
+        return changedEntries;
+    }
+
+    // Archive, or exploded directory, the resource pack is written to.
+    private File computePackFile() {
+        return this.explodedDirectory.isPresent() ? this.explodedDirectory.get() : this.computeOutputFile();
     }
 
     private File computeOutputFile() {
         return new File(this.destinationDirectory.get(), this.archiveBaseName.get() + "-" + this.archiveVersion.get() + "-" + this.archiveClassifier.get() + ".zip");
     }
 
-    private void collectEntries(FrescoProcessor.Builder builder) {
-        this.from.get().forEach(rootFile -> {
-            Set<File> files = new HashSet<>();
-            this.collectFilesRecursively(rootFile, files);
+    // Stored with the outputs, so a resource pack pulled from the build cache comes with its own state.
+    private File computeStateFile() {
+        return new File(this.destinationDirectory.get(), this.computeOutputFile().getName() + ".state.json");
+    }
 
-            for (File file : files) {
-                String relativePath = rootFile.toPath().relativize(file.toPath()).toString();
-                if (!relativePath.startsWith(FrescoProcessor.ASSETS_DIR))
-                    continue;
+    private File computeVariantFile(String name) {
+        return new File(this.destinationDirectory.get(), this.archiveBaseName.get() + "-" + this.archiveVersion.get() + "-" + this.archiveClassifier.get() + "-" + name + ".zip");
+    }
 
-                GradleSourceEntry entry = new GradleSourceEntry(file, rootFile);
-                builder.addEntry(entry);
-            }
+    private boolean isCacheable() {
+        boolean[] cacheable = {true};
+        this.collectStages((name, stage) -> {
+            if (!(stage instanceof CacheableProcessor) && !(stage instanceof CacheableTransformer))
+                cacheable[0] = false;
         });
+
+        return cacheable[0];
+    }
+
+    // Names every processor and transformer after its type and position, ex: processor.models.0
+    private void collectStages(BiConsumer<String, Object> consumer) {
+        this.processors.forEach((type, processors) -> collectStages("processor." + type.name().toLowerCase(Locale.ROOT), processors, consumer));
+        this.transformers.forEach((type, transformers) -> collectStages("transformer." + type.name().toLowerCase(Locale.ROOT), transformers, consumer));
+
+        for (VariantConfig variant : this.variants.values()) {
+            variant.getProcessors().forEach((type, processors) ->
+                    collectStages("variant." + variant.getName() + ".processor." + type.name().toLowerCase(Locale.ROOT), processors, consumer));
+        }
+    }
+
+    private static void collectStages(String prefix, Set<?> stages, BiConsumer<String, Object> consumer) {
+        int index = 0;
+        for (Object stage : stages) {
+            consumer.accept(prefix + "." + index++, stage);
+        }
+    }
+
+    // Lambda class names carry a counter and an address which change with every build.
+    private static String keyOf(Object stage) {
+        if (stage instanceof CacheableProcessor processor)
+            return processor.cacheKey();
+
+        if (stage instanceof CacheableTransformer transformer)
+            return transformer.cacheKey();
+
+        String name = stage.getClass().getName();
+        int lambda = name.indexOf("$$Lambda");
+        return lambda < 0 ? name : name.substring(0, lambda + "$$Lambda".length());
+    }
+
+    private SourceScanner createScanner() {
+        return SourceScanner.create()
+                .include(this.includes.get().toArray(new String[0]))
+                .exclude(this.excludes.get().toArray(new String[0]))
+                .parallelism(this.parallelism.get())
+                .build();
+    }
+
+    // Written in the sha1sum format, next to the resource pack, ex: pack.zip.sha1
+    private static File digestFile(File directory, File outputFile, String algorithm) {
+        String extension = algorithm.replace("-", "").toLowerCase(Locale.ROOT);
+        return new File(directory, outputFile.getName() + "." + extension);
     }
 
-    private void collectFilesRecursively(File root, Set<File> output) {
-        File[] files = root.listFiles();
-        if (files == null)
-            return;
+    /**
+     * Build of the resource pack resolved from the task configuration, it does not reference the task
+     * and can run on a worker thread once the task action returned.
+     */
+    static final class ResolvedBuild implements ResourcePackWork.PackBuild {
+        private final Logger logger = Logging.getLogger(ResourcePackTask.class);
+        private final PackMeta meta;
+        private final File outputFile;
+        private final boolean exploded;
+        private final File destinationDirectory;
+        private final String outputName;
+        private final File stateFile;
+        private final File previousOutputFile;
+        private final PackDefinition definition;
+        private final CompressionPolicy compression;
+        private final int parallelism;
+        private final String[] digests;
+        private final File cacheDirectory;
+        private final long cacheMaxSize;
+        private final Map<EntryType, List<ResourceProcessor>> processors = new HashMap<>();
+        private final Map<EntryType, List<EntryTransformer>> transformers = new HashMap<>();
+        private final boolean minifyJson;
+        private final boolean optimizePng;
+        private final boolean prune;
+        private final String[] pruneRoots;
+        private final boolean pruneKeepVanilla;
+        private final boolean dedupe;
+        private final String[] dedupeKeepPatterns;
+        private final List<OutputVariant> variants = new ArrayList<>();
+        private final List<File> roots = new ArrayList<>();
+        private final SourceScanner scanner;
+        private final Map<EntryType, MergeStrategy> typeMergeStrategies;
+        private final Map<String, MergeStrategy> fileMergeStrategies;
+        private final boolean patchOutput;
+        private final double compactionThreshold;
+
+        // Must be called from the task action, every property is resolved here.
+        ResolvedBuild(ResourcePackTask task) {
+            this.meta = new PackMeta(task.metaConfig.getDescription(), task.metaConfig.getPackFormat());
+            this.outputFile = task.computePackFile();
+            this.exploded = task.explodedDirectory.isPresent();
+            this.destinationDirectory = task.destinationDirectory.get();
+            this.outputName = task.computeOutputFile().getName();
+            this.stateFile = task.computeStateFile();
+            this.previousOutputFile = new File(task.getTemporaryDir(), PREVIOUS_OUTPUT_FILE);
+            this.definition = task.definition;
+            this.compression = task.compression;
+            this.parallelism = task.parallelism.get();
+            this.digests = task.digests.get().toArray(new String[0]);
+            this.cacheDirectory = task.cacheDirectory.getOrNull();
+            this.cacheMaxSize = task.cacheMaxSize.get();
+            task.processors.forEach((type, processors) -> this.processors.put(type, List.copyOf(processors)));
+            task.transformers.forEach((type, transformers) -> this.transformers.put(type, List.copyOf(transformers)));
+            this.minifyJson = task.minifyJson.get();
+            this.optimizePng = task.optimizePng.get();
+            this.prune = task.pruneConfig.isEnabled();
+            this.pruneRoots = task.pruneConfig.getRoots().toArray(new String[0]);
+            this.pruneKeepVanilla = task.pruneConfig.isKeepVanilla();
+            this.dedupe = task.dedupeConfig.isEnabled();
+            this.dedupeKeepPatterns = task.dedupeConfig.getKeepPatterns().toArray(new String[0]);
+            this.scanner = task.createScanner();
+            this.typeMergeStrategies = new EnumMap<>(EntryType.class);
+            this.typeMergeStrategies.putAll(task.typeMergeStrategies);
+            this.fileMergeStrategies = new HashMap<>(task.fileMergeStrategies);
+            this.patchOutput = task.patchOutput.get();
+            this.compactionThreshold = task.compactionThreshold.get();
+            task.from.get().forEach(this.roots::add);
+
+            for (VariantConfig variantConfig : task.variants.values()) {
+                VariantMetaConfig variantMeta = variantConfig.getMetaConfig();
+                String description = variantMeta.getDescription() != null ? variantMeta.getDescription() : task.metaConfig.getDescription();
+                int packFormat = variantMeta.getPackFormat() != null ? variantMeta.getPackFormat() : task.metaConfig.getPackFormat();
+
+                OutputVariant.Builder variant = OutputVariant.create(variantConfig.getName())
+                        .meta(new PackMeta(description, packFormat))
+                        .outputFile(task.computeVariantFile(variantConfig.getName()));
+
+                variantConfig.getProcessors().forEach((type, processors) -> variant.overrideProcessors(type, processors.toArray(new ResourceProcessor[0])));
+                this.variants.add(variant.build());
+            }
+        }
+
+        @Override
+        public void run(boolean incremental, Set<String> changedEntries) throws IOException {
+            BuildState previousState = this.loadPreviousState(incremental);
+            this.build(previousState, previousState != null ? changedEntries : Set.of());
+        }
+
+        private BuildState loadPreviousState(boolean incremental) {
+            // Variants are only written by full builds.
+            if (!incremental || !this.variants.isEmpty() || !this.stateFile.isFile() || !this.outputFile.exists())
+                return null;
+
+            try {
+                return BuildState.load(this.stateFile);
+            } catch (Exception ex) {
+                this.logger.warn("Could not load previous build state, rebuilding the entire resource pack", ex);
+                return null;
+            }
+        }
+
+        private void build(BuildState previousState, Set<String> changedEntries) throws IOException {
+            FrescoProcessor.Builder builder = FrescoProcessor.create();
+
+            builder.meta(this.meta);
+            builder.logger(this.logger);
+            if (this.exploded)
+                builder.outputDirectory(this.outputFile);
+            else
+                builder.outputFile(this.outputFile);
+
+            builder.definition(this.definition);
+            builder.compression(this.compression);
+            builder.parallelism(this.parallelism);
+            builder.digests(this.digests);
+
+            ProcessorCache cache = null;
+            if (this.cacheDirectory != null) {
+                cache = new ProcessorCache(this.cacheDirectory, this.cacheMaxSize);
+                builder.cache(cache);
+            }
+
+            this.processors.forEach((type, processors) -> builder.addProcessors(type, processors.toArray(new ResourceProcessor[0])));
+            this.transformers.forEach((type, transformers) -> transformers.forEach(transformer -> builder.addTransformer(type, transformer)));
+
+            JsonMinifier minifier = null;
+            if (this.minifyJson) {
+                minifier = new JsonMinifier();
+                builder.addTransformer(JsonMinifier.DEFAULT_TYPES, minifier);
+            }
+
+            if (this.prune) {
+                builder.prune(AssetPruner.create()
+                        .keep(this.pruneRoots)
+                        .keepVanilla(this.pruneKeepVanilla)
+                        .build());
+            }
+
+            if (this.dedupe) {
+                builder.deduplicate(AssetDeduplicator.create()
+                        .keep(this.dedupeKeepPatterns)
+                        .build());
+            }
+
+            PngOptimizer pngOptimizer = null;
+            if (this.optimizePng) {
+                pngOptimizer = new PngOptimizer();
+                builder.addTransformer(EntryType.TEXTURES, pngOptimizer);
+            }
+
+            this.variants.forEach(builder::addVariant);
+            this.collectEntries(builder);
+
+            // The state is only saved back once the build succeeded, a failed build always leads to a full rebuild.
+            Files.deleteIfExists(this.stateFile.toPath());
+
+            if (previousState != null && (this.exploded || this.patchOutput)) {
+                builder.patch(previousState, changedEntries).compactionThreshold(this.compactionThreshold);
+            } else if (previousState != null) {
+                Files.move(this.outputFile.toPath(), this.previousOutputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                builder.incremental(this.previousOutputFile, previousState, changedEntries);
+            }
+
+            ProcessResult result;
+            Map<String, ProcessResult> variantResults;
+            PruneReport pruneReport;
+            DedupeReport dedupeReport;
+            MetricsReport metrics;
+            try (FrescoProcessor processor = builder.build()) {
+                result = processor.process(); // AutoClosable should close by itself
+                variantResults = processor.variantResults();
+                pruneReport = processor.pruneReport();
+                dedupeReport = processor.dedupeReport();
+                metrics = processor.metrics();
+                processor.state().save(this.stateFile);
+            } finally {
+                Files.deleteIfExists(this.previousOutputFile.toPath());
+            }
+
+            this.writeDigests(result);
+            for (Map.Entry<String, ProcessResult> variantResult : variantResults.entrySet()) {
+                this.logger.lifecycle("Variant '{}':", variantResult.getKey());
+                this.writeDigests(variantResult.getValue());
+            }
+
+            this.writePruneReport(pruneReport);
+            this.writeDedupeReport(dedupeReport);
+            this.writeMetrics(metrics);
+
+            if (minifier != null)
+                this.logger.lifecycle("JSON minifier: {} entries, {} bytes saved", minifier.minifiedEntries(), minifier.bytesSaved());
+
+            if (pngOptimizer != null)
+                this.logPngSavings(pngOptimizer);
+
+            if (cache != null)
+                this.logger.lifecycle("Processor cache: {} hits, {} misses, {} bytes", cache.hits(), cache.misses(), cache.size());
+        }
+
+        // Later roots are layered on top of the previous ones.
+        private void collectEntries(FrescoProcessor.Builder builder) throws IOException {
+            LayeredSources.Builder sources = LayeredSources.create(this.definition).scanner(this.scanner);
+            for (File rootFile : this.roots) {
+                sources.layer(rootFile.toPath());
+            }
+
+            this.typeMergeStrategies.forEach(sources::strategy);
+            this.fileMergeStrategies.forEach(sources::strategy);
+
+            builder.addEntries(sources.build().resolve());
+        }
+
+        private void writeMetrics(MetricsReport metrics) throws IOException {
+            File reportFile = new File(this.destinationDirectory, this.outputName + ".metrics.json");
+            metrics.save(reportFile);
+
+            this.logger.lifecycle("Processed in {} ms, see {}", TimeUnit.NANOSECONDS.toMillis(metrics.wallTime()), reportFile.getName());
+            for (StageMetrics stage : metrics.stages()) {
+                this.logger.info("{} {}: {} calls, {} ms, {} bytes in, {} bytes out", stage.kind().name().toLowerCase(Locale.ROOT),
+                        stage.name(), stage.calls(), TimeUnit.NANOSECONDS.toMillis(stage.wallTime()), stage.bytesIn(), stage.bytesOut());
+            }
+        }
+
+        private void writePruneReport(PruneReport report) throws IOException {
+            File reportFile = new File(this.destinationDirectory, this.outputName + ".pruned.txt");
+            if (report == null) {
+                Files.deleteIfExists(reportFile.toPath());
+                return;
+            }
+
+            report.warnings().forEach(this.logger::warn);
+
+            Files.write(reportFile.toPath(), report.pruned(), StandardCharsets.UTF_8);
+
+            this.logger.lifecycle("Pruned {} unused entries, {} kept, see {}", report.pruned().size(), report.kept(), reportFile.getName());
+        }
+
+        private void writeDedupeReport(DedupeReport report) throws IOException {
+            File reportFile = new File(this.destinationDirectory, this.outputName + ".dedupe.txt");
+            if (report == null) {
+                Files.deleteIfExists(reportFile.toPath());
+                return;
+            }
+
+            report.warnings().forEach(this.logger::warn);
+
+            List<String> lines = new ArrayList<>();
+            report.duplicates().forEach((duplicate, canonical) -> lines.add(duplicate + " -> " + canonical));
+            Files.write(reportFile.toPath(), lines, StandardCharsets.UTF_8);
+
+            this.logger.lifecycle("Removed {} duplicated entries, {} bytes eliminated, {} entries rewritten, see {}",
+                    report.duplicates().size(), report.bytesEliminated(), report.rewrittenEntries(), reportFile.getName());
+        }
+
+        private void logPngSavings(PngOptimizer optimizer) {
+            Map<String, PngOptimizer.Result> results = optimizer.results();
+            results.forEach((path, result) ->
+                    this.logger.info("PNG optimizer: {} {} -> {} bytes", path, result.originalSize(), result.optimizedSize()));
+
+            this.logger.lifecycle("PNG optimizer: {} textures, {} bytes saved", results.size(), optimizer.bytesSaved());
+        }
+
+        // Written in the sha1sum format, so the files can be checked with the usual tools.
+        private void writeDigests(ProcessResult result) throws IOException {
+            for (Map.Entry<String, String> digest : result.digests().entrySet()) {
+                Files.writeString(digestFile(this.destinationDirectory, result.outputFile(), digest.getKey()).toPath(),
+                        digest.getValue() + "  " + result.outputFile().getName() + "\n", StandardCharsets.UTF_8);
+            }
 
-        for (File file : files) {
-            if (file.isFile()) {
-                output.add(file);
-                continue;
+            if (result.sha1() == null) {
+                this.logger.lifecycle("Resource pack: {} bytes written to {}", result.size(), result.outputFile());
+                return;
             }
 
-            this.collectFilesRecursively(file, output);
+            this.logger.lifecycle("Resource pack: {} bytes, SHA-1 {}", result.size(), result.sha1());
         }
     }
 }
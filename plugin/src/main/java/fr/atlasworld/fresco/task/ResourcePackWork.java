@@ -0,0 +1,98 @@
+package fr.atlasworld.fresco.task;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Work item building a resource pack on a Gradle worker thread, so the build runs in parallel with other tasks.
+ * <p>
+ * Processors and transformers are arbitrary objects which can't be isolated into work parameters,
+ * the build, resolved from the task configuration, is handed over through an in-memory registry instead
+ * and the work must be submitted without isolation.
+ */
+public abstract class ResourcePackWork implements WorkAction<ResourcePackWork.Parameters> {
+    private static final Map<String, PackBuild> BUILDS = new ConcurrentHashMap<>();
+
+    /**
+     * Register a build to be run by a work item.
+     *
+     * @param build build to run.
+     *
+     * @return identifier of the build, to be set as the {@link Parameters#getBuildId() build id} of the work item.
+     */
+    static String register(PackBuild build) {
+        String id = UUID.randomUUID().toString();
+        BUILDS.put(id, build);
+        return id;
+    }
+
+    /**
+     * Drop a build which could not be submitted.
+     *
+     * @param id identifier of the build.
+     */
+    static void unregister(String id) {
+        BUILDS.remove(id);
+    }
+
+    @Override
+    public void execute() {
+        String id = this.getParameters().getBuildId().get();
+        PackBuild build = BUILDS.remove(id);
+        if (build == null)
+            throw new IllegalStateException("Resource pack build '" + id + "' is not registered, was the work submitted with isolation?");
+
+        try {
+            Parameters parameters = this.getParameters();
+            build.run(parameters.getIncremental().get(), parameters.getChangedEntries().get());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public interface Parameters extends WorkParameters {
+
+        /**
+         * Identifier of the {@link #register(PackBuild) registered} build to run.
+         *
+         * @return a property containing the build identifier.
+         */
+        Property<String> getBuildId();
+
+        /**
+         * Whether the build may reuse the previous build, only the {@link #getChangedEntries() changed entries} are then processed.
+         *
+         * @return a property containing whether the build is incremental.
+         */
+        Property<Boolean> getIncremental();
+
+        /**
+         * Paths of the source entries changed since the previous build, relative to their source root.
+         *
+         * @return a property containing the changed entries.
+         */
+        SetProperty<String> getChangedEntries();
+    }
+
+    interface PackBuild {
+
+        /**
+         * Build the resource pack.
+         *
+         * @param incremental whether the previous build may be reused.
+         * @param changedEntries paths of the source entries changed since the previous build.
+         *
+         * @throws IOException if the resource pack could not be written.
+         */
+        void run(boolean incremental, Set<String> changedEntries) throws IOException;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.atlasworld.fresco.task;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.work.Incremental;
+
+import java.io.File;
+
+/**
+ * Source root of a {@link ResourcePackTask}, tracked on its own so the order of the roots
+ * and the root each file comes from are part of the task inputs.
+ */
+public class SourceRoot {
+    private final File root;
+    private final FileCollection files;
+
+    SourceRoot(File root, FileCollection files) {
+        this.root = root;
+        this.files = files;
+    }
+
+    /**
+     * Retrieves the directory or archive of this source root.
+     *
+     * @return the root file.
+     */
+    @Internal
+    public File getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Retrieves the tracked files of this source root, archives are tracked as a whole.
+     *
+     * @return the files of this source root.
+     */
+    @Incremental
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public FileCollection getFiles() {
+        return this.files;
+    }
+}
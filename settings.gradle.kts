@@ -1,4 +1,5 @@
 rootProject.name = "Fresco"
 include("core")
 include("plugin")
+include("benchmarks")
 